@@ -0,0 +1,130 @@
+import benchmarks.Engine;
+
+import java.util.Random;
+
+/**
+ * @author woodjamesdee
+ *
+ * Gives the benchmarks, which JMH requires to be in a named package, access to the engine classes in the default
+ * package.
+ */
+public final class EngineBridge implements Engine {
+
+    @Override
+    public Object newPiece(String type, String color, String position) {
+        return new Piece(type, color, position);
+    }
+
+    @Override
+    public Object getPotentialMoves(Object piece) {
+        return ((Piece) piece).getPotentialMoves();
+    }
+
+    @Override
+    public int[][] getPotentialMoveSquares(Object piece) {
+        return ((Piece) piece).getPotentialMoveSquares();
+    }
+
+    @Override
+    public Object newDefaultStart() {
+        Board board = new Board();
+        board.generateDefaultStart();
+        return board;
+    }
+
+    @Override
+    public Object newBoard(String placement, boolean whiteToMove, int castlingRights) {
+        Board board = new Board();
+        String[] ranks = placement.split("/");
+        for(int i = 0; i < 8; i++) {
+            int file = 0;
+            for(char c : ranks[i].toCharArray()) {
+                if(Character.isDigit(c)) {
+                    file += c - '0';
+                    continue;
+                }
+                String type = Character.toUpperCase(c) == 'P' ? " " : String.valueOf(Character.toUpperCase(c));
+                String color = Character.isUpperCase(c) ? "white" : "black";
+                board.addPiece(new Piece(type, color, "" + (char) ('a' + file) + (8 - i)));
+                file++;
+            }
+        }
+        board.synchronize();
+        board.setSideToMove(whiteToMove ? Piece.WHITE : Piece.BLACK);
+        board.setCastlingRights(castlingRights);
+        return board;
+    }
+
+    @Override
+    public int generateLegalMoves(Object board, int[] moves) {
+        return ((Board) board).generateLegalMoves(moves, 0);
+    }
+
+    @Override
+    public long perft(Object board, int depth) {
+        return ((Board) board).perft(depth);
+    }
+
+    @Override
+    public Object[] newPlayouts(int count, long seed) {
+        Object[] boards = new Object[count];
+        Random random = new Random(seed);
+        Board board = Fen.parse(Fen.START);
+        for(int i = 0; i < count; i++) {
+            boards[i] = Fen.parse(Fen.toString(board)); //Without the history a copy would carry along
+            int[] moves = board.getLegalMoves();
+            if(moves.length == 0 || board.getPly() >= 200) {
+                Fen.parse(Fen.START, board);
+            } else {
+                board.makeMove(moves[random.nextInt(moves.length)]);
+            }
+        }
+        return boards;
+    }
+
+    @Override
+    public Object newBatch(Object[] boards) {
+        PositionBatch batch = new PositionBatch(boards.length);
+        for(Object board : boards) {
+            batch.add((Board) board);
+        }
+        return batch;
+    }
+
+    @Override
+    public int evaluate(Object board) {
+        return Evaluation.evaluate((Board) board);
+    }
+
+    @Override
+    public void evaluate(Object batch, int[] scores) {
+        ((PositionBatch) batch).evaluate(scores);
+    }
+
+    @Override
+    public void countMoves(Object batch, int[] counts) {
+        ((PositionBatch) batch).countMoves(counts);
+    }
+
+    @Override
+    public Object newSearch(int megabytes) {
+        return new Search(new TranspositionTable(megabytes), 1);
+    }
+
+    @Override
+    public void clear(Object search) {
+        ((Search) search).getTable().clear();
+    }
+
+    @Override
+    public int search(Object search, Object board, int depth) {
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(depth);
+        return ((Search) search).search((Board) board, limits).getBestMove();
+    }
+
+    @Override
+    public void shutdown(Object search) {
+        ((Search) search).shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author woodjamesdee
+ *
+ * Compares evaluating and counting the moves of many positions one Board at a time with doing the same over a
+ * PositionBatch. The positions come from random games, so they are spread over the opening, middlegame and endgame.
+ * Every Board still holds its own undo stacks, about 20 KB, so the fork is given a heap large enough for the larger
+ * batch of Boards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BatchBenchmark {
+
+    @Param({"4096", "16384"})
+    private int positions;
+
+    private Object[] boards;
+    private Object batch;
+    private int[] results;
+    private int[] moves;
+
+    @Setup
+    public void setUp() {
+        this.boards = Engine.INSTANCE.newPlayouts(this.positions, 1);
+        this.batch = Engine.INSTANCE.newBatch(this.boards);
+        this.results = new int[this.positions];
+        this.moves = new int[256];
+    }
+
+    @Benchmark
+    public int[] evaluateBoards() {
+        for(int i = 0; i < this.boards.length; i++) {
+            this.results[i] = Engine.INSTANCE.evaluate(this.boards[i]);
+        }
+        return this.results;
+    }
+
+    @Benchmark
+    public int[] evaluateBatch() {
+        Engine.INSTANCE.evaluate(this.batch, this.results);
+        return this.results;
+    }
+
+    @Benchmark
+    public int[] countMovesBoards() {
+        for(int i = 0; i < this.boards.length; i++) {
+            this.results[i] = Engine.INSTANCE.generateLegalMoves(this.boards[i], this.moves);
+        }
+        return this.results;
+    }
+
+    @Benchmark
+    public int[] countMovesBatch() {
+        Engine.INSTANCE.countMoves(this.batch, this.results);
+        return this.results;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author woodjamesdee
+ *
+ * Measures setting up the starting position and generating the legal moves of the standard test positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({Positions.START, Positions.KIWIPETE, Positions.ENDGAME, Positions.MIRRORED, Positions.PROMOTIONS})
+    private String position;
+
+    private Object board;
+    private int[] moves;
+
+    @Setup
+    public void setUp() {
+        this.board = Positions.create(this.position);
+        this.moves = new int[256];
+    }
+
+    @Benchmark
+    public Object generateDefaultStart() {
+        return Engine.INSTANCE.newDefaultStart();
+    }
+
+    @Benchmark
+    public int generateLegalMoves() {
+        return Engine.INSTANCE.generateLegalMoves(this.board, this.moves);
+    }
+}
@@ -0,0 +1,148 @@
+package benchmarks;
+
+/**
+ * @author woodjamesdee
+ *
+ * The engine classes live in the default package, which code in a named package cannot refer to, and JMH only
+ * accepts benchmarks in a named package. The benchmarks therefore reach the engine through this interface, which
+ * EngineBridge in the default package implements. Boards, Pieces and Searches are passed around as plain Objects.
+ * Every call site sees a single implementation, so the JIT inlines straight through it.
+ */
+public interface Engine {
+
+    /**
+     * The engine, loaded by name from the default package.
+     */
+    Engine INSTANCE = Engine.load();
+
+    /**
+     * Creates a Piece.
+     * @param type      the type of the Piece, as in Piece.TYPES
+     * @param color     the color of the Piece, as in Piece.COLORS
+     * @param position  the position of the Piece, such as "e4"
+     * @return  the Piece
+     */
+    Object newPiece(String type, String color, String position);
+
+    /**
+     * Calls Piece.getPotentialMoves().
+     * @param piece the Piece
+     * @return  the potential moves as position names
+     */
+    Object getPotentialMoves(Object piece);
+
+    /**
+     * Calls Piece.getPotentialMoveSquares().
+     * @param piece the Piece
+     * @return  the potential moves as square indices
+     */
+    int[][] getPotentialMoveSquares(Object piece);
+
+    /**
+     * Creates a Board and calls Board.generateDefaultStart() on it.
+     * @return  the Board
+     */
+    Object newDefaultStart();
+
+    /**
+     * Creates a Board from the piece placement part of a FEN string.
+     * @param placement         the piece placement, rank 8 first
+     * @param whiteToMove       whether white is to move
+     * @param castlingRights    a combination of the Board.CASTLE constants
+     * @return  the Board
+     */
+    Object newBoard(String placement, boolean whiteToMove, int castlingRights);
+
+    /**
+     * Calls Board.generateLegalMoves().
+     * @param board the Board
+     * @param moves the buffer to generate into, at least Board.MAX_MOVES long
+     * @return  the number of moves generated
+     */
+    int generateLegalMoves(Object board, int[] moves);
+
+    /**
+     * Calls Board.perft() on a single thread.
+     * @param board the Board
+     * @param depth the depth to count to
+     * @return  the number of leaf nodes
+     */
+    long perft(Object board, int depth);
+
+    /**
+     * Creates a single threaded Search.
+     * @param megabytes the size of its transposition table
+     * @return  the Search
+     */
+    Object newSearch(int megabytes);
+
+    /**
+     * Empties the transposition table of a Search, so that every search starts from the same state.
+     * @param search    the Search
+     */
+    void clear(Object search);
+
+    /**
+     * Searches a Board to a fixed depth.
+     * @param search    the Search
+     * @param board     the Board
+     * @param depth     the depth to search to
+     * @return  the best move found
+     */
+    int search(Object search, Object board, int depth);
+
+    /**
+     * Stops the threads of a Search.
+     * @param search    the Search
+     */
+    void shutdown(Object search);
+
+    /**
+     * Plays random legal moves from the starting position, starting again whenever a game ends, and collects every
+     * position reached.
+     * @param count the number of positions to collect
+     * @param seed  the seed of the random moves
+     * @return  the Boards
+     */
+    Object[] newPlayouts(int count, long seed);
+
+    /**
+     * Creates a PositionBatch holding a copy of each Board.
+     * @param boards    the Boards
+     * @return  the PositionBatch
+     */
+    Object newBatch(Object[] boards);
+
+    /**
+     * Calls Evaluation.evaluate() on a Board.
+     * @param board the Board
+     * @return  the score
+     */
+    int evaluate(Object board);
+
+    /**
+     * Calls PositionBatch.evaluate() on a single thread.
+     * @param batch     the PositionBatch
+     * @param scores    the array to fill, at least as long as the batch
+     */
+    void evaluate(Object batch, int[] scores);
+
+    /**
+     * Calls PositionBatch.countMoves() on a single thread.
+     * @param batch     the PositionBatch
+     * @param counts    the array to fill, at least as long as the batch
+     */
+    void countMoves(Object batch, int[] counts);
+
+    /**
+     * Loads EngineBridge from the default package.
+     * @return  the engine
+     */
+    static Engine load() {
+        try {
+            return (Engine) Class.forName("EngineBridge").getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("EngineBridge could not be loaded.", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author woodjamesdee
+ *
+ * Measures single threaded perft of the standard test positions at fixed depths, which exercises move generation
+ * together with makeMove() and unmakeMove(). The node counts are checked before measuring so that a fast but wrong
+ * move generator cannot produce a good result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerftBenchmark {
+
+    @Param({Positions.START, Positions.KIWIPETE, Positions.ENDGAME, Positions.MIRRORED, Positions.PROMOTIONS})
+    private String position;
+
+    private Object board;
+    private int depth;
+
+    @Setup
+    public void setUp() {
+        this.board = Positions.create(this.position);
+        this.depth = Positions.perftDepth(this.position);
+        long nodes = Engine.INSTANCE.perft(this.board, this.depth);
+        if(nodes != Positions.perftNodes(this.position)) {
+            throw new IllegalStateException("perft(" + this.depth + ") of " + this.position + " gave " + nodes + " nodes.");
+        }
+    }
+
+    @Benchmark
+    public long perft() {
+        return Engine.INSTANCE.perft(this.board, this.depth);
+    }
+}
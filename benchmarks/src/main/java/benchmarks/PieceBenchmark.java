@@ -0,0 +1,50 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author woodjamesdee
+ *
+ * Measures the potential moves of each type of Piece standing in the middle of the board, both as the legacy list
+ * of position names and as the precomputed square indices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    @Param({"P", "N", "B", "R", "Q", "K"})
+    private String type;
+
+    private Object piece;
+
+    @Setup
+    public void setUp() {
+        this.piece = Engine.INSTANCE.newPiece("P".equals(this.type) ? " " : this.type, "white", "d4");
+    }
+
+    @Benchmark
+    public Object potentialMoves() {
+        return Engine.INSTANCE.getPotentialMoves(this.piece);
+    }
+
+    @Benchmark
+    public int[][] potentialMoveSquares() {
+        return Engine.INSTANCE.getPotentialMoveSquares(this.piece);
+    }
+}
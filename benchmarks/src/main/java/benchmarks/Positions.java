@@ -0,0 +1,71 @@
+package benchmarks;
+
+/**
+ * @author woodjamesdee
+ *
+ * The standard perft test positions, along with the depth each one is benchmarked at and its known node count.
+ */
+final class Positions {
+
+    static final String START = "start";
+    static final String KIWIPETE = "kiwipete";
+    static final String ENDGAME = "endgame";
+    static final String MIRRORED = "mirrored";
+    static final String PROMOTIONS = "promotions";
+
+    private Positions() {
+    }
+
+    /**
+     * Sets up one of the named positions.
+     * @param name  the name of the position
+     * @return  a new Board holding the position
+     */
+    static Object create(String name) {
+        switch(name) {
+            case Positions.START:
+                return Engine.INSTANCE.newBoard("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", true, 15);
+            case Positions.KIWIPETE:
+                return Engine.INSTANCE.newBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R", true, 15);
+            case Positions.ENDGAME:
+                return Engine.INSTANCE.newBoard("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8", true, 0);
+            case Positions.MIRRORED:
+                return Engine.INSTANCE.newBoard("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1", true, 12);
+            case Positions.PROMOTIONS:
+                return Engine.INSTANCE.newBoard("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R", true, 3);
+            default:
+                throw new IllegalArgumentException(name + " is not a known position.");
+        }
+    }
+
+    /**
+     * Gets the depth a position is perft tested to, chosen so that each takes a comparable amount of time.
+     * @param name  the name of the position
+     * @return  the depth
+     */
+    static int perftDepth(String name) {
+        return Positions.ENDGAME.equals(name) ? 5 : Positions.START.equals(name) ? 4 : 3;
+    }
+
+    /**
+     * Gets the known node count of a position at its perft depth.
+     * @param name  the name of the position
+     * @return  the number of leaf nodes
+     */
+    static long perftNodes(String name) {
+        switch(name) {
+            case Positions.START:
+                return 197281L;
+            case Positions.KIWIPETE:
+                return 97862L;
+            case Positions.ENDGAME:
+                return 674624L;
+            case Positions.MIRRORED:
+                return 9467L;
+            case Positions.PROMOTIONS:
+                return 62379L;
+            default:
+                throw new IllegalArgumentException(name + " is not a known position.");
+        }
+    }
+}
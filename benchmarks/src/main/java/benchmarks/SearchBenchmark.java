@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author woodjamesdee
+ *
+ * Measures a single threaded search to a fixed depth. The transposition table is emptied before every search, so
+ * each one does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({Positions.START, Positions.KIWIPETE, Positions.ENDGAME})
+    private String position;
+
+    @Param({"8"})
+    private int depth;
+
+    private Object board;
+    private Object search;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.board = Positions.create(this.position);
+        this.search = Engine.INSTANCE.newSearch(16);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        Engine.INSTANCE.clear(this.search);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Engine.INSTANCE.shutdown(this.search);
+    }
+
+    @Benchmark
+    public int search() {
+        return Engine.INSTANCE.search(this.search, this.board, this.depth);
+    }
+}
@@ -0,0 +1,133 @@
+import java.nio.ByteBuffer;
+
+/**
+ * @author woodjamesdee
+ *
+ * Packs a Board into a fixed 32 bytes, for position databases and files which need to be read without parsing.
+ * The layout is:
+ *
+ *  bytes 0-7   the occupancy bitboard, bit n set for each occupied square n of Board.POSITIONS
+ *  bytes 8-23  the piece code, color * 6 + type, of each occupied square in order, four bits each
+ *  byte 24     the side to move in bit 0 and the castling rights in bits 1-4
+ *  byte 25     the en passant square plus one, or 0 if there is none
+ *  bytes 26-27 the halfmove clock
+ *  bytes 28-29 the fullmove number
+ *  bytes 30-31 zero
+ *
+ * All multi-byte values are big-endian. The undo stack of the Board is not kept.
+ */
+public final class BinaryPosition {
+
+    public static final int SIZE = 32;
+
+    static final int CODES_OFFSET = 8;
+    static final int STATE_OFFSET = 24;
+
+    private BinaryPosition() {
+    }
+
+    /**
+     * Packs a Board into a new array.
+     * @param board the position to pack
+     * @return  the packed position
+     */
+    public static byte[] encode(Board board) {
+        byte[] bytes = new byte[BinaryPosition.SIZE];
+        BinaryPosition.write(board, ByteBuffer.wrap(bytes), 0);
+        return bytes;
+    }
+
+    /**
+     * Unpacks a position into a new Board.
+     * @param bytes the packed position
+     * @return  the Board
+     */
+    public static Board decode(byte[] bytes) {
+        Board board = new Board();
+        BinaryPosition.read(ByteBuffer.wrap(bytes), 0, board);
+        return board;
+    }
+
+    /**
+     * Packs a Board into a buffer without changing the position of the buffer.
+     * @param board     the position to pack
+     * @param buffer    the buffer to write to
+     * @param offset    the index to write the SIZE bytes at
+     */
+    public static void write(Board board, ByteBuffer buffer, int offset) {
+        long occupancy = board.getOccupancy();
+        buffer.putLong(offset, occupancy);
+        int index = 0;
+        int packed = 0;
+        for(long squares = occupancy; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            packed = (packed << 4) | (board.getPieceColor(square) * Piece.TYPES.size() + board.getPieceType(square));
+            if((++index & 1) == 0) {
+                buffer.put(offset + BinaryPosition.CODES_OFFSET + index / 2 - 1, (byte) packed);
+                packed = 0;
+            }
+        }
+        if((index & 1) != 0) {
+            buffer.put(offset + BinaryPosition.CODES_OFFSET + index / 2, (byte) (packed << 4));
+            index++;
+        }
+        for(int i = index / 2; i < 16; i++) {
+            buffer.put(offset + BinaryPosition.CODES_OFFSET + i, (byte) 0);
+        }
+        buffer.put(offset + BinaryPosition.STATE_OFFSET, (byte) (board.getSideToMove() | (board.getCastlingRights() << 1)));
+        buffer.put(offset + BinaryPosition.STATE_OFFSET + 1, (byte) (board.getEnPassantSquare() + 1));
+        buffer.putShort(offset + BinaryPosition.STATE_OFFSET + 2, (short) board.getHalfmoveClock());
+        buffer.putShort(offset + BinaryPosition.STATE_OFFSET + 4, (short) Math.min(board.getFullmoveNumber(), 0xFFFF));
+        buffer.putShort(offset + BinaryPosition.STATE_OFFSET + 6, (short) 0);
+    }
+
+    /**
+     * Unpacks a position into a Board, replacing whatever it held before and reusing its Piece objects. The position
+     * is checked as Fen.parse() checks one, since a corrupt record would otherwise throw move generation off:
+     * castling rights without their king and rook are dropped, as is an en passant square no pawn can take on.
+     * @param buffer    the buffer to read from, whose position is not changed
+     * @param offset    the index of the SIZE bytes to read
+     * @param board     the Board to set up
+     * @throws IllegalArgumentException if the bytes do not hold a position which could arise in a game
+     */
+    public static void read(ByteBuffer buffer, int offset, Board board) {
+        long occupancy = buffer.getLong(offset);
+        if(Long.bitCount(occupancy) > 32) {
+            throw new IllegalArgumentException("A packed position cannot hold " + Long.bitCount(occupancy) + " pieces.");
+        }
+        board.reset();
+        int index = 0;
+        for(long squares = occupancy; squares != 0; squares &= squares - 1) {
+            int packed = buffer.get(offset + BinaryPosition.CODES_OFFSET + index / 2);
+            int code = (index & 1) == 0 ? (packed >>> 4) & 0xF : packed & 0xF;
+            if(code >= 2 * Piece.TYPES.size()) {
+                throw new IllegalArgumentException(code + " is not a valid piece code.");
+            }
+            board.put(code % Piece.TYPES.size(), code / Piece.TYPES.size(), Long.numberOfTrailingZeros(squares));
+            index++;
+        }
+        int state = buffer.get(offset + BinaryPosition.STATE_OFFSET);
+        board.setSideToMove(state & 1);
+        String illegality = board.getIllegality();
+        if(illegality != null) {
+            throw new IllegalArgumentException("A packed position is impossible: " + illegality + ".");
+        }
+        board.setCastlingRights(board.getBackedCastlingRights((state >>> 1) & 0xF));
+        int enPassant = (buffer.get(offset + BinaryPosition.STATE_OFFSET + 1) & 0xFF) - 1;
+        if(enPassant >= 64) {
+            throw new IllegalArgumentException(enPassant + " is not a valid en passant square.");
+        }
+        int us = board.getSideToMove();
+        if(enPassant >= 0) {
+            illegality = Board.getEnPassantIllegality(enPassant, us, occupancy, board.getBitboard(Piece.PAWN, us ^ 1));
+            if(illegality != null) {
+                throw new IllegalArgumentException("A packed position is impossible: " + illegality + ".");
+            }
+            if(Board.isEnPassantCapturable(enPassant, us, board.getBitboard(Piece.PAWN, us))) {
+                board.setEnPassantSquare(enPassant);
+            }
+        }
+        board.setHalfmoveClock(buffer.getShort(offset + BinaryPosition.STATE_OFFSET + 2) & 0xFFFF);
+        board.setFullmoveNumber(Math.max(1, buffer.getShort(offset + BinaryPosition.STATE_OFFSET + 4) & 0xFFFF));
+    }
+}
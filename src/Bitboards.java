@@ -0,0 +1,303 @@
+/**
+ * @author woodjamesdee
+ *
+ * Attack lookup tables for bitboards. A bitboard is a long in which bit n is set when the square with index n
+ * within Board.POSITIONS is part of the set, so "h1" is bit 0, "h8" is bit 7 and "a8" is bit 63. Leaper attacks are
+ * plain per-square tables; sliding attacks are looked up through magic multiplication. The magic numbers below were
+ * found by a random search for this square layout and only need to be verified, not searched for, at class load.
+ */
+public final class Bitboards {
+
+    public static final long EMPTY = 0L;
+    public static final long FULL = -1L;
+
+    private static final long[] FILES = new long[8];
+    private static final long[] RANKS = new long[8];
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[] {
+            0x2080002080400010L, 0x00C0002001401000L, 0x2100110008402002L, 0x0880080081041000L,
+            0x0200020020041008L, 0x2300040008010012L, 0x0C00283004008201L, 0x0180010000407A80L,
+            0x0168800080400020L, 0x0010400040201000L, 0x1001002001001048L, 0x1001002408100100L,
+            0x0801000408010012L, 0x4001000209000400L, 0x08A20004C8020001L, 0x2002801145002280L,
+            0x0080860021004200L, 0x001000C009402002L, 0x00B0002004002800L, 0x100A808010020800L,
+            0x9400808004000800L, 0x0090808004000200L, 0x0000040010810208L, 0x2000020000448534L,
+            0x4104400480008033L, 0x0000810100204000L, 0x0440430900200010L, 0x4600240900100100L,
+            0x0804080100110004L, 0x0001000300080400L, 0x0004084400011002L, 0x0023040200008041L,
+            0x0580050043002080L, 0x0400804002802008L, 0x0001002001004010L, 0x0080200A02001040L,
+            0x600D480280802400L, 0x400B800201800C00L, 0x2408211004004208L, 0x0200211082000844L,
+            0x0020804010208000L, 0x5030004020104000L, 0xA042084080220010L, 0x4088080010008080L,
+            0x5002080100110004L, 0x2012002010040400L, 0x0040318210440008L, 0x0120941040820001L,
+            0x1000800100402100L, 0x0040002010004840L, 0x8108450020001900L, 0x0200204008120200L,
+            0x0080800C00180180L, 0x0885000400420900L, 0x230802011008C400L, 0x3801740891432200L,
+            0x0A00250212024082L, 0x0000882040001105L, 0x0042102082000A42L, 0xC401210810000501L,
+            0x0241001002480005L, 0x0081000400880241L, 0x0000009008024124L, 0x0048122980410402L};
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[] {
+            0x1862221006220044L, 0x2104A14202020060L, 0x2804081220444001L, 0x2102408900010001L,
+            0x0002021000040002L, 0x08C3100805004300L, 0x1084040124920050L, 0x8900440043382010L,
+            0x2401410802140040L, 0x0901200454208020L, 0x0000090216020541L, 0x1283844040800804L,
+            0x0521840420000803L, 0x0800010402400C40L, 0x0000408E10100404L, 0x0009810048420800L,
+            0x2004211004286808L, 0x13080A1001380080L, 0x0008801004220020L, 0x0024000802480800L,
+            0x1461001190400401L, 0x0020400200500440L, 0x0003000409019000L, 0x000C20820D011802L,
+            0x000804002164100CL, 0x00048400A0011404L, 0x5018110308044100L, 0x0048A00804010020L,
+            0x0007840000802000L, 0x8808A20075004220L, 0x8014040000822100L, 0x110C03000E251101L,
+            0x0081094820202010L, 0x0008041000044100L, 0x00C1202808940800L, 0x8108100821040400L,
+            0x1240010010010041L, 0x0810004080011000L, 0x00A20C0401804A00L, 0x40014C0020050500L,
+            0x5805082012042480L, 0x2004022144031000L, 0x2082002024204808L, 0x0800004200800800L,
+            0x0410020204100A02L, 0x80C1204080804101L, 0x0010104E01800042L, 0x000800810C400208L,
+            0x100080B008201210L, 0x8000440605112101L, 0x000202008C440040L, 0x9004002210442200L,
+            0x2032014088222045L, 0x0C00202222C20000L, 0x0140040820A50100L, 0x0222104C29024018L,
+            0x0200110121202004L, 0x0800104200B00802L, 0x0000401424020801L, 0x4000000004208840L,
+            0x0802E00040104100L, 0x03000020A0424080L, 0x0011C00408188121L, 0x0848020822040013L};
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] SLIDING_ATTACKS;
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINES = new long[64][64];
+
+    static {
+        for(int i = 0; i < 8; i++) {
+            Bitboards.FILES[i] = 0xFFL << (8 * i);
+            Bitboards.RANKS[i] = 0x0101010101010101L << i;
+        }
+        for(int square = 0; square < 64; square++) {
+            Bitboards.KNIGHT_ATTACKS[square] = Bitboards.of(MoveTables.getSquares(Piece.KNIGHT, Piece.WHITE, true, square));
+            Bitboards.KING_ATTACKS[square] = Bitboards.of(MoveTables.getSquares(Piece.KING, Piece.WHITE, true, square));
+            for(int color = 0; color < 2; color++) {
+                long steps = Bitboards.of(MoveTables.getSquares(Piece.PAWN, color, true, square));
+                Bitboards.PAWN_ATTACKS[color][square] = steps & ~Bitboards.FILES[square / 8]; //The push stays on the same file
+            }
+            Bitboards.ROOK_MASKS[square] = Bitboards.relevantOccupancy(MoveTables.getSquares(Piece.ROOK, Piece.WHITE, true, square));
+            Bitboards.BISHOP_MASKS[square] = Bitboards.relevantOccupancy(MoveTables.getSquares(Piece.BISHOP, Piece.WHITE, true, square));
+        }
+        int size = 0;
+        for(int square = 0; square < 64; square++) {
+            Bitboards.ROOK_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(Bitboards.ROOK_MASKS[square]);
+            Bitboards.BISHOP_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(Bitboards.BISHOP_MASKS[square]);
+        }
+        SLIDING_ATTACKS = new long[size];
+        for(int square = 0; square < 64; square++) {
+            Bitboards.fillAttacks(square, Piece.ROOK, Bitboards.ROOK_MASKS, Bitboards.ROOK_MAGICS, Bitboards.ROOK_SHIFTS, Bitboards.ROOK_OFFSETS);
+            Bitboards.fillAttacks(square, Piece.BISHOP, Bitboards.BISHOP_MASKS, Bitboards.BISHOP_MAGICS, Bitboards.BISHOP_SHIFTS, Bitboards.BISHOP_OFFSETS);
+        }
+        for(int from = 0; from < 64; from++) {
+            for(int to = 0; to < 64; to++) {
+                long toBit = 1L << to;
+                if(from == to) {
+                    continue;
+                }
+                if((Bitboards.rookAttacks(from, 0L) & toBit) != 0) {
+                    Bitboards.BETWEEN[from][to] = Bitboards.rookAttacks(from, toBit) & Bitboards.rookAttacks(to, 1L << from);
+                    Bitboards.LINES[from][to] = (Bitboards.rookAttacks(from, 0L) & Bitboards.rookAttacks(to, 0L)) | (1L << from) | toBit;
+                } else if((Bitboards.bishopAttacks(from, 0L) & toBit) != 0) {
+                    Bitboards.BETWEEN[from][to] = Bitboards.bishopAttacks(from, toBit) & Bitboards.bishopAttacks(to, 1L << from);
+                    Bitboards.LINES[from][to] = (Bitboards.bishopAttacks(from, 0L) & Bitboards.bishopAttacks(to, 0L)) | (1L << from) | toBit;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Gets the bitboard containing only the given square.
+     * @param square    the index of the square
+     * @return  the single square bitboard
+     */
+    public static long squareBit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Gets the index of the lowest square contained in a bitboard.
+     * @param bitboard  a non-empty bitboard
+     * @return  the index of the lowest set square
+     */
+    public static int firstSquare(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Gets all squares of a file, where file 0 is the h file and file 7 is the a file.
+     * @param file  the index of the file
+     * @return  the file bitboard
+     */
+    public static long file(int file) {
+        return Bitboards.FILES[file];
+    }
+
+    /**
+     * Gets all squares of a rank, where rank 0 is the first rank.
+     * @param rank  the index of the rank
+     * @return  the rank bitboard
+     */
+    public static long rank(int rank) {
+        return Bitboards.RANKS[rank];
+    }
+
+    /**
+     * Gets the squares attacked by a knight.
+     * @param square    the square of the knight
+     * @return  the attacked squares
+     */
+    public static long knightAttacks(int square) {
+        return Bitboards.KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares attacked by a king, not including castling.
+     * @param square    the square of the king
+     * @return  the attacked squares
+     */
+    public static long kingAttacks(int square) {
+        return Bitboards.KING_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares diagonally in front of a pawn, which it attacks.
+     * @param color     the index of the pawn's color within Piece.COLORS
+     * @param square    the square of the pawn
+     * @return  the attacked squares
+     */
+    public static long pawnAttacks(int color, int square) {
+        return Bitboards.PAWN_ATTACKS[color][square];
+    }
+
+    /**
+     * Gets the squares attacked by a rook, stopping each ray at the first occupied square.
+     * @param square    the square of the rook
+     * @param occupied  the bitboard of all occupied squares
+     * @return  the attacked squares
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return Bitboards.SLIDING_ATTACKS[Bitboards.ROOK_OFFSETS[square]
+                + (int) (((occupied & Bitboards.ROOK_MASKS[square]) * Bitboards.ROOK_MAGICS[square]) >>> Bitboards.ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares attacked by a bishop, stopping each ray at the first occupied square.
+     * @param square    the square of the bishop
+     * @param occupied  the bitboard of all occupied squares
+     * @return  the attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return Bitboards.SLIDING_ATTACKS[Bitboards.BISHOP_OFFSETS[square]
+                + (int) (((occupied & Bitboards.BISHOP_MASKS[square]) * Bitboards.BISHOP_MAGICS[square]) >>> Bitboards.BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares attacked by a queen, stopping each ray at the first occupied square.
+     * @param square    the square of the queen
+     * @param occupied  the bitboard of all occupied squares
+     * @return  the attacked squares
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return Bitboards.rookAttacks(square, occupied) | Bitboards.bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Gets the squares strictly between two squares which share a rank, file or diagonal.
+     * @param from  the first square
+     * @param to    the second square
+     * @return  the squares between them, or an empty bitboard if they are not aligned
+     */
+    public static long between(int from, int to) {
+        return Bitboards.BETWEEN[from][to];
+    }
+
+    /**
+     * Gets the whole rank, file or diagonal passing through two squares.
+     * @param from  the first square
+     * @param to    the second square
+     * @return  the squares of the line, or an empty bitboard if they are not aligned
+     */
+    public static long line(int from, int to) {
+        return Bitboards.LINES[from][to];
+    }
+
+    /**
+     * Gets the squares attacked by a piece of any type other than a pawn.
+     * @param type      the index of the piece type within Piece.TYPES
+     * @param square    the square of the piece
+     * @param occupied  the bitboard of all occupied squares
+     * @return  the attacked squares
+     */
+    public static long attacks(int type, int square, long occupied) {
+        switch(type) {
+            case Piece.KNIGHT:
+                return Bitboards.KNIGHT_ATTACKS[square];
+            case Piece.BISHOP:
+                return Bitboards.bishopAttacks(square, occupied);
+            case Piece.ROOK:
+                return Bitboards.rookAttacks(square, occupied);
+            case Piece.QUEEN:
+                return Bitboards.queenAttacks(square, occupied);
+            case Piece.KING:
+                return Bitboards.KING_ATTACKS[square];
+            default:
+                throw new IllegalArgumentException(type + " is not a valid type.");
+        }
+    }
+
+    private static long of(int[][] rays) {
+        long bitboard = 0L;
+        for(int[] ray : rays) {
+            for(int square : ray) {
+                bitboard |= 1L << square;
+            }
+        }
+        return bitboard;
+    }
+
+    private static long relevantOccupancy(int[][] rays) {
+        long bitboard = 0L;
+        for(int[] ray : rays) {
+            for(int i = 0; i < ray.length - 1; i++) { //The last square of a ray never blocks anything
+                bitboard |= 1L << ray[i];
+            }
+        }
+        return bitboard;
+    }
+
+    private static long slowAttacks(int type, int square, long occupied) {
+        long attacks = 0L;
+        for(int[] ray : MoveTables.getSquares(type, Piece.WHITE, true, square)) {
+            for(int target : ray) {
+                attacks |= 1L << target;
+                if((occupied & (1L << target)) != 0) {
+                    break;
+                }
+            }
+        }
+        return attacks;
+    }
+
+    private static void fillAttacks(int square, int type, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        long mask = masks[square];
+        int bits = Long.bitCount(mask);
+        boolean[] used = new boolean[1 << bits];
+        shifts[square] = 64 - bits;
+        long subset = 0L;
+        do { //Enumerate every subset of the mask
+            int index = (int) ((subset * magics[square]) >>> shifts[square]);
+            long attacks = Bitboards.slowAttacks(type, square, subset);
+            if(used[index] && Bitboards.SLIDING_ATTACKS[offsets[square] + index] != attacks) {
+                throw new IllegalStateException("Magic number for " + Board.POSITIONS.get(square) + " collides.");
+            }
+            used[index] = true;
+            Bitboards.SLIDING_ATTACKS[offsets[square] + index] = attacks;
+            subset = (subset - mask) & mask;
+        } while(subset != 0);
+    }
+}
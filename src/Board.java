@@ -1,5 +1,6 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class Board {
 
@@ -13,13 +14,130 @@ public class Board {
                                         "b1", "b2", "b3", "b4", "b5", "b6", "b7", "b8",
                                         "a1", "a2", "a3", "a4", "a5", "a6", "a7", "a8"}));
 
+    public static final int CASTLE_WHITE_H = 1;
+    public static final int CASTLE_WHITE_A = 2;
+    public static final int CASTLE_BLACK_H = 4;
+    public static final int CASTLE_BLACK_A = 8;
+
+    public static final int MAX_MOVES = 256;
+
+    static final long BACK_RANKS = Bitboards.rank(0) | Bitboards.rank(7);
+
+    private static final int TYPE_COUNT = Piece.TYPES.size();
+
+    private static final int UNDO_EN_PASSANT_SHIFT = 4;
+    private static final int UNDO_HALFMOVE_SHIFT = 11;
+    private static final int UNDO_CAPTURED_SHIFT = 27;
+    private static final long UNDO_PIECE_MOVED = 1L << 33;
+    private static final long UNDO_ROOK_MOVED = 1L << 34;
+
     private Piece[] pieces;
+    private long[] bitboards;
+    private long[] colorOccupancy;
+    private long occupancy;
+    private int[] codes;
+    private int[] slots;
+    private int sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash;
+    private long pawnHash;
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+    private long[] attacks;
+    private int attacksValid;
+    private long checkers;
+    private long pinned;
+    private boolean checksValid;
+    private int[] moveStack;
+    private long[] undoStack;
+    private long[] hashStack;
+    private int ply;
+
+    /**
+     * Converts a board position such as "e4" into its index within POSITIONS without scanning the list.
+     * @param position  the position to convert
+     * @return  the index of the position, or -1 if it is not a valid position
+     */
+    public static int squareIndex(String position) {
+        if(position == null || position.length() != 2) {
+            return -1;
+        }
+        int file = 'h' - position.charAt(0);
+        int rank = position.charAt(1) - '1';
+        if(file < 0 || file >= 8 || rank < 0 || rank >= 8) {
+            return -1;
+        }
+        return file * 8 + rank;
+    }
+
+    /**
+     * Converts an index within POSITIONS back into its board position.
+     * @param square    the index of the position
+     * @return  the board position, such as "e4"
+     */
+    public static String squareName(int square) {
+        return Board.POSITIONS.get(square);
+    }
 
     /**
      * Creates a new Board without any Piece objects contained within it.
      */
     public Board() {
         this.pieces = new Piece[32];
+        this.bitboards = new long[Piece.COLORS.size() * Piece.TYPES.size()];
+        this.colorOccupancy = new long[Piece.COLORS.size()];
+        this.codes = new int[64];
+        this.slots = new int[64];
+        Arrays.fill(this.codes, -1);
+        Arrays.fill(this.slots, -1);
+        this.sideToMove = Piece.WHITE;
+        this.enPassantSquare = -1;
+        this.fullmoveNumber = 1;
+        this.attacks = new long[Piece.COLORS.size()];
+        this.moveStack = new int[1024];
+        this.undoStack = new long[1024];
+        this.hashStack = new long[1024];
+    }
+
+    /**
+     * Creates a new Board which is an independent copy of another Board, including copies of all its Piece objects.
+     * @param other the Board to copy
+     */
+    public Board(Board other) {
+        this.pieces = new Piece[other.pieces.length];
+        for(int slot = 0; slot < this.pieces.length; slot++) {
+            if(other.pieces[slot] != null) {
+                this.pieces[slot] = new Piece(other.pieces[slot]);
+            }
+        }
+        this.bitboards = other.bitboards.clone();
+        this.colorOccupancy = other.colorOccupancy.clone();
+        this.occupancy = other.occupancy;
+        this.codes = other.codes.clone();
+        this.slots = other.slots.clone();
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.hash = other.hash;
+        this.pawnHash = other.pawnHash;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+        this.attacks = other.attacks.clone();
+        this.attacksValid = other.attacksValid;
+        this.checkers = other.checkers;
+        this.pinned = other.pinned;
+        this.checksValid = other.checksValid;
+        this.moveStack = other.moveStack.clone();
+        this.undoStack = other.undoStack.clone();
+        this.hashStack = other.hashStack.clone();
+        this.ply = other.ply;
     }
 
     /**
@@ -59,5 +177,1038 @@ public class Board {
         this.pieces[29] = new Piece("B", "black", "c8");
         this.pieces[30] = new Piece("N", "black", "b8");
         this.pieces[31] = new Piece("R", "black", "a8");
+        this.sideToMove = Piece.WHITE;
+        this.enPassantSquare = -1;
+        this.halfmoveClock = 0;
+        this.fullmoveNumber = 1;
+        this.synchronize();
+    }
+
+    /**
+     * Adds a Piece to this Board in the first free slot.
+     * @param piece the Piece to add
+     */
+    public void addPiece(Piece piece) {
+        if(piece.getCaptured()) {
+            throw new IllegalArgumentException("A captured piece cannot be added to the board.");
+        }
+        if(this.codes[piece.getSquare()] >= 0) {
+            throw new IllegalArgumentException(piece.getPosition() + " is already occupied.");
+        }
+        for(int slot = 0; slot < this.pieces.length; slot++) {
+            if(this.pieces[slot] == null) {
+                this.pieces[slot] = piece;
+                this.place(slot);
+                return;
+            }
+        }
+        throw new IllegalStateException("The board already holds " + this.pieces.length + " pieces.");
+    }
+
+    /**
+     * Rebuilds the bitboards and square lookups of this Board from its Piece objects. Must be called after a Piece
+     * on this Board is modified directly through its setters. Castling rights are derived again from which kings and
+     * corner rooks have not moved yet, and the undo stack is cleared.
+     */
+    public void synchronize() {
+        this.clearSquares();
+        for(int slot = 0; slot < this.pieces.length; slot++) {
+            if(this.pieces[slot] != null && !this.pieces[slot].getCaptured()) {
+                this.place(slot);
+            }
+        }
+        this.castlingRights = 0;
+        for(int color = 0; color < 2; color++) {
+            long king = this.bitboards[color * Board.TYPE_COUNT + Piece.KING];
+            if(Long.bitCount(king) != 1 || this.pieces[this.slots[Long.numberOfTrailingZeros(king)]].getMoved()) {
+                continue;
+            }
+            for(int side = 0; side < 2; side++) {
+                int corner = Board.castlingCorner(color, side);
+                if(this.hasCastlingPieces(color, side) && !this.getPiece(corner).getMoved()) {
+                    this.castlingRights |= Board.castlingRight(color, side);
+                }
+            }
+        }
+        this.hash ^= (this.sideToMove == Piece.BLACK ? Zobrist.side() : 0L) ^ Zobrist.castling(this.castlingRights) ^ Zobrist.enPassant(this.enPassantSquare);
+    }
+
+    /**
+     * Empties this Board for a new position to be set up with put(), keeping its Piece objects so that they can be
+     * reused instead of allocated again. White is to move, with no castling rights or en passant square.
+     */
+    void reset() {
+        for(Piece piece : this.pieces) {
+            if(piece != null && !piece.getCaptured()) {
+                piece.setCaptured();
+            }
+        }
+        this.clearSquares();
+        this.sideToMove = Piece.WHITE;
+        this.castlingRights = 0;
+        this.enPassantSquare = -1;
+        this.halfmoveClock = 0;
+        this.fullmoveNumber = 1;
+    }
+
+    /**
+     * Puts a piece on an empty square, reusing a captured Piece object of this Board if there is one.
+     * @param type      the index of the type within Piece.TYPES
+     * @param color     the index of the color within Piece.COLORS
+     * @param square    the index of the square within POSITIONS
+     */
+    void put(int type, int color, int square) {
+        if(this.codes[square] >= 0) {
+            throw new IllegalArgumentException(Board.squareName(square) + " is already occupied.");
+        }
+        boolean moved = type == Piece.PAWN && square % 8 != (color == Piece.WHITE ? 1 : 6);
+        for(int slot = 0; slot < this.pieces.length; slot++) {
+            Piece piece = this.pieces[slot];
+            if(piece == null) {
+                piece = new Piece(Piece.TYPES.get(type), Piece.COLORS.get(color), Board.squareName(square));
+                this.pieces[slot] = piece;
+            } else if(!piece.getCaptured()) {
+                continue;
+            }
+            piece.reset(type, color, square, moved);
+            this.place(slot);
+            return;
+        }
+        throw new IllegalArgumentException("The board already holds " + this.pieces.length + " pieces.");
+    }
+
+    /**
+     * Gets the Piece standing on a square of this Board.
+     * @param square    the index of the square within POSITIONS
+     * @return  the Piece on the square, or null if the square is empty
+     */
+    public Piece getPiece(int square) {
+        int slot = this.slots[square];
+        return slot < 0 ? null : this.pieces[slot];
+    }
+
+    /**
+     * Gets the Piece standing on a position of this Board.
+     * @param position  the board position, such as "e4"
+     * @return  the Piece on the position, or null if the position is empty
+     */
+    public Piece getPiece(String position) {
+        int square = Board.squareIndex(position);
+        if(square < 0) {
+            throw new IllegalArgumentException(position + " is not a valid position.");
+        }
+        return this.getPiece(square);
+    }
+
+    /**
+     * Gets the type of the piece standing on a square without touching its Piece object.
+     * @param square    the index of the square within POSITIONS
+     * @return  the index of the type within Piece.TYPES, or -1 if the square is empty
+     */
+    public int getPieceType(int square) {
+        int code = this.codes[square];
+        return code < 0 ? -1 : code % Board.TYPE_COUNT;
+    }
+
+    /**
+     * Gets the color of the piece standing on a square without touching its Piece object.
+     * @param square    the index of the square within POSITIONS
+     * @return  the index of the color within Piece.COLORS, or -1 if the square is empty
+     */
+    public int getPieceColor(int square) {
+        int code = this.codes[square];
+        return code < 0 ? -1 : code / Board.TYPE_COUNT;
+    }
+
+    /**
+     * Gets the bitboard of every square holding a given kind of piece.
+     * @param type  the index of the type within Piece.TYPES
+     * @param color the index of the color within Piece.COLORS
+     * @return  the bitboard of the pieces
+     */
+    public long getBitboard(int type, int color) {
+        return this.bitboards[color * Board.TYPE_COUNT + type];
+    }
+
+    /**
+     * Gets the bitboard of every square holding a piece of a given color.
+     * @param color the index of the color within Piece.COLORS
+     * @return  the bitboard of the pieces
+     */
+    public long getOccupancy(int color) {
+        return this.colorOccupancy[color];
+    }
+
+    /**
+     * Gets the bitboard of every occupied square.
+     * @return  the bitboard of all pieces
+     */
+    public long getOccupancy() {
+        return this.occupancy;
+    }
+
+    /**
+     * Checks whether any piece stands on a square.
+     * @param square    the index of the square within POSITIONS
+     * @return  true if the square is occupied
+     */
+    public boolean isOccupied(int square) {
+        return (this.occupancy & (1L << square)) != 0;
+    }
+
+    /**
+     * Gets the color whose turn it is to move.
+     * @return  Piece.WHITE or Piece.BLACK
+     */
+    public int getSideToMove() {
+        return this.sideToMove;
+    }
+
+    /**
+     * Sets the color whose turn it is to move.
+     * @param color Piece.WHITE or Piece.BLACK
+     */
+    public void setSideToMove(int color) {
+        if(color != Piece.WHITE && color != Piece.BLACK) {
+            throw new IllegalArgumentException(color + " is not a valid color.");
+        }
+        if(color != this.sideToMove) {
+            this.hash ^= Zobrist.side();
+            this.checksValid = false;
+        }
+        this.sideToMove = color;
+    }
+
+    /**
+     * Gets the castling rights which remain, as a combination of the CASTLE constants.
+     * @return  the castling rights
+     */
+    public int getCastlingRights() {
+        return this.castlingRights;
+    }
+
+    /**
+     * Sets the castling rights which remain. Rights whose king or rook is not on its original square are ignored
+     * by move generation.
+     * @param castlingRights    a combination of the CASTLE constants
+     */
+    public void setCastlingRights(int castlingRights) {
+        if((castlingRights & ~0xF) != 0) {
+            throw new IllegalArgumentException(castlingRights + " is not a valid set of castling rights.");
+        }
+        this.hash ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * Gets the square a pawn may be captured on en passant.
+     * @return  the index of the square passed over by the last double pawn push, or -1 if there is none
+     */
+    public int getEnPassantSquare() {
+        return this.enPassantSquare;
+    }
+
+    /**
+     * Sets the square a pawn may be captured on en passant.
+     * @param square    the index of the square passed over by the last double pawn push, or -1 if there is none
+     */
+    public void setEnPassantSquare(int square) {
+        if(square < -1 || square >= 64) {
+            throw new IllegalArgumentException(square + " is not a valid square.");
+        }
+        this.hash ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(square);
+        this.enPassantSquare = square;
+    }
+
+    /**
+     * Gets the Zobrist hash of this position, which is kept up to date as moves are made and taken back.
+     * @return  the 64-bit hash
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Gets the Zobrist hash of the pawns of this position alone, which changes only when a pawn moves, is captured
+     * or promotes.
+     * @return  the 64-bit pawn hash
+     */
+    public long getPawnHash() {
+        return this.pawnHash;
+    }
+
+    /**
+     * Gets the middlegame material and square score of this position, kept up to date as pieces move.
+     * @return  the score in centipawns from white's point of view
+     */
+    public int getMiddlegameScore() {
+        return this.middlegameScore;
+    }
+
+    /**
+     * Gets the endgame material and square score of this position, kept up to date as pieces move.
+     * @return  the score in centipawns from white's point of view
+     */
+    public int getEndgameScore() {
+        return this.endgameScore;
+    }
+
+    /**
+     * Gets the game phase of this position, from Evaluation.MAX_PHASE with all pieces on the board down to 0 with
+     * only kings and pawns left.
+     * @return  the phase
+     */
+    public int getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Gets the number of moves since the last capture or pawn move, for the fifty move rule.
+     * @return  the halfmove clock
+     */
+    public int getHalfmoveClock() {
+        return this.halfmoveClock;
+    }
+
+    /**
+     * Sets the number of moves since the last capture or pawn move.
+     * @param halfmoveClock the halfmove clock
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        if(halfmoveClock < 0 || halfmoveClock > 0xFFFF) {
+            throw new IllegalArgumentException(halfmoveClock + " is not a valid halfmove clock.");
+        }
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Gets the number of the current full move, starting at 1 and increasing after every move by black.
+     * @return  the fullmove number
+     */
+    public int getFullmoveNumber() {
+        return this.fullmoveNumber;
+    }
+
+    /**
+     * Sets the number of the current full move.
+     * @param fullmoveNumber    the fullmove number, starting at 1
+     */
+    public void setFullmoveNumber(int fullmoveNumber) {
+        if(fullmoveNumber < 1) {
+            throw new IllegalArgumentException(fullmoveNumber + " is not a valid fullmove number.");
+        }
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * Generates every legal move for the side to move, taking into account other pieces, checks, pins, en passant
+     * and castling.
+     * @return  the legal moves, each packed as described by Move
+     */
+    public int[] getLegalMoves() {
+        int[] moves = new int[Board.MAX_MOVES];
+        int count = this.generateLegalMoves(moves, 0);
+        return Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * Writes every legal move for the side to move into a caller-supplied buffer, so that steady state move
+     * generation does not allocate. The buffer needs room for MAX_MOVES moves past the offset.
+     * @param moves     the buffer to write the packed moves into
+     * @param offset    the index of the buffer to start writing at
+     * @return  the index just past the last move written
+     */
+    public int generateLegalMoves(int[] moves, int offset) {
+        return this.generate(moves, offset, true);
+    }
+
+    /**
+     * Writes only the legal captures and promotions for the side to move into a caller-supplied buffer, for use by
+     * quiescence search.
+     * @param moves     the buffer to write the packed moves into
+     * @param offset    the index of the buffer to start writing at
+     * @return  the index just past the last move written
+     */
+    public int generateLegalCaptures(int[] moves, int offset) {
+        return this.generate(moves, offset, false);
+    }
+
+    private int generate(int[] moves, int offset, boolean quiets) {
+        int count = offset;
+        int us = this.sideToMove;
+        int them = us ^ 1;
+        long ours = this.colorOccupancy[us];
+        long theirs = this.colorOccupancy[them];
+        long kingBit = this.bitboards[us * Board.TYPE_COUNT + Piece.KING];
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long checkers = this.getCheckers();
+        long pinned = this.getPinned();
+        if(kingBit != 0) {
+            long targets = Bitboards.kingAttacks(king) & (quiets ? ~ours : theirs);
+            while(targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if(!this.isAttacked(to, them, this.occupancy ^ kingBit)) {
+                    moves[count++] = Move.encode(king, to, Piece.PAWN, this.getPieceType(to), 0);
+                }
+            }
+            if(Long.bitCount(checkers) > 1) { //Only the king can escape a double check
+                return count;
+            }
+        }
+        long evasions = Bitboards.FULL;
+        if(checkers != 0) { //Must capture the checker or block it
+            evasions = Bitboards.between(king, Long.numberOfTrailingZeros(checkers)) | checkers;
+        }
+        long allowed = (quiets ? ~ours : theirs) & evasions;
+        for(int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            long pieces = this.bitboards[us * Board.TYPE_COUNT + type];
+            while(pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long targets = Bitboards.attacks(type, from, this.occupancy) & allowed;
+                if((pinned & (1L << from)) != 0) {
+                    targets &= Bitboards.line(king, from);
+                }
+                while(targets != 0) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    moves[count++] = Move.encode(from, to, Piece.PAWN, this.getPieceType(to), 0);
+                }
+            }
+        }
+        int forward = us == Piece.WHITE ? 1 : -1;
+        int startRank = us == Piece.WHITE ? 1 : 6;
+        long pawns = this.bitboards[us * Board.TYPE_COUNT + Piece.PAWN];
+        while(pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long pinLine = (pinned & (1L << from)) != 0 ? Bitboards.line(king, from) : Bitboards.FULL;
+            long legal = allowed & pinLine;
+            long pushes = evasions & pinLine;
+            int single = from + forward;
+            boolean promotion = single % 8 == 0 || single % 8 == 7;
+            if((this.occupancy & (1L << single)) == 0 && (quiets || promotion)) {
+                if((pushes & (1L << single)) != 0) {
+                    count = Board.addPawnMove(moves, count, from, single, -1);
+                }
+                int twice = single + forward;
+                if(quiets && from % 8 == startRank && (this.occupancy & (1L << twice)) == 0 && (pushes & (1L << twice)) != 0) {
+                    moves[count++] = Move.encode(from, twice, Piece.PAWN, Move.DOUBLE_PUSH);
+                }
+            }
+            long targets = Bitboards.pawnAttacks(us, from) & theirs & legal;
+            while(targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                count = Board.addPawnMove(moves, count, from, to, this.getPieceType(to));
+            }
+            if(this.enPassantSquare >= 0 && (Bitboards.pawnAttacks(us, from) & (1L << this.enPassantSquare)) != 0
+                    && this.isLegalEnPassant(from, this.enPassantSquare - forward, kingBit)) {
+                moves[count++] = Move.encode(from, this.enPassantSquare, Piece.PAWN, Piece.PAWN, Move.EN_PASSANT);
+            }
+        }
+        if(quiets && kingBit != 0 && checkers == 0) {
+            for(int side = 0; side < 2; side++) {
+                int corner = Board.castlingCorner(us, side);
+                if((this.castlingRights & Board.castlingRight(us, side)) == 0 || !this.hasCastlingPieces(us, side)
+                        || (Bitboards.between(king, corner) & this.occupancy) != 0) {
+                    continue;
+                }
+                int direction = corner > king ? 8 : -8;
+                if(!this.isSquareAttacked(king + direction, them) && !this.isSquareAttacked(king + 2 * direction, them)) {
+                    moves[count++] = Move.encode(king, king + 2 * direction, Piece.PAWN, Move.CASTLE);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plays a legal move on this Board in place, updating the Piece objects along with the rest of the position. The
+     * information needed to take the move back is pushed onto an undo stack, which only allocates when it has to grow.
+     * @param move  the packed move, as generated by generateLegalMoves()
+     */
+    public void makeMove(int move) {
+        int us = this.sideToMove;
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        int flags = Move.getFlags(move);
+        int slot = this.slots[from];
+        Piece piece = this.pieces[slot];
+        int type = piece.getTypeIndex();
+        long previousHash = this.hash;
+        long undo = this.castlingRights | ((this.enPassantSquare + 1L) << Board.UNDO_EN_PASSANT_SHIFT)
+                | ((long) this.halfmoveClock << Board.UNDO_HALFMOVE_SHIFT) | (piece.getMoved() ? Board.UNDO_PIECE_MOVED : 0);
+        if((flags & Move.CAPTURE) != 0) {
+            int captureSquare = (flags & Move.EN_PASSANT) != 0 ? to + (us == Piece.WHITE ? -1 : 1) : to;
+            int capturedSlot = this.slots[captureSquare];
+            undo |= (capturedSlot + 1L) << Board.UNDO_CAPTURED_SHIFT;
+            this.remove(captureSquare);
+            this.pieces[capturedSlot].setCaptured();
+        }
+        this.remove(from);
+        piece.moveTo(to, true);
+        if(Move.getPromotion(move) != Piece.PAWN) {
+            piece.promote(Move.getPromotion(move));
+        }
+        this.place(slot);
+        if((flags & Move.CASTLE) != 0) {
+            int direction = to > from ? 8 : -8;
+            int corner = Board.castlingCorner(us, direction < 0 ? 0 : 1);
+            int rookSlot = this.slots[corner];
+            undo |= this.pieces[rookSlot].getMoved() ? Board.UNDO_ROOK_MOVED : 0;
+            this.remove(corner);
+            this.pieces[rookSlot].moveTo(from + direction, true);
+            this.place(rookSlot);
+        }
+        int rights = this.castlingRights;
+        if(type == Piece.KING) {
+            rights &= ~(Board.castlingRight(us, 0) | Board.castlingRight(us, 1));
+        }
+        rights &= ~(Board.rightsLostAt(from) | Board.rightsLostAt(to));
+        int enPassant = -1;
+        if((flags & Move.DOUBLE_PUSH) != 0 && (Bitboards.pawnAttacks(us, (from + to) / 2) & this.bitboards[(us ^ 1) * Board.TYPE_COUNT + Piece.PAWN]) != 0) {
+            enPassant = (from + to) / 2; //Only recorded when a pawn can capture, so that equal positions hash equally
+        }
+        this.hash ^= Zobrist.side() ^ Zobrist.castling(this.castlingRights) ^ Zobrist.castling(rights)
+                ^ Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassant);
+        this.castlingRights = rights;
+        this.enPassantSquare = enPassant;
+        this.halfmoveClock = (flags & Move.CAPTURE) != 0 || type == Piece.PAWN ? 0 : this.halfmoveClock + 1;
+        if(us == Piece.BLACK) {
+            this.fullmoveNumber++;
+        }
+        this.sideToMove = us ^ 1;
+        this.push(move, undo, previousHash);
+    }
+
+    /**
+     * Passes the turn to the other side without moving a piece, for null move pruning during search. Taken back
+     * with unmakeMove() like any other move.
+     */
+    public void makeNullMove() {
+        long undo = this.castlingRights | ((this.enPassantSquare + 1L) << Board.UNDO_EN_PASSANT_SHIFT)
+                | ((long) this.halfmoveClock << Board.UNDO_HALFMOVE_SHIFT);
+        this.push(Move.NONE, undo, this.hash);
+        this.checksValid = false;
+        this.hash ^= Zobrist.side() ^ Zobrist.enPassant(this.enPassantSquare);
+        this.enPassantSquare = -1;
+        this.halfmoveClock++;
+        if(this.sideToMove == Piece.BLACK) {
+            this.fullmoveNumber++;
+        }
+        this.sideToMove ^= 1;
+    }
+
+    /**
+     * Takes back the last move played with makeMove(), restoring the position exactly as it was before it.
+     */
+    public void unmakeMove() {
+        if(this.ply == 0) {
+            throw new IllegalStateException("There is no move to take back.");
+        }
+        this.ply--;
+        int move = this.moveStack[this.ply];
+        long undo = this.undoStack[this.ply];
+        int us = this.sideToMove ^ 1;
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        int flags = Move.getFlags(move);
+        this.sideToMove = us;
+        if(us == Piece.BLACK) {
+            this.fullmoveNumber--;
+        }
+        if(move == Move.NONE) {
+            this.castlingRights = (int) (undo & 0xF);
+            this.enPassantSquare = (int) ((undo >>> Board.UNDO_EN_PASSANT_SHIFT) & 0x7F) - 1;
+            this.halfmoveClock = (int) ((undo >>> Board.UNDO_HALFMOVE_SHIFT) & 0xFFFF);
+            this.hash = this.hashStack[this.ply];
+            this.checksValid = false;
+            return;
+        }
+        if((flags & Move.CASTLE) != 0) {
+            int direction = to > from ? 8 : -8;
+            int rookSlot = this.slots[from + direction];
+            this.remove(from + direction);
+            this.pieces[rookSlot].moveTo(Board.castlingCorner(us, direction < 0 ? 0 : 1), (undo & Board.UNDO_ROOK_MOVED) != 0);
+            this.place(rookSlot);
+        }
+        int slot = this.slots[to];
+        Piece piece = this.pieces[slot];
+        this.remove(to);
+        piece.moveTo(from, (undo & Board.UNDO_PIECE_MOVED) != 0);
+        if(Move.getPromotion(move) != Piece.PAWN) {
+            piece.promote(Piece.PAWN);
+        }
+        this.place(slot);
+        if((flags & Move.CAPTURE) != 0) {
+            int captureSquare = (flags & Move.EN_PASSANT) != 0 ? to + (us == Piece.WHITE ? -1 : 1) : to;
+            int capturedSlot = (int) ((undo >>> Board.UNDO_CAPTURED_SHIFT) & 0x3F) - 1;
+            this.pieces[capturedSlot].restore(captureSquare);
+            this.place(capturedSlot);
+        }
+        this.castlingRights = (int) (undo & 0xF);
+        this.enPassantSquare = (int) ((undo >>> Board.UNDO_EN_PASSANT_SHIFT) & 0x7F) - 1;
+        this.halfmoveClock = (int) ((undo >>> Board.UNDO_HALFMOVE_SHIFT) & 0xFFFF);
+        this.hash = this.hashStack[this.ply];
+    }
+
+    /**
+     * Checks whether the king of the side to move is attacked.
+     * @return  true if the side to move is in check
+     */
+    public boolean isInCheck() {
+        return this.getCheckers() != 0;
+    }
+
+    /**
+     * Works out whether this position could arise in a game. Move generation relies on each side having exactly one
+     * king, on no pawn standing on the first or last rank, and on the side which has just moved not being in check.
+     * @return  what makes the position impossible, or null if it is legal
+     */
+    public String getIllegality() {
+        long whiteKings = this.bitboards[Piece.KING];
+        long blackKings = this.bitboards[Board.TYPE_COUNT + Piece.KING];
+        long pawns = this.bitboards[Piece.PAWN] | this.bitboards[Board.TYPE_COUNT + Piece.PAWN];
+        if(!Board.isPlacementLegal(whiteKings, blackKings, pawns)) {
+            if(Long.bitCount(whiteKings) != 1 || Long.bitCount(blackKings) != 1) {
+                return "each side must have exactly one king";
+            }
+            return "pawns cannot stand on the first or last rank";
+        }
+        int them = this.sideToMove ^ 1;
+        if(this.isSquareAttacked(Long.numberOfTrailingZeros(this.bitboards[them * Board.TYPE_COUNT + Piece.KING]), this.sideToMove)) {
+            return "the side not to move is in check";
+        }
+        return null;
+    }
+
+    /**
+     * Checks the kings and pawns of a position for where they stand, the part of getIllegality() which needs no
+     * attacks. Also used by PositionBatch, over its columns.
+     * @param whiteKings    the bitboard of the white kings
+     * @param blackKings    the bitboard of the black kings
+     * @param pawns         the bitboard of the pawns of both colors
+     * @return  true if each side has exactly one king and no pawn is on the first or last rank
+     */
+    static boolean isPlacementLegal(long whiteKings, long blackKings, long pawns) {
+        return Long.bitCount(whiteKings) == 1 && Long.bitCount(blackKings) == 1 && (pawns & Board.BACK_RANKS) == 0;
+    }
+
+    /**
+     * Checks that a double push could have left an en passant square: it must lie on the sixth rank of the side to
+     * move, with the square itself and the one the pawn started from empty and the pawn just beyond it. Also used by
+     * Fen, BinaryPosition and PositionBatch, which read the square from outside.
+     * @param square        the index of the en passant square within POSITIONS
+     * @param sideToMove    the index of the color to move within Piece.COLORS
+     * @param occupancy     the bitboard of every piece
+     * @param theirPawns    the bitboard of the pawns of the side not to move
+     * @return  what makes the square impossible, or null if it could have been left
+     */
+    static String getEnPassantIllegality(int square, int sideToMove, long occupancy, long theirPawns) {
+        int forward = sideToMove == Piece.WHITE ? 1 : -1;
+        if(square % 8 != (sideToMove == Piece.WHITE ? 5 : 2)) {
+            return "the en passant square must be on rank 6 with white to move or rank 3 with black to move";
+        }
+        if((occupancy & ((1L << square) | (1L << (square + forward)))) != 0) {
+            return "the en passant square and the square the pawn came from must be empty";
+        }
+        if((theirPawns & (1L << (square - forward))) == 0) {
+            return "the pawn which passed the en passant square is missing";
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a pawn of the side to move attacks an en passant square. makeMove() only records the square
+     * then, so a square no pawn can take on is dropped to keep the hash of a position the same however it arose.
+     * @param square        the index of the en passant square within POSITIONS
+     * @param sideToMove    the index of the color to move within Piece.COLORS
+     * @param ourPawns      the bitboard of the pawns of the side to move
+     * @return  true if the square should be kept
+     */
+    static boolean isEnPassantCapturable(int square, int sideToMove, long ourPawns) {
+        return (Bitboards.pawnAttacks(sideToMove ^ 1, square) & ourPawns) != 0;
+    }
+
+    /**
+     * Checks whether a square is attacked by any piece of a color. The attack map of the color is used when it is
+     * cached and up to date, and otherwise only the lines through the square are looked at.
+     * @param square    the index of the square within POSITIONS
+     * @param byColor   the index of the attacking color within Piece.COLORS
+     * @return  true if a piece of the color attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        if((this.attacksValid & (1 << byColor)) != 0) {
+            return (this.attacks[byColor] & (1L << square)) != 0;
+        }
+        return this.isAttacked(square, byColor, this.occupancy);
+    }
+
+    /**
+     * Gets every square attacked by the pieces of a color. The map is cached, and a move only clears it when one of
+     * the squares it changes is attacked by or holds a piece of the color, since no other move can change it.
+     * @param color the index of the color within Piece.COLORS
+     * @return  the bitboard of attacked squares
+     */
+    public long getAttacks(int color) {
+        if((this.attacksValid & (1 << color)) == 0) {
+            int base = color * Board.TYPE_COUNT;
+            long attacks = 0L;
+            for(long pawns = this.bitboards[base + Piece.PAWN]; pawns != 0; pawns &= pawns - 1) {
+                attacks |= Bitboards.pawnAttacks(color, Long.numberOfTrailingZeros(pawns));
+            }
+            for(int type = Piece.KNIGHT; type <= Piece.KING; type++) {
+                for(long pieces = this.bitboards[base + type]; pieces != 0; pieces &= pieces - 1) {
+                    attacks |= Bitboards.attacks(type, Long.numberOfTrailingZeros(pieces), this.occupancy);
+                }
+            }
+            this.attacks[color] = attacks;
+            this.attacksValid |= 1 << color;
+        }
+        return this.attacks[color];
+    }
+
+    /**
+     * Gets every piece, of either color, which attacks a square.
+     * @param square    the index of the square within POSITIONS
+     * @return  the bitboard of the attacking pieces
+     */
+    public long attackersOf(int square) {
+        return this.attackersTo(square, this.occupancy);
+    }
+
+    /**
+     * Gets the pieces giving check to the king of the side to move. Kept until the position changes.
+     * @return  the bitboard of the checking pieces, empty if the side to move is not in check or has no king
+     */
+    public long getCheckers() {
+        this.updateChecks();
+        return this.checkers;
+    }
+
+    /**
+     * Gets the pieces of the side to move which are pinned to their king. Kept until the position changes.
+     * @return  the bitboard of the pinned pieces
+     */
+    public long getPinned() {
+        this.updateChecks();
+        return this.pinned;
+    }
+
+    /**
+     * Checks whether this position has already occurred since the last capture or pawn move, looking back through
+     * the moves played with makeMove().
+     * @return  true if the position is a repetition
+     */
+    public boolean isRepetition() {
+        int oldest = Math.max(0, this.ply - this.halfmoveClock);
+        for(int i = this.ply - 2; i >= oldest; i -= 2) {
+            if(this.hashStack[i] == this.hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of moves played with makeMove() which can still be taken back.
+     * @return  the size of the undo stack
+     */
+    public int getPly() {
+        return this.ply;
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree to a given depth, for checking move generation against known
+     * results.
+     * @param depth the number of plies to search
+     * @return  the number of leaf nodes
+     */
+    public long perft(int depth) {
+        if(depth == 0) {
+            return 1;
+        }
+        return this.perft(new MoveBuffers(depth), depth, 0);
+    }
+
+    /**
+     * Finds the legal move between two positions.
+     * @param from      the position the piece moves from, such as "e2"
+     * @param to        the position the piece moves to, such as "e4"
+     * @param promotion the type the pawn promotes to, such as "Q", or null if the move is not a promotion
+     * @return  the packed move, or Move.NONE if there is no such legal move
+     */
+    public int findMove(String from, String to, String promotion) {
+        int fromSquare = Board.squareIndex(from);
+        int toSquare = Board.squareIndex(to);
+        int promotionType = promotion == null ? Piece.PAWN : Piece.TYPES.indexOf(promotion.toUpperCase());
+        int[] moves = new int[Board.MAX_MOVES];
+        int count = this.generateLegalMoves(moves, 0);
+        for(int i = 0; i < count; i++) {
+            if(Move.getFrom(moves[i]) == fromSquare && Move.getTo(moves[i]) == toSquare && Move.getPromotion(moves[i]) == promotionType) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Finds the legal move written in the form produced by Move.toString(), such as "e2e4" or "e7e8Q".
+     * @param text  the move
+     * @return  the packed move, or Move.NONE if there is no such legal move
+     */
+    public int findMove(String text) {
+        if(text.length() != 4 && text.length() != 5) {
+            return Move.NONE;
+        }
+        return this.findMove(text.substring(0, 2), text.substring(2, 4), text.length() == 5 ? text.substring(4) : null);
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree to a given depth, splitting the work across a ForkJoinPool.
+     * @param depth the number of plies to search
+     * @param pool  the pool to run on
+     * @return  the node count along with the time taken
+     */
+    public Perft perft(int depth, ForkJoinPool pool) {
+        return Perft.run(this, depth, pool);
+    }
+
+    private long perft(MoveBuffers buffers, int depth, int ply) {
+        int count = buffers.generate(this, ply);
+        if(depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        int[] moves = buffers.get(ply);
+        for(int i = 0; i < count; i++) {
+            this.makeMove(moves[i]);
+            nodes += this.perft(buffers, depth - 1, ply + 1);
+            this.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private void push(int move, long undo, long previousHash) {
+        if(this.ply == this.moveStack.length) {
+            this.moveStack = Arrays.copyOf(this.moveStack, this.ply * 2);
+            this.undoStack = Arrays.copyOf(this.undoStack, this.ply * 2);
+            this.hashStack = Arrays.copyOf(this.hashStack, this.ply * 2);
+        }
+        this.moveStack[this.ply] = move;
+        this.undoStack[this.ply] = undo;
+        this.hashStack[this.ply] = previousHash;
+        this.ply++;
+    }
+
+    private static int addPawnMove(int[] moves, int count, int from, int to, int captured) {
+        if(to % 8 == 0 || to % 8 == 7) { //Reaching the last rank
+            moves[count++] = Move.encode(from, to, Piece.QUEEN, captured, 0);
+            moves[count++] = Move.encode(from, to, Piece.KNIGHT, captured, 0);
+            moves[count++] = Move.encode(from, to, Piece.ROOK, captured, 0);
+            moves[count++] = Move.encode(from, to, Piece.BISHOP, captured, 0);
+        } else {
+            moves[count++] = Move.encode(from, to, Piece.PAWN, captured, 0);
+        }
+        return count;
+    }
+
+    private boolean isLegalEnPassant(int from, int captured, long kingBit) {
+        if(kingBit == 0) {
+            return true;
+        }
+        int them = this.sideToMove ^ 1;
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long occupied = (this.occupancy ^ (1L << from) ^ (1L << captured)) | (1L << this.enPassantSquare);
+        long rooks = this.bitboards[them * Board.TYPE_COUNT + Piece.ROOK] | this.bitboards[them * Board.TYPE_COUNT + Piece.QUEEN];
+        long bishops = this.bitboards[them * Board.TYPE_COUNT + Piece.BISHOP] | this.bitboards[them * Board.TYPE_COUNT + Piece.QUEEN];
+        long pawns = this.bitboards[them * Board.TYPE_COUNT + Piece.PAWN] & ~(1L << captured);
+        return (Bitboards.rookAttacks(king, occupied) & rooks) == 0
+                && (Bitboards.bishopAttacks(king, occupied) & bishops) == 0
+                && (Bitboards.knightAttacks(king) & this.bitboards[them * Board.TYPE_COUNT + Piece.KNIGHT]) == 0
+                && (Bitboards.pawnAttacks(this.sideToMove, king) & pawns) == 0;
+    }
+
+    private void updateChecks() {
+        if(this.checksValid) {
+            return;
+        }
+        long kingBit = this.bitboards[this.sideToMove * Board.TYPE_COUNT + Piece.KING];
+        if(kingBit == 0) {
+            this.checkers = 0L;
+            this.pinned = 0L;
+        } else {
+            int king = Long.numberOfTrailingZeros(kingBit);
+            this.checkers = this.attackersTo(king, this.occupancy) & this.colorOccupancy[this.sideToMove ^ 1];
+            this.pinned = this.pinnedPieces(this.sideToMove, king);
+        }
+        this.checksValid = true;
+    }
+
+    /**
+     * Clears the cached attack maps which a piece of a color appearing on or leaving a square changes.
+     */
+    private void invalidate(int square, int color) {
+        long bit = 1L << square;
+        for(int c = 0; c < this.attacks.length; c++) {
+            if(c == color || (this.attacks[c] & bit) != 0) {
+                this.attacksValid &= ~(1 << c);
+            }
+        }
+        this.checksValid = false;
+    }
+
+    private long attackersTo(int square, long occupied) {
+        long rooks = this.bitboards[Piece.ROOK] | this.bitboards[Board.TYPE_COUNT + Piece.ROOK]
+                | this.bitboards[Piece.QUEEN] | this.bitboards[Board.TYPE_COUNT + Piece.QUEEN];
+        long bishops = this.bitboards[Piece.BISHOP] | this.bitboards[Board.TYPE_COUNT + Piece.BISHOP]
+                | this.bitboards[Piece.QUEEN] | this.bitboards[Board.TYPE_COUNT + Piece.QUEEN];
+        return (Bitboards.pawnAttacks(Piece.WHITE, square) & this.bitboards[Board.TYPE_COUNT + Piece.PAWN])
+                | (Bitboards.pawnAttacks(Piece.BLACK, square) & this.bitboards[Piece.PAWN])
+                | (Bitboards.knightAttacks(square) & (this.bitboards[Piece.KNIGHT] | this.bitboards[Board.TYPE_COUNT + Piece.KNIGHT]))
+                | (Bitboards.kingAttacks(square) & (this.bitboards[Piece.KING] | this.bitboards[Board.TYPE_COUNT + Piece.KING]))
+                | (Bitboards.bishopAttacks(square, occupied) & bishops)
+                | (Bitboards.rookAttacks(square, occupied) & rooks);
+    }
+
+    private boolean isAttacked(int square, int byColor, long occupied) {
+        int base = byColor * Board.TYPE_COUNT;
+        return (Bitboards.knightAttacks(square) & this.bitboards[base + Piece.KNIGHT]) != 0
+                || (Bitboards.pawnAttacks(byColor ^ 1, square) & this.bitboards[base + Piece.PAWN]) != 0
+                || (Bitboards.kingAttacks(square) & this.bitboards[base + Piece.KING]) != 0
+                || (Bitboards.bishopAttacks(square, occupied) & (this.bitboards[base + Piece.BISHOP] | this.bitboards[base + Piece.QUEEN])) != 0
+                || (Bitboards.rookAttacks(square, occupied) & (this.bitboards[base + Piece.ROOK] | this.bitboards[base + Piece.QUEEN])) != 0;
+    }
+
+    private long pinnedPieces(int color, int king) {
+        int base = (color ^ 1) * Board.TYPE_COUNT;
+        long theirs = this.colorOccupancy[color ^ 1];
+        long snipers = (Bitboards.rookAttacks(king, theirs) & (this.bitboards[base + Piece.ROOK] | this.bitboards[base + Piece.QUEEN]))
+                | (Bitboards.bishopAttacks(king, theirs) & (this.bitboards[base + Piece.BISHOP] | this.bitboards[base + Piece.QUEEN]));
+        long pinned = 0L;
+        while(snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.between(king, sniper) & this.occupancy;
+            if(Long.bitCount(blockers) == 1) {
+                pinned |= blockers & this.colorOccupancy[color];
+            }
+        }
+        return pinned;
+    }
+
+    private void remove(int square) {
+        int code = this.codes[square];
+        long bit = 1L << square;
+        this.invalidate(square, code / Board.TYPE_COUNT);
+        this.bitboards[code] &= ~bit;
+        this.colorOccupancy[code / Board.TYPE_COUNT] &= ~bit;
+        this.occupancy &= ~bit;
+        this.codes[square] = -1;
+        this.slots[square] = -1;
+        this.hash ^= Zobrist.code(code, square);
+        this.middlegameScore -= Evaluation.middlegame(code, square);
+        this.endgameScore -= Evaluation.endgame(code, square);
+        this.phase -= Evaluation.phase(code);
+        if(code % Board.TYPE_COUNT == Piece.PAWN) {
+            this.pawnHash ^= Zobrist.code(code, square);
+        }
+    }
+
+    private void clearSquares() {
+        this.ply = 0;
+        this.hash = 0L;
+        this.pawnHash = 0L;
+        this.middlegameScore = 0;
+        this.endgameScore = 0;
+        this.phase = 0;
+        this.attacksValid = 0;
+        this.checksValid = false;
+        Arrays.fill(this.bitboards, 0L);
+        Arrays.fill(this.colorOccupancy, 0L);
+        this.occupancy = 0L;
+        Arrays.fill(this.codes, -1);
+        Arrays.fill(this.slots, -1);
+    }
+
+    /**
+     * Gets the castling rights which have their king and rook where castling needs them.
+     * @param castlingRights    a combination of the CASTLE constants
+     * @return  the rights among them which move generation could use on this Board
+     */
+    int getBackedCastlingRights(int castlingRights) {
+        int backed = 0;
+        for(int color = 0; color < Piece.COLORS.size(); color++) {
+            for(int side = 0; side < 2; side++) {
+                if(this.hasCastlingPieces(color, side)) {
+                    backed |= Board.castlingRight(color, side);
+                }
+            }
+        }
+        return castlingRights & backed;
+    }
+
+    private boolean hasCastlingPieces(int color, int side) {
+        return Board.hasCastlingPieces(color, side, this.bitboards[color * Board.TYPE_COUNT + Piece.KING],
+                this.bitboards[color * Board.TYPE_COUNT + Piece.ROOK]);
+    }
+
+    /**
+     * Checks for a rook of a color in the corner it castles from, with the king of the color on its home square. The
+     * king starts on the e file in standard chess and on the d file in generateDefaultStart(), so either counts.
+     * @param kings the bitboard of the kings of the color
+     * @param rooks the bitboard of the rooks of the color
+     */
+    static boolean hasCastlingPieces(int color, int side, long kings, long rooks) {
+        return (rooks & (1L << Board.castlingCorner(color, side))) != 0 && (kings & Board.kingHomes(color)) != 0;
+    }
+
+    private static long kingHomes(int color) {
+        return (1L << (24 + color * 7)) | (1L << (32 + color * 7));
+    }
+
+    static int castlingCorner(int color, int side) {
+        return side * 56 + color * 7;
+    }
+
+    static int castlingRight(int color, int side) {
+        return 1 << (color * 2 + side);
+    }
+
+    private static int rightsLostAt(int square) {
+        switch(square) {
+            case 0:
+                return Board.CASTLE_WHITE_H;
+            case 56:
+                return Board.CASTLE_WHITE_A;
+            case 7:
+                return Board.CASTLE_BLACK_H;
+            case 63:
+                return Board.CASTLE_BLACK_A;
+            default:
+                return 0;
+        }
+    }
+
+    private void place(int slot) {
+        Piece piece = this.pieces[slot];
+        int square = piece.getSquare();
+        int code = piece.getColorIndex() * Board.TYPE_COUNT + piece.getTypeIndex();
+        long bit = 1L << square;
+        this.invalidate(square, piece.getColorIndex());
+        this.bitboards[code] |= bit;
+        this.colorOccupancy[piece.getColorIndex()] |= bit;
+        this.occupancy |= bit;
+        this.codes[square] = code;
+        this.slots[square] = slot;
+        this.hash ^= Zobrist.code(code, square);
+        this.middlegameScore += Evaluation.middlegame(code, square);
+        this.endgameScore += Evaluation.endgame(code, square);
+        this.phase += Evaluation.phase(code);
+        if(code % Board.TYPE_COUNT == Piece.PAWN) {
+            this.pawnHash ^= Zobrist.code(code, square);
+        }
     }
 }
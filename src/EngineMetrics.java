@@ -0,0 +1,221 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * @author woodjamesdee
+ *
+ * Counters of what the engine has been doing, readable over JMX as an MBean so that a running engine can be watched
+ * without stopping it. A Search records into the metrics once per iteration and once when it finishes, after adding
+ * up the counters its threads kept for themselves, so recording adds nothing to the cost of a node. The totals are
+ * striped LongAdders, so many searches running at once, as in a tournament, do not contend over them either.
+ *
+ * Every Search records into the default metrics, registered with the platform MBean server as
+ * "chess:type=EngineMetrics,name=default", unless it is given metrics of its own.
+ */
+public final class EngineMetrics implements EngineMetricsMBean {
+
+    public static final String DOMAIN = "chess";
+
+    private static EngineMetrics defaultMetrics;
+
+    private final LongAdder searches;
+    private final LongAdder nodes;
+    private final LongAdder quiescenceNodes;
+    private final LongAdder cutoffs;
+    private final LongAdder firstMoveCutoffs;
+    private final LongAdder generatedMoves;
+    private final LongAdder hashProbes;
+    private final LongAdder hashHits;
+    private final LongAdder hashCollisions;
+    private final LongAdder nanos;
+    private volatile int lastDepth;
+    private volatile long lastNodesPerSecond;
+    private volatile int lastIterationDepth;
+    private volatile long lastIterationMillis;
+
+    /**
+     * Creates metrics with every counter at zero, which are not registered with any MBean server.
+     */
+    public EngineMetrics() {
+        this.searches = new LongAdder();
+        this.nodes = new LongAdder();
+        this.quiescenceNodes = new LongAdder();
+        this.cutoffs = new LongAdder();
+        this.firstMoveCutoffs = new LongAdder();
+        this.generatedMoves = new LongAdder();
+        this.hashProbes = new LongAdder();
+        this.hashHits = new LongAdder();
+        this.hashCollisions = new LongAdder();
+        this.nanos = new LongAdder();
+    }
+
+    /**
+     * Gets the metrics every Search records into by default, registering them with the platform MBean server the
+     * first time they are asked for.
+     * @return  the default metrics
+     */
+    public static synchronized EngineMetrics getDefault() {
+        if(EngineMetrics.defaultMetrics == null) {
+            EngineMetrics.defaultMetrics = new EngineMetrics();
+            try {
+                EngineMetrics.defaultMetrics.register("default");
+            } catch(JMException e) {
+                //The metrics still count, they just cannot be seen over JMX
+            }
+        }
+        return EngineMetrics.defaultMetrics;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     * @param name  the name to register under, which must not be in use already
+     * @return  the name of the MBean, in DOMAIN with type EngineMetrics
+     * @throws JMException  if the metrics cannot be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = EngineMetrics.getObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Gets the name metrics registered under a name have on the MBean server.
+     * @param name  the name the metrics were registered under
+     * @return  the name of the MBean
+     * @throws JMException  if the name cannot be part of an MBean name
+     */
+    public static ObjectName getObjectName(String name) throws JMException {
+        return new ObjectName(EngineMetrics.DOMAIN + ":type=EngineMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Called by the main search thread after each iteration.
+     */
+    void recordIteration(int depth, long nanos) {
+        this.lastIterationDepth = depth;
+        this.lastIterationMillis = nanos / 1000000;
+    }
+
+    /**
+     * Called by a Search once it has finished, with the counters of all of its threads added up.
+     */
+    void recordSearch(int depth, long nodes, long quiescenceNodes, long cutoffs, long firstMoveCutoffs, long generatedMoves,
+            long hashProbes, long hashHits, long hashCollisions, long nanos) {
+        this.searches.increment();
+        this.nodes.add(nodes);
+        this.quiescenceNodes.add(quiescenceNodes);
+        this.cutoffs.add(cutoffs);
+        this.firstMoveCutoffs.add(firstMoveCutoffs);
+        this.generatedMoves.add(generatedMoves);
+        this.hashProbes.add(hashProbes);
+        this.hashHits.add(hashHits);
+        this.hashCollisions.add(hashCollisions);
+        this.nanos.add(nanos);
+        this.lastDepth = depth;
+        this.lastNodesPerSecond = nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+    }
+
+    @Override
+    public long getSearches() {
+        return this.searches.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return this.nodes.sum();
+    }
+
+    @Override
+    public long getQuiescenceNodes() {
+        return this.quiescenceNodes.sum();
+    }
+
+    @Override
+    public double getQuiescenceShare() {
+        long nodes = this.nodes.sum();
+        return nodes == 0 ? 0 : (double) this.quiescenceNodes.sum() / nodes;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long nanos = this.nanos.sum();
+        return nanos == 0 ? 0 : this.nodes.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getLastNodesPerSecond() {
+        return this.lastNodesPerSecond;
+    }
+
+    @Override
+    public long getCutoffs() {
+        return this.cutoffs.sum();
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        long cutoffs = this.cutoffs.sum();
+        return cutoffs == 0 ? 0 : (double) this.firstMoveCutoffs.sum() / cutoffs;
+    }
+
+    @Override
+    public long getGeneratedMoves() {
+        return this.generatedMoves.sum();
+    }
+
+    @Override
+    public long getHashProbes() {
+        return this.hashProbes.sum();
+    }
+
+    @Override
+    public long getHashHits() {
+        return this.hashHits.sum();
+    }
+
+    @Override
+    public double getHashHitRate() {
+        long probes = this.hashProbes.sum();
+        return probes == 0 ? 0 : (double) this.hashHits.sum() / probes;
+    }
+
+    @Override
+    public long getHashCollisions() {
+        return this.hashCollisions.sum();
+    }
+
+    @Override
+    public int getLastDepth() {
+        return this.lastDepth;
+    }
+
+    @Override
+    public int getLastIterationDepth() {
+        return this.lastIterationDepth;
+    }
+
+    @Override
+    public long getLastIterationMillis() {
+        return this.lastIterationMillis;
+    }
+
+    @Override
+    public void reset() {
+        this.searches.reset();
+        this.nodes.reset();
+        this.quiescenceNodes.reset();
+        this.cutoffs.reset();
+        this.firstMoveCutoffs.reset();
+        this.generatedMoves.reset();
+        this.hashProbes.reset();
+        this.hashHits.reset();
+        this.hashCollisions.reset();
+        this.nanos.reset();
+        this.lastDepth = 0;
+        this.lastNodesPerSecond = 0;
+        this.lastIterationDepth = 0;
+        this.lastIterationMillis = 0;
+    }
+}
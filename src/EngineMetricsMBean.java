@@ -0,0 +1,109 @@
+/**
+ * @author woodjamesdee
+ *
+ * The management interface of EngineMetrics, through which JMX clients such as JConsole read the counters of the
+ * engine. Counts are totals over every search recorded since the metrics were created or reset.
+ */
+public interface EngineMetricsMBean {
+
+    /**
+     * Gets the number of searches recorded.
+     * @return  the search count
+     */
+    long getSearches();
+
+    /**
+     * Gets the number of nodes searched, by all threads.
+     * @return  the node count
+     */
+    long getNodes();
+
+    /**
+     * Gets the number of the nodes searched which were in the quiescence search.
+     * @return  the quiescence node count
+     */
+    long getQuiescenceNodes();
+
+    /**
+     * Gets the fraction of the nodes searched which were in the quiescence search.
+     * @return  the share, from 0 to 1
+     */
+    double getQuiescenceShare();
+
+    /**
+     * Gets the search speed over every search recorded.
+     * @return  the number of nodes per second
+     */
+    double getNodesPerSecond();
+
+    /**
+     * Gets the search speed of the last search recorded.
+     * @return  the number of nodes per second
+     */
+    long getLastNodesPerSecond();
+
+    /**
+     * Gets the number of beta cutoffs made by a move of the main search.
+     * @return  the cutoff count
+     */
+    long getCutoffs();
+
+    /**
+     * Gets the fraction of beta cutoffs made by the first move tried, which shows how good the move ordering is.
+     * @return  the rate, from 0 to 1
+     */
+    double getFirstMoveCutoffRate();
+
+    /**
+     * Gets the number of legal moves generated by the search.
+     * @return  the move count
+     */
+    long getGeneratedMoves();
+
+    /**
+     * Gets the number of transposition table lookups.
+     * @return  the probe count
+     */
+    long getHashProbes();
+
+    /**
+     * Gets the number of transposition table lookups which found their position.
+     * @return  the hit count
+     */
+    long getHashHits();
+
+    /**
+     * Gets the fraction of transposition table lookups which found their position.
+     * @return  the hit rate, from 0 to 1
+     */
+    double getHashHitRate();
+
+    /**
+     * Gets the number of transposition table stores which evicted another position.
+     * @return  the collision count
+     */
+    long getHashCollisions();
+
+    /**
+     * Gets the deepest iteration completed by the last search recorded.
+     * @return  the depth in plies
+     */
+    int getLastDepth();
+
+    /**
+     * Gets the depth of the last iteration completed by any search.
+     * @return  the depth in plies
+     */
+    int getLastIterationDepth();
+
+    /**
+     * Gets the time taken by the last iteration completed by any search.
+     * @return  the time in milliseconds
+     */
+    long getLastIterationMillis();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
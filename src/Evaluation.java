@@ -0,0 +1,296 @@
+/**
+ * @author woodjamesdee
+ *
+ * Static evaluation of a Board, in centipawns from the point of view of the side to move. Each piece is worth its
+ * material value plus a bonus for the square it stands on, with separate values for the middlegame and the endgame
+ * which are blended by how much material is left. Board keeps these sums up to date as pieces are placed and
+ * removed, so evaluating a position only has to add the pawn structure, which is cached in a PawnTable.
+ *
+ * The square tables are written from white's side of the board, rank 8 first and the a file first, and are
+ * symmetric between the files so that they suit both the standard setup and the one used by
+ * Board.generateDefaultStart().
+ */
+public final class Evaluation {
+
+    public static final int[] VALUES = new int[] {100, 320, 330, 500, 900, 0};
+    public static final int MAX_PHASE = 24;
+
+    private static final int[] ENDGAME_VALUES = new int[] {120, 290, 320, 540, 960, 0};
+    private static final int[] PHASES = new int[] {0, 1, 1, 2, 4, 0};
+
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    private static final int[] PASSED_MIDDLEGAME = new int[] {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = new int[] {0, 10, 20, 35, 55, 80, 110, 0};
+
+    private static final int[][] MIDDLEGAME_TABLES = new int[][] {
+            { //Pawn
+                    0,   0,   0,   0,   0,   0,   0,   0,
+                   50,  50,  50,  50,  50,  50,  50,  50,
+                   10,  10,  20,  30,  30,  20,  10,  10,
+                    5,   5,  10,  25,  25,  10,   5,   5,
+                    0,   0,   0,  20,  20,   0,   0,   0,
+                    5,  -5, -10,   0,   0, -10,  -5,   5,
+                    5,  10,  10, -20, -20,  10,  10,   5,
+                    0,   0,   0,   0,   0,   0,   0,   0},
+            { //Knight
+                  -50, -40, -30, -30, -30, -30, -40, -50,
+                  -40, -20,   0,   0,   0,   0, -20, -40,
+                  -30,   0,  10,  15,  15,  10,   0, -30,
+                  -30,   5,  15,  20,  20,  15,   5, -30,
+                  -30,   0,  15,  20,  20,  15,   0, -30,
+                  -30,   5,  10,  15,  15,  10,   5, -30,
+                  -40, -20,   0,   5,   5,   0, -20, -40,
+                  -50, -40, -30, -30, -30, -30, -40, -50},
+            { //Bishop
+                  -20, -10, -10, -10, -10, -10, -10, -20,
+                  -10,   0,   0,   0,   0,   0,   0, -10,
+                  -10,   0,   5,  10,  10,   5,   0, -10,
+                  -10,   5,   5,  10,  10,   5,   5, -10,
+                  -10,   0,  10,  10,  10,  10,   0, -10,
+                  -10,  10,  10,  10,  10,  10,  10, -10,
+                  -10,   5,   0,   0,   0,   0,   5, -10,
+                  -20, -10, -10, -10, -10, -10, -10, -20},
+            { //Rook
+                    0,   0,   0,   0,   0,   0,   0,   0,
+                    5,  10,  10,  10,  10,  10,  10,   5,
+                   -5,   0,   0,   0,   0,   0,   0,  -5,
+                   -5,   0,   0,   0,   0,   0,   0,  -5,
+                   -5,   0,   0,   0,   0,   0,   0,  -5,
+                   -5,   0,   0,   0,   0,   0,   0,  -5,
+                   -5,   0,   0,   0,   0,   0,   0,  -5,
+                    0,   0,   0,   5,   5,   0,   0,   0},
+            { //Queen
+                  -20, -10, -10,  -5,  -5, -10, -10, -20,
+                  -10,   0,   0,   0,   0,   0,   0, -10,
+                  -10,   0,   5,   5,   5,   5,   0, -10,
+                   -5,   0,   5,   5,   5,   5,   0,  -5,
+                   -5,   0,   5,   5,   5,   5,   0,  -5,
+                  -10,   0,   5,   5,   5,   5,   0, -10,
+                  -10,   0,   0,   0,   0,   0,   0, -10,
+                  -20, -10, -10,  -5,  -5, -10, -10, -20},
+            { //King
+                  -30, -40, -40, -50, -50, -40, -40, -30,
+                  -30, -40, -40, -50, -50, -40, -40, -30,
+                  -30, -40, -40, -50, -50, -40, -40, -30,
+                  -30, -40, -40, -50, -50, -40, -40, -30,
+                  -20, -30, -30, -40, -40, -30, -30, -20,
+                  -10, -20, -20, -20, -20, -20, -20, -10,
+                   20,  20,   0,   0,   0,   0,  20,  20,
+                   20,  30,  10,   0,   0,  10,  30,  20}};
+
+    private static final int[][] ENDGAME_TABLES = new int[][] {
+            { //Pawn
+                    0,   0,   0,   0,   0,   0,   0,   0,
+                   80,  80,  80,  80,  80,  80,  80,  80,
+                   50,  50,  50,  50,  50,  50,  50,  50,
+                   30,  30,  30,  30,  30,  30,  30,  30,
+                   15,  15,  15,  15,  15,  15,  15,  15,
+                    5,   5,   5,   5,   5,   5,   5,   5,
+                    0,   0,   0,   0,   0,   0,   0,   0,
+                    0,   0,   0,   0,   0,   0,   0,   0},
+            Evaluation.MIDDLEGAME_TABLES[Piece.KNIGHT],
+            Evaluation.MIDDLEGAME_TABLES[Piece.BISHOP],
+            Evaluation.MIDDLEGAME_TABLES[Piece.ROOK],
+            Evaluation.MIDDLEGAME_TABLES[Piece.QUEEN],
+            { //King
+                  -50, -40, -30, -20, -20, -30, -40, -50,
+                  -30, -20, -10,   0,   0, -10, -20, -30,
+                  -30, -10,  20,  30,  30,  20, -10, -30,
+                  -30, -10,  30,  40,  40,  30, -10, -30,
+                  -30, -10,  30,  40,  40,  30, -10, -30,
+                  -30, -10,  20,  30,  30,  20, -10, -30,
+                  -30, -30,   0,   0,   0,   0, -30, -30,
+                  -50, -30, -30, -30, -30, -30, -30, -50}};
+
+    private static final int CODES = Piece.COLORS.size() * Piece.TYPES.size();
+    private static final int[][] MIDDLEGAME_SCORES = new int[Evaluation.CODES][64];
+    private static final int[][] ENDGAME_SCORES = new int[Evaluation.CODES][64];
+    private static final long FIRST_RANK = 0x0101010101010101L;
+    private static final long LAST_RANK = 0x8080808080808080L;
+
+    static {
+        for(int code = 0; code < Evaluation.CODES; code++) {
+            int type = code % Piece.TYPES.size();
+            int color = code / Piece.TYPES.size();
+            int sign = color == Piece.WHITE ? 1 : -1;
+            for(int square = 0; square < 64; square++) {
+                int index = Evaluation.tableIndex(color, square);
+                Evaluation.MIDDLEGAME_SCORES[code][square] = sign * (Evaluation.VALUES[type] + Evaluation.MIDDLEGAME_TABLES[type][index]);
+                Evaluation.ENDGAME_SCORES[code][square] = sign * (Evaluation.ENDGAME_VALUES[type] + Evaluation.ENDGAME_TABLES[type][index]);
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Evaluates a position, working out its pawn structure from scratch.
+     * @param board the position to evaluate
+     * @return  the score in centipawns, positive when the side to move is better
+     */
+    public static int evaluate(Board board) {
+        return Evaluation.evaluate(board, Evaluation.pawnStructure(board));
+    }
+
+    /**
+     * Evaluates a position, looking its pawn structure up in a cache.
+     * @param board the position to evaluate
+     * @param pawns the cache of pawn structure scores
+     * @return  the score in centipawns, positive when the side to move is better
+     */
+    public static int evaluate(Board board, PawnTable pawns) {
+        return Evaluation.evaluate(board, pawns.get(board));
+    }
+
+    /**
+     * Gets the middlegame score of a piece standing on a square, including its material value.
+     * @param code      the piece code as used by Board, which is color * 6 + type
+     * @param square    the index of the square within Board.POSITIONS
+     * @return  the score in centipawns, positive for white pieces and negative for black pieces
+     */
+    static int middlegame(int code, int square) {
+        return Evaluation.MIDDLEGAME_SCORES[code][square];
+    }
+
+    /**
+     * Gets the endgame score of a piece standing on a square, including its material value.
+     * @param code      the piece code as used by Board, which is color * 6 + type
+     * @param square    the index of the square within Board.POSITIONS
+     * @return  the score in centipawns, positive for white pieces and negative for black pieces
+     */
+    static int endgame(int code, int square) {
+        return Evaluation.ENDGAME_SCORES[code][square];
+    }
+
+    /**
+     * Gets how much a piece counts towards the game phase. All the pieces of the starting position add up to
+     * MAX_PHASE.
+     * @param code  the piece code as used by Board, which is color * 6 + type
+     * @return  the phase weight
+     */
+    static int phase(int code) {
+        return Evaluation.PHASES[code % Piece.TYPES.size()];
+    }
+
+    /**
+     * Scores the doubled, isolated and passed pawns of a position. The result depends only on where the pawns
+     * stand, so it can be cached by the pawn hash of the Board.
+     * @param board the position to score
+     * @return  the middlegame and endgame scores from white's point of view, packed with pack()
+     */
+    static int pawnStructure(Board board) {
+        return Evaluation.pawnStructure(board.getBitboard(Piece.PAWN, Piece.WHITE), board.getBitboard(Piece.PAWN, Piece.BLACK));
+    }
+
+    /**
+     * Scores the doubled, isolated and passed pawns of a set of pawns. Each file of the board is one byte of a
+     * bitboard, so the pawns of every file are looked at together with shifts and masks which do not carry from one
+     * byte into the next, and the only loop is over the ranks a passed pawn can stand on.
+     * @param whitePawns    the bitboard of the white pawns
+     * @param blackPawns    the bitboard of the black pawns
+     * @return  the middlegame and endgame scores from white's point of view, packed with pack()
+     */
+    static int pawnStructure(long whitePawns, long blackPawns) {
+        long whiteFiles = Evaluation.fillFiles(whitePawns);
+        long blackFiles = Evaluation.fillFiles(blackPawns);
+        long blackSpans = Evaluation.fillDown(blackPawns);
+        long whiteSpans = Evaluation.fillUp(whitePawns);
+        long whitePassed = whitePawns & ~(blackSpans | Evaluation.spreadFiles(blackSpans));
+        long blackPassed = blackPawns & ~(whiteSpans | Evaluation.spreadFiles(whiteSpans));
+        int isolated = Long.bitCount(whitePawns & ~Evaluation.spreadFiles(whiteFiles))
+                - Long.bitCount(blackPawns & ~Evaluation.spreadFiles(blackFiles));
+        int doubled = Long.bitCount(whitePawns) - Long.bitCount(whiteFiles) / 8
+                - (Long.bitCount(blackPawns) - Long.bitCount(blackFiles) / 8);
+        int middlegame = isolated * Evaluation.ISOLATED_MIDDLEGAME + doubled * Evaluation.DOUBLED_MIDDLEGAME;
+        int endgame = isolated * Evaluation.ISOLATED_ENDGAME + doubled * Evaluation.DOUBLED_ENDGAME;
+        for(int rank = 1; rank < 7; rank++) {
+            int passed = Long.bitCount((whitePassed >>> rank) & Evaluation.FIRST_RANK)
+                    - Long.bitCount((blackPassed >>> (7 - rank)) & Evaluation.FIRST_RANK);
+            middlegame += passed * Evaluation.PASSED_MIDDLEGAME[rank];
+            endgame += passed * Evaluation.PASSED_ENDGAME[rank];
+        }
+        return Evaluation.pack(middlegame, endgame);
+    }
+
+    /**
+     * Sets every square of each file which holds at least one of a set of squares.
+     */
+    private static long fillFiles(long squares) {
+        long occupied = (((squares & ~Evaluation.LAST_RANK) + ~Evaluation.LAST_RANK) | squares) & Evaluation.LAST_RANK;
+        return (occupied >>> 7) * 0xFF;
+    }
+
+    /**
+     * Moves a set of files onto the files on either side of them.
+     */
+    private static long spreadFiles(long files) {
+        return (files << 8) | (files >>> 8);
+    }
+
+    /**
+     * Gets the squares below each of a set of squares on its file, towards the first rank.
+     */
+    private static long fillDown(long squares) {
+        long below = (squares >>> 1) & 0x7F7F7F7F7F7F7F7FL;
+        below |= (below >>> 1) & 0x7F7F7F7F7F7F7F7FL;
+        below |= (below >>> 2) & 0x3F3F3F3F3F3F3F3FL;
+        return below | ((below >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+    }
+
+    /**
+     * Gets the squares above each of a set of squares on its file, towards the last rank.
+     */
+    private static long fillUp(long squares) {
+        long above = (squares << 1) & 0xFEFEFEFEFEFEFEFEL;
+        above |= (above << 1) & 0xFEFEFEFEFEFEFEFEL;
+        above |= (above << 2) & 0xFCFCFCFCFCFCFCFCL;
+        return above | ((above << 4) & 0xF0F0F0F0F0F0F0F0L);
+    }
+
+    /**
+     * Packs a middlegame and an endgame score, each of which must fit in 16 bits, into one int.
+     * @param middlegame    the middlegame score
+     * @param endgame       the endgame score
+     * @return  the packed scores
+     */
+    static int pack(int middlegame, int endgame) {
+        return (middlegame << 16) | (endgame & 0xFFFF);
+    }
+
+    static int unpackMiddlegame(int packed) {
+        return packed >> 16;
+    }
+
+    static int unpackEndgame(int packed) {
+        return (short) packed;
+    }
+
+    /**
+     * Blends middlegame and endgame scores by the game phase.
+     * @param middlegame    the middlegame score from white's point of view, pawn structure included
+     * @param endgame       the endgame score from white's point of view, pawn structure included
+     * @param phase         the sum of the phase weights of the pieces on the board
+     * @param sideToMove    the color to score the position for
+     * @return  the score in centipawns, positive when the side to move is better
+     */
+    static int blend(int middlegame, int endgame, int phase, int sideToMove) {
+        phase = Math.min(phase, Evaluation.MAX_PHASE); //Promotions can push the phase past the start
+        int score = (middlegame * phase + endgame * (Evaluation.MAX_PHASE - phase)) / Evaluation.MAX_PHASE;
+        return sideToMove == Piece.WHITE ? score : -score;
+    }
+
+    private static int evaluate(Board board, int pawns) {
+        return Evaluation.blend(board.getMiddlegameScore() + Evaluation.unpackMiddlegame(pawns),
+                board.getEndgameScore() + Evaluation.unpackEndgame(pawns), board.getPhase(), board.getSideToMove());
+    }
+
+    private static int tableIndex(int color, int square) {
+        int rank = square % 8;
+        int row = color == Piece.WHITE ? 7 - rank : rank;
+        return row * 8 + (7 - square / 8);
+    }
+}
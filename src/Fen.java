@@ -0,0 +1,265 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author woodjamesdee
+ *
+ * Reads and writes positions in Forsyth-Edwards Notation. Reading works on raw ASCII bytes, such as a memory-mapped
+ * file, and sets up a Board that is reused from one position to the next, so that reading a position allocates
+ * nothing once the Board holds enough Piece objects. EPD lines are read as well: their four position fields are
+ * parsed and the operations after them are left to the caller.
+ *
+ * The en passant square is only kept when a pawn can actually capture on it, as in Board.makeMove(), so that a
+ * position always hashes the same however it was reached. For the same reason castling rights are only kept when
+ * their king and rook stand where castling needs them. Positions which could not arise in a game, as found by
+ * Board.getIllegality(), are rejected, since move generation would go wrong on them, and so are en passant squares
+ * which no double push could have left.
+ */
+public final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String LETTERS = "PNBRQKpnbrqk";
+    private static final int[] CODES = new int[128];
+
+    static {
+        for(int i = 0; i < Fen.CODES.length; i++) {
+            Fen.CODES[i] = Fen.LETTERS.indexOf(i);
+        }
+    }
+
+    private Fen() {
+    }
+
+    /**
+     * Creates a new Board holding the position of a FEN string.
+     * @param fen   the FEN string
+     * @return  the Board
+     */
+    public static Board parse(String fen) {
+        Board board = new Board();
+        Fen.parse(fen, board);
+        return board;
+    }
+
+    /**
+     * Sets up a Board with the position of a FEN string, replacing whatever it held before.
+     * @param fen   the FEN string
+     * @param board the Board to set up
+     */
+    public static void parse(String fen, Board board) {
+        byte[] bytes = fen.getBytes(StandardCharsets.US_ASCII);
+        Fen.parse(ByteBuffer.wrap(bytes), 0, bytes.length, board);
+    }
+
+    /**
+     * Sets up a Board with a position read from ASCII bytes, replacing whatever it held before. The halfmove clock
+     * and fullmove number are optional, so EPD records can be read too. The position of the buffer is not changed.
+     * @param buffer    the bytes to read
+     * @param start     the index of the first byte of the record
+     * @param end       the index after the last byte of the record
+     * @param board     the Board to set up
+     * @return  the index after the last field read, where any EPD operations begin
+     */
+    public static int parse(ByteBuffer buffer, int start, int end, Board board) {
+        board.reset();
+        int index = Fen.skipSpaces(buffer, start, end);
+        int rank = 7;
+        int file = 0;
+        for(; index < end && buffer.get(index) != ' '; index++) {
+            int c = buffer.get(index);
+            if(c == '/') {
+                if(file != 8 || rank == 0) {
+                    throw Fen.invalid(buffer, start, end, "rank " + (rank + 1) + " does not have 8 squares");
+                }
+                rank--;
+                file = 0;
+            } else if(c >= '1' && c <= '8') {
+                file += c - '0';
+            } else if(c > 0 && Fen.CODES[c] >= 0) {
+                if(file < 8) {
+                    int code = Fen.CODES[c];
+                    board.put(code % Piece.TYPES.size(), code / Piece.TYPES.size(), (7 - file) * 8 + rank);
+                }
+                file++;
+            } else {
+                throw Fen.invalid(buffer, start, end, "'" + (char) c + "' is not a valid piece");
+            }
+            if(file > 8) {
+                throw Fen.invalid(buffer, start, end, "rank " + (rank + 1) + " has more than 8 squares");
+            }
+        }
+        if(rank != 0 || file != 8) {
+            throw Fen.invalid(buffer, start, end, "the piece placement does not have 8 full ranks");
+        }
+        index = Fen.skipSpaces(buffer, index, end);
+        int side = index < end ? buffer.get(index++) : 0;
+        if(side != 'w' && side != 'b') {
+            throw Fen.invalid(buffer, start, end, "the side to move must be w or b");
+        }
+        index = Fen.skipSpaces(buffer, index, end);
+        int castlingRights = 0;
+        if(index < end && buffer.get(index) == '-') {
+            index++;
+        } else {
+            for(; index < end && buffer.get(index) != ' '; index++) {
+                switch(buffer.get(index)) {
+                    case 'K':
+                        castlingRights |= Board.CASTLE_WHITE_H;
+                        break;
+                    case 'Q':
+                        castlingRights |= Board.CASTLE_WHITE_A;
+                        break;
+                    case 'k':
+                        castlingRights |= Board.CASTLE_BLACK_H;
+                        break;
+                    case 'q':
+                        castlingRights |= Board.CASTLE_BLACK_A;
+                        break;
+                    default:
+                        throw Fen.invalid(buffer, start, end, "the castling rights must be - or a combination of KQkq");
+                }
+            }
+        }
+        index = Fen.skipSpaces(buffer, index, end);
+        int enPassant = -1;
+        if(index < end && buffer.get(index) == '-') {
+            index++;
+        } else if(index + 1 < end && buffer.get(index) >= 'a' && buffer.get(index) <= 'h'
+                && (buffer.get(index + 1) == '3' || buffer.get(index + 1) == '6')) {
+            enPassant = ('h' - buffer.get(index)) * 8 + buffer.get(index + 1) - '1';
+            index += 2;
+        } else {
+            throw Fen.invalid(buffer, start, end, "the en passant square must be - or a square on rank 3 or 6");
+        }
+        board.setSideToMove(side == 'w' ? Piece.WHITE : Piece.BLACK);
+        String illegality = board.getIllegality();
+        if(illegality != null) {
+            throw Fen.invalid(buffer, start, end, illegality);
+        }
+        board.setCastlingRights(board.getBackedCastlingRights(castlingRights));
+        int us = board.getSideToMove();
+        if(enPassant >= 0) {
+            illegality = Board.getEnPassantIllegality(enPassant, us, board.getOccupancy(), board.getBitboard(Piece.PAWN, us ^ 1));
+            if(illegality != null) {
+                throw Fen.invalid(buffer, start, end, illegality);
+            }
+            if(Board.isEnPassantCapturable(enPassant, us, board.getBitboard(Piece.PAWN, us))) {
+                board.setEnPassantSquare(enPassant);
+            }
+        }
+        int clocks = Fen.skipSpaces(buffer, index, end);
+        int halfmove = Fen.readNumber(buffer, clocks, end);
+        if(halfmove >= 0) {
+            index = Fen.skipDigits(buffer, clocks, end);
+            board.setHalfmoveClock(Math.min(halfmove, 0xFFFF));
+            int fullmoveStart = Fen.skipSpaces(buffer, index, end);
+            int fullmove = Fen.readNumber(buffer, fullmoveStart, end);
+            if(fullmove >= 1) {
+                index = Fen.skipDigits(buffer, fullmoveStart, end);
+                board.setFullmoveNumber(fullmove);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the position of a Board as a FEN string.
+     * @param board the Board to write
+     * @return  the FEN string
+     */
+    public static String toString(Board board) {
+        return Fen.write(board, new StringBuilder(90)).toString();
+    }
+
+    /**
+     * Appends the position of a Board as a FEN string, without creating any intermediate strings.
+     * @param board the Board to write
+     * @param out   where to append the FEN string
+     * @return  out
+     */
+    public static StringBuilder write(Board board, StringBuilder out) {
+        for(int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for(int file = 0; file < 8; file++) {
+                int square = (7 - file) * 8 + rank;
+                int type = board.getPieceType(square);
+                if(type < 0) {
+                    empty++;
+                    continue;
+                }
+                if(empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                out.append(Fen.LETTERS.charAt(board.getPieceColor(square) * Piece.TYPES.size() + type));
+            }
+            if(empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if(rank > 0) {
+                out.append('/');
+            }
+        }
+        out.append(board.getSideToMove() == Piece.WHITE ? " w " : " b ");
+        int rights = board.getCastlingRights();
+        if(rights == 0) {
+            out.append('-');
+        } else {
+            if((rights & Board.CASTLE_WHITE_H) != 0) {
+                out.append('K');
+            }
+            if((rights & Board.CASTLE_WHITE_A) != 0) {
+                out.append('Q');
+            }
+            if((rights & Board.CASTLE_BLACK_H) != 0) {
+                out.append('k');
+            }
+            if((rights & Board.CASTLE_BLACK_A) != 0) {
+                out.append('q');
+            }
+        }
+        out.append(' ');
+        int enPassant = board.getEnPassantSquare();
+        if(enPassant < 0) {
+            out.append('-');
+        } else {
+            out.append((char) ('h' - enPassant / 8)).append((char) ('1' + enPassant % 8));
+        }
+        return out.append(' ').append(board.getHalfmoveClock()).append(' ').append(board.getFullmoveNumber());
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int index, int end) {
+        while(index < end && (buffer.get(index) == ' ' || buffer.get(index) == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipDigits(ByteBuffer buffer, int index, int end) {
+        while(index < end && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int readNumber(ByteBuffer buffer, int index, int end) {
+        int digits = Fen.skipDigits(buffer, index, end);
+        if(digits == index || (digits < end && buffer.get(digits) != ' ' && buffer.get(digits) != '\t')) {
+            return -1; //Not a number on its own, such as the start of an EPD operation
+        }
+        long value = 0;
+        for(int i = index; i < digits; i++) {
+            value = Math.min(value * 10 + buffer.get(i) - '0', Integer.MAX_VALUE);
+        }
+        return (int) value;
+    }
+
+    private static IllegalArgumentException invalid(ByteBuffer buffer, int start, int end, String reason) {
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new IllegalArgumentException("\"" + new String(bytes, StandardCharsets.US_ASCII) + "\" is not a valid FEN: " + reason + ".");
+    }
+}
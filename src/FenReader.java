@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author woodjamesdee
+ *
+ * Streams the positions of a FEN or EPD file, one per line, through a single reusable Board. The file is memory
+ * mapped a window at a time and parsed in place, so files much larger than the heap can be read, and no objects are
+ * created per position. Blank lines and lines starting with '#' are skipped.
+ */
+public final class FenReader {
+
+    /**
+     * Receives each position read from a file.
+     */
+    public interface Handler {
+
+        /**
+         * Called once for each position, in the order they appear in the file. The Board is overwritten by the
+         * next position, so it must be copied if it is needed afterwards.
+         * @param board the position
+         * @param line  the number of the line the position was read from, starting at 1
+         */
+        void position(Board board, long line);
+    }
+
+    private static final int WINDOW = 64 << 20;
+
+    private final int window;
+
+    /**
+     * Creates a new FenReader which maps 64 megabytes of a file at a time.
+     */
+    public FenReader() {
+        this(FenReader.WINDOW);
+    }
+
+    /**
+     * Creates a new FenReader which maps a given amount of a file at a time. No line may be longer than this.
+     * @param window    the number of bytes to map at once
+     */
+    public FenReader(int window) {
+        if(window < 1) {
+            throw new IllegalArgumentException(window + " is not a valid window size.");
+        }
+        this.window = window;
+    }
+
+    /**
+     * Reads every position of a file.
+     * @param path      the file to read
+     * @param board     the Board to set up with each position in turn
+     * @param handler   receives each position
+     * @return  the number of positions read
+     * @throws IOException  if the file cannot be read, or a line does not fit in the window
+     */
+    public long read(Path path, Board board, Handler handler) throws IOException {
+        long positions = 0;
+        long line = 0;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while(offset < size) {
+                int length = (int) Math.min(this.window, size - offset);
+                boolean last = offset + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int start = 0;
+                while(start < length) {
+                    int end = start;
+                    while(end < length && buffer.get(end) != '\n') {
+                        end++;
+                    }
+                    if(end == length && !last) {
+                        break; //The rest of this line is in the next window
+                    }
+                    line++;
+                    int stop = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                    if(!FenReader.isSkipped(buffer, start, stop)) {
+                        try {
+                            Fen.parse(buffer, start, stop, board);
+                        } catch(IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Line " + line + ": " + e.getMessage(), e);
+                        }
+                        handler.position(board, line);
+                        positions++;
+                    }
+                    start = end + 1;
+                }
+                if(start == 0) {
+                    throw new IOException("Line " + (line + 1) + " is longer than the window of " + this.window + " bytes.");
+                }
+                offset = last ? size : offset + start;
+            }
+        }
+        return positions;
+    }
+
+    private static boolean isSkipped(MappedByteBuffer buffer, int start, int end) {
+        for(int i = start; i < end; i++) {
+            byte c = buffer.get(i);
+            if(c != ' ' && c != '\t') {
+                return c == '#';
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author woodjamesdee
+ *
+ * One game in progress, kept compact so that a server can hold very many of them. The position is stored packed as
+ * a BinaryPosition, along with the hashes of the positions since the last capture or pawn move, which are all that
+ * is needed to find repetitions. A Game has no Board of its own: each call is given a Board to work in, which is
+ * set up from the packed position and may be reused for other games afterwards.
+ *
+ * After every move the Game decides whether it is over, by checkmate, stalemate, threefold repetition or the
+ * fifty move rule, checked in that order.
+ */
+public final class Game {
+
+    public static final int ILLEGAL = -1;
+    public static final int ONGOING = 0;
+    public static final int CHECKMATE = 1;
+    public static final int STALEMATE = 2;
+    public static final int REPETITION = 3;
+    public static final int FIFTY_MOVES = 4;
+
+    private static final String[] STATUS_NAMES = {"ongoing", "checkmate", "stalemate", "repetition", "fifty"};
+
+    private final ByteBuffer position;
+    private long[] history;
+    private int historySize;
+    private int status;
+
+    /**
+     * Creates a Game starting from the position of a Board.
+     * @param board the starting position, which is not modified
+     */
+    public Game(Board board) {
+        this.position = ByteBuffer.allocate(BinaryPosition.SIZE);
+        this.history = new long[8];
+        BinaryPosition.write(board, this.position, 0);
+        this.record(board);
+        this.status = this.findStatus(board, new int[Board.MAX_MOVES]);
+    }
+
+    /**
+     * Gets whether the game is over and why.
+     * @return  ONGOING, CHECKMATE, STALEMATE, REPETITION or FIFTY_MOVES
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Sets up a Board with the current position of the game.
+     * @param board the Board to set up, replacing whatever it held before
+     */
+    public void load(Board board) {
+        BinaryPosition.read(this.position, 0, board);
+    }
+
+    /**
+     * Plays a move if it is legal and the game is not over.
+     * @param board the Board to work in, replacing whatever it held before
+     * @param text  the move, such as "e2e4" or "e7e8q"
+     * @return  the status of the game after the move, or ILLEGAL if the move was not played
+     */
+    public int play(Board board, String text) {
+        if(this.status != Game.ONGOING || text.length() < 4 || text.length() > 5) {
+            return Game.ILLEGAL;
+        }
+        int from = Board.squareIndex(text.substring(0, 2));
+        int to = Board.squareIndex(text.substring(2, 4));
+        int promotion = text.length() == 5 ? Piece.TYPES.indexOf(text.substring(4).toUpperCase()) : Piece.PAWN;
+        if(from < 0 || to < 0 || promotion < 0) {
+            return Game.ILLEGAL;
+        }
+        this.load(board);
+        int[] moves = new int[Board.MAX_MOVES];
+        int count = board.generateLegalMoves(moves, 0);
+        for(int i = 0; i < count; i++) {
+            int move = moves[i];
+            if(Move.getFrom(move) == from && Move.getTo(move) == to && Move.getPromotion(move) == promotion) {
+                board.makeMove(move);
+                BinaryPosition.write(board, this.position, 0);
+                this.record(board);
+                this.status = this.findStatus(board, moves);
+                return this.status;
+            }
+        }
+        return Game.ILLEGAL;
+    }
+
+    /**
+     * Writes the legal moves of the current position into a buffer.
+     * @param board the Board to work in, replacing whatever it held before
+     * @param moves the buffer, with room for MAX_MOVES moves
+     * @return  the number of moves written, which is 0 once the game is over
+     */
+    public int getLegalMoves(Board board, int[] moves) {
+        if(this.status != Game.ONGOING) {
+            return 0;
+        }
+        this.load(board);
+        return board.generateLegalMoves(moves, 0);
+    }
+
+    /**
+     * Gets the name of a status, as used by GameServer.
+     * @param status    the status
+     * @return  the name, such as "checkmate"
+     */
+    public static String getStatusName(int status) {
+        if(status < 0 || status >= Game.STATUS_NAMES.length) {
+            throw new IllegalArgumentException(status + " is not a valid status.");
+        }
+        return Game.STATUS_NAMES[status];
+    }
+
+    private void record(Board board) {
+        if(board.getHalfmoveClock() == 0) {
+            this.historySize = 0; //Nothing before a capture or pawn move can occur again
+        }
+        if(this.historySize == this.history.length) {
+            this.history = Arrays.copyOf(this.history, this.historySize * 2);
+        }
+        this.history[this.historySize++] = board.getHash();
+    }
+
+    private int findStatus(Board board, int[] moves) {
+        if(board.generateLegalMoves(moves, 0) == 0) {
+            return board.isInCheck() ? Game.CHECKMATE : Game.STALEMATE;
+        }
+        long hash = board.getHash();
+        int occurrences = 0;
+        for(int i = this.historySize - 1; i >= 0; i -= 2) { //Only positions with the same side to move can match
+            if(this.history[i] == hash) {
+                occurrences++;
+            }
+        }
+        if(occurrences >= 3) {
+            return Game.REPETITION;
+        }
+        return board.getHalfmoveClock() >= 100 ? Game.FIFTY_MOVES : Game.ONGOING;
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * @author woodjamesdee
+ *
+ * Puts load on a GameServer to measure its throughput and latency. Each simulated player opens its own connection,
+ * on its own virtual thread where the Java runtime has them, and plays random legal moves, asking for the legal
+ * moves and then playing one, until its game ends or grows too long, when it starts another. The time from sending
+ * each command to reading its answer is recorded, and all of them are summarized once every player has sent its
+ * share of commands.
+ */
+public final class GameLoadClient {
+
+    private static final int MAX_GAME_PLIES = 400;
+
+    private final int port;
+    private final int players;
+    private final int commands;
+    private final long seed;
+
+    /**
+     * Creates a new GameLoadClient.
+     * @param port      the port of the server on the loopback address
+     * @param players   the number of connections to play on at once
+     * @param commands  the number of commands each player sends
+     * @param seed      the seed of the random moves
+     */
+    public GameLoadClient(int port, int players, int commands, long seed) {
+        if(players < 1 || commands < 1) {
+            throw new IllegalArgumentException(players + " players sending " + commands + " commands is not a valid load.");
+        }
+        this.port = port;
+        this.players = players;
+        this.commands = commands;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs a load test and prints its report.
+     * @param args  the port, the number of players and the number of commands per player, which default to
+     *              GameServer.DEFAULT_PORT, 10000 and 200
+     * @throws IOException  if a player cannot connect or loses its connection
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int commands = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        System.out.println(new GameLoadClient(port, players, commands, System.nanoTime()).run());
+    }
+
+    /**
+     * Plays every player to the end.
+     * @return  the summary of the latencies seen
+     * @throws IOException  if a player cannot connect or loses its connection
+     */
+    public Report run() throws IOException {
+        ExecutorService executor = GameServer.newSessionExecutor("game-load");
+        long start = System.nanoTime();
+        long[][] latencies = new long[this.players][];
+        try {
+            ArrayList<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+            for(int i = 0; i < this.players; i++) {
+                final Random random = new Random(this.seed + i);
+                futures.add(executor.submit(() -> this.play(random)));
+            }
+            for(int i = 0; i < this.players; i++) {
+                try {
+                    latencies[i] = futures.get(i).get();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("The load test was interrupted.", e);
+                } catch(ExecutionException e) {
+                    if(e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException("A player failed.", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report(latencies, System.nanoTime() - start);
+    }
+
+    private long[] play(Random random) throws IOException {
+        long[] latencies = new long[this.commands];
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream(), 4096);
+            OutputStream output = socket.getOutputStream();
+            StringBuilder line = new StringBuilder();
+            int plies = GameLoadClient.MAX_GAME_PLIES;
+            String[] legal = new String[0];
+            for(int sent = 0; sent < this.commands; sent++) {
+                String command;
+                if(plies >= GameLoadClient.MAX_GAME_PLIES) {
+                    command = "new";
+                } else if(legal.length == 0) {
+                    command = "moves";
+                } else {
+                    command = "move " + legal[random.nextInt(legal.length)];
+                }
+                long before = System.nanoTime();
+                output.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+                if(!GameServer.readLine(input, line)) {
+                    throw new IOException("The server closed the connection.");
+                }
+                latencies[sent] = System.nanoTime() - before;
+                String response = line.toString();
+                if(response.startsWith("error") || response.startsWith("illegal")) {
+                    throw new IOException(command + " was answered with " + response + ".");
+                }
+                if(command.equals("new")) {
+                    plies = 0;
+                } else if(command.equals("moves")) {
+                    legal = response.length() > 6 ? response.substring(6).split(" ") : new String[0];
+                    if(legal.length == 0) {
+                        plies = GameLoadClient.MAX_GAME_PLIES;
+                    }
+                } else {
+                    legal = new String[0];
+                    plies = response.equals("ok ongoing") ? plies + 1 : GameLoadClient.MAX_GAME_PLIES;
+                }
+            }
+            output.write("quit\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return latencies;
+    }
+
+    /**
+     * The latencies of the commands sent during a load test.
+     */
+    public static final class Report {
+
+        private final long[] latencies;
+        private final long nanos;
+
+        Report(long[][] latencies, long nanos) {
+            int count = 0;
+            for(long[] player : latencies) {
+                count += player.length;
+            }
+            this.latencies = new long[count];
+            int index = 0;
+            for(long[] player : latencies) {
+                System.arraycopy(player, 0, this.latencies, index, player.length);
+                index += player.length;
+            }
+            Arrays.sort(this.latencies);
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the number of commands answered.
+         * @return  the command count
+         */
+        public long getCommands() {
+            return this.latencies.length;
+        }
+
+        /**
+         * Gets the number of commands answered per second over the whole test.
+         * @return  the throughput
+         */
+        public double getCommandsPerSecond() {
+            return this.nanos == 0 ? 0 : this.latencies.length * 1e9 / this.nanos;
+        }
+
+        /**
+         * Gets the latency within which a fraction of the commands were answered.
+         * @param fraction  the fraction, such as 0.99
+         * @return  the latency in nanoseconds
+         */
+        public long getPercentile(double fraction) {
+            if(fraction < 0 || fraction > 1) {
+                throw new IllegalArgumentException(fraction + " is not a valid fraction.");
+            }
+            if(this.latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * this.latencies.length) - 1;
+            return this.latencies[Math.max(0, index)];
+        }
+
+        @Override
+        public String toString() {
+            return "commands " + this.getCommands() + " per second " + (long) this.getCommandsPerSecond()
+                    + " p50 " + this.getPercentile(0.5) / 1000 + "us p99 " + this.getPercentile(0.99) / 1000
+                    + "us max " + this.getPercentile(1) / 1000 + "us";
+        }
+    }
+}
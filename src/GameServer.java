@@ -0,0 +1,303 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author woodjamesdee
+ *
+ * Hosts games over a line protocol on a local TCP port. Each connection is one session, which plays one game at a
+ * time and runs on a thread of its own: a virtual thread when the Java runtime has them, and a platform thread
+ * otherwise. A session keeps only its Game; the Boards which moves are checked on are borrowed from a shared pool
+ * for the length of a command, so the server needs about as many Boards as it has commands in flight, however many
+ * games it holds.
+ *
+ * Each command is one line, answered by one line:
+ *
+ *  new             starts a game from the starting position        ok ongoing
+ *  new fen <fen>   starts a game from a position                   ok <status>
+ *  move <move>     plays a move, such as e2e4 or e7e8q             ok <status>, or illegal <move>
+ *  moves           lists the legal moves                           moves <move> ...
+ *  fen             shows the position                              fen <fen>
+ *  quit            closes the connection
+ *
+ * The status is one of the names given by Game.getStatusName(). Anything else is answered with "error" and a reason,
+ * as is a position which could not arise in a game, since moves could not be checked properly from it. A command
+ * which fails in any other way is answered the same way, and the session carries on.
+ */
+public final class GameServer {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final int BACKLOG = 4096;
+    private static final int MAX_LINE = 512;
+
+    private final ServerSocket server;
+    private final ExecutorService sessions;
+    private final Thread acceptor;
+    private final Set<Socket> sockets;
+    private final ConcurrentLinkedQueue<Board> boards;
+    private final LongAdder games;
+    private final LongAdder moves;
+
+    /**
+     * Starts a server accepting connections on the loopback address.
+     * @param port  the port to listen on, or 0 for any free port
+     * @throws IOException  if the port cannot be opened
+     */
+    public GameServer(int port) throws IOException {
+        this.server = new ServerSocket(port, GameServer.BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessions = GameServer.newSessionExecutor("game-session");
+        this.sockets = ConcurrentHashMap.newKeySet();
+        this.boards = new ConcurrentLinkedQueue<Board>();
+        this.games = new LongAdder();
+        this.moves = new LongAdder();
+        this.acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                GameServer.this.accept();
+            }
+        }, "game-server");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Runs a server until the process is killed.
+     * @param args  the port to listen on, DEFAULT_PORT if not given
+     * @throws IOException  if the port cannot be opened
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT);
+        System.out.println("Listening on port " + server.getPort());
+        server.acceptor.join();
+    }
+
+    /**
+     * Creates an executor which runs each task on a new virtual thread, or on pooled daemon platform threads if the
+     * Java runtime has no virtual threads. Virtual threads are looked up reflectively, so the code still builds for
+     * older releases.
+     * @param name  the name of the platform threads, which are numbered after it
+     * @return  the executor
+     */
+    static ExecutorService newSessionExecutor(final String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, name + "-" + (++this.count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return  the port
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Gets the number of connections currently open.
+     * @return  the number of sessions
+     */
+    public int getSessions() {
+        return this.sockets.size();
+    }
+
+    /**
+     * Gets the number of games started so far.
+     * @return  the game count
+     */
+    public long getGames() {
+        return this.games.sum();
+    }
+
+    /**
+     * Gets the number of legal moves played so far.
+     * @return  the move count
+     */
+    public long getMoves() {
+        return this.moves.sum();
+    }
+
+    /**
+     * Stops accepting connections and closes every open one.
+     * @throws IOException  if the server socket cannot be closed
+     */
+    public void close() throws IOException {
+        this.server.close();
+        for(Socket socket : this.sockets) {
+            socket.close();
+        }
+        this.sessions.shutdownNow();
+    }
+
+    private void accept() {
+        while(!this.server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = this.server.accept();
+            } catch(IOException e) {
+                continue; //Closing the server ends the loop
+            }
+            this.sockets.add(socket);
+            this.sessions.execute(new Runnable() {
+                @Override
+                public void run() {
+                    GameServer.this.serve(socket);
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) {
+        Game game = null;
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream(), GameServer.MAX_LINE);
+            OutputStream output = socket.getOutputStream();
+            StringBuilder line = new StringBuilder();
+            StringBuilder response = new StringBuilder();
+            while(GameServer.readLine(input, line)) {
+                String[] tokens = line.toString().trim().split("\\s+", 3);
+                if(tokens[0].equals("quit")) {
+                    break;
+                }
+                response.setLength(0);
+                Board board = this.boards.poll();
+                if(board == null) {
+                    board = new Board();
+                }
+                try {
+                    game = this.respond(game, board, tokens, response);
+                    this.boards.offer(board);
+                } catch(RuntimeException e) {
+                    //Only the command fails, not the session. The Board may be left part way through a move, so it
+                    //is dropped rather than pooled
+                    response.setLength(0);
+                    response.append("error ").append(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                }
+                output.write(response.append('\n').toString().getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch(IOException e) {
+            //The client went away, which ends the session all the same
+        } finally {
+            this.sockets.remove(socket);
+            try {
+                socket.close();
+            } catch(IOException e) {
+                //Nothing more can be done with the socket
+            }
+        }
+    }
+
+    /**
+     * Carries out one command of a session.
+     * @return  the game of the session afterwards
+     */
+    private Game respond(Game game, Board board, String[] tokens, StringBuilder response) {
+        switch(tokens[0]) {
+            case "new":
+                try {
+                    if(tokens.length == 3 && tokens[1].equals("fen")) {
+                        Fen.parse(tokens[2], board);
+                    } else if(tokens.length == 1) {
+                        Fen.parse(Fen.START, board);
+                    } else {
+                        response.append("error new takes nothing or a fen");
+                        return game;
+                    }
+                } catch(IllegalArgumentException e) {
+                    response.append("error ").append(e.getMessage());
+                    return game;
+                }
+                String illegality = board.getIllegality();
+                if(illegality != null) {
+                    response.append("error ").append(illegality);
+                    return game;
+                }
+                game = new Game(board);
+                this.games.increment();
+                response.append("ok ").append(Game.getStatusName(game.getStatus()));
+                return game;
+            case "move":
+                if(game == null || tokens.length != 2) {
+                    response.append(game == null ? "error no game" : "error move takes one move");
+                } else if(game.getStatus() != Game.ONGOING) {
+                    response.append("error the game is over");
+                } else {
+                    int status = game.play(board, tokens[1]);
+                    if(status == Game.ILLEGAL) {
+                        response.append("illegal ").append(tokens[1]);
+                    } else {
+                        this.moves.increment();
+                        response.append("ok ").append(Game.getStatusName(status));
+                    }
+                }
+                return game;
+            case "moves":
+                if(game == null) {
+                    response.append("error no game");
+                } else {
+                    int[] moves = new int[Board.MAX_MOVES];
+                    int count = game.getLegalMoves(board, moves);
+                    response.append("moves");
+                    for(int i = 0; i < count; i++) {
+                        response.append(' ').append(Move.toString(moves[i]).toLowerCase());
+                    }
+                }
+                return game;
+            case "fen":
+                if(game == null) {
+                    response.append("error no game");
+                } else {
+                    game.load(board);
+                    Fen.write(board, response.append("fen "));
+                }
+                return game;
+            default:
+                response.append("error unknown command");
+                return game;
+        }
+    }
+
+    /**
+     * Reads one line of ASCII, dropping its line ending. Lines longer than MAX_LINE are cut short.
+     * @return  false if the stream ended before a line began
+     */
+    static boolean readLine(InputStream input, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int next = input.read();
+        if(next < 0) {
+            return false;
+        }
+        while(next >= 0 && next != '\n') {
+            if(next != '\r' && line.length() < GameServer.MAX_LINE) {
+                line.append((char) next);
+            }
+            next = input.read();
+        }
+        return true;
+    }
+}
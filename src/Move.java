@@ -0,0 +1,139 @@
+/**
+ * @author woodjamesdee
+ *
+ * Encodes a move of the game of Chess into a single int so that moves can be generated and stored without creating
+ * any objects. Squares are indices within Board.POSITIONS and piece kinds are indices within Piece.TYPES.
+ *
+ * Bits 0-5 hold the from square, bits 6-11 the to square, bits 12-14 the promotion type, bits 15-17 the type of the
+ * captured piece and bits 18-21 the flags.
+ */
+public final class Move {
+
+    public static final int NONE = 0;
+
+    public static final int DOUBLE_PUSH = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLE = 4;
+    public static final int CAPTURE = 8;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 15;
+    private static final int FLAGS_SHIFT = 18;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move which does not capture anything into an int.
+     * @param from      the square the piece moves from
+     * @param to        the square the piece moves to
+     * @param promotion the type the pawn promotes to, or Piece.PAWN if the move is not a promotion
+     * @param flags     any combination of DOUBLE_PUSH and CASTLE
+     * @return  the packed move
+     */
+    public static int encode(int from, int to, int promotion, int flags) {
+        return from | (to << Move.TO_SHIFT) | (promotion << Move.PROMOTION_SHIFT) | (flags << Move.FLAGS_SHIFT);
+    }
+
+    /**
+     * Packs a move into an int.
+     * @param from      the square the piece moves from
+     * @param to        the square the piece moves to
+     * @param promotion the type the pawn promotes to, or Piece.PAWN if the move is not a promotion
+     * @param captured  the type of the captured piece, or -1 if the move is not a capture
+     * @param flags     any combination of DOUBLE_PUSH, EN_PASSANT and CASTLE
+     * @return  the packed move
+     */
+    public static int encode(int from, int to, int promotion, int captured, int flags) {
+        if(captured < 0) {
+            return Move.encode(from, to, promotion, flags);
+        }
+        return Move.encode(from, to, promotion, flags | Move.CAPTURE) | (captured << Move.CAPTURED_SHIFT);
+    }
+
+    /**
+     * Gets the square a move starts from.
+     * @param move  the packed move
+     * @return  the index of the square
+     */
+    public static int getFrom(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * Gets the square a move ends on.
+     * @param move  the packed move
+     * @return  the index of the square
+     */
+    public static int getTo(int move) {
+        return (move >>> Move.TO_SHIFT) & 0x3F;
+    }
+
+    /**
+     * Gets the type a pawn promotes to.
+     * @param move  the packed move
+     * @return  the index of the type within Piece.TYPES, or Piece.PAWN if the move is not a promotion
+     */
+    public static int getPromotion(int move) {
+        return (move >>> Move.PROMOTION_SHIFT) & 0x7;
+    }
+
+    /**
+     * Checks whether a move captures a piece, including captures en passant.
+     * @param move  the packed move
+     * @return  true if the move is a capture
+     */
+    public static boolean isCapture(int move) {
+        return (move & (Move.CAPTURE << Move.FLAGS_SHIFT)) != 0;
+    }
+
+    /**
+     * Gets the type of the piece a move captures.
+     * @param move  the packed move
+     * @return  the index of the type within Piece.TYPES, or -1 if the move is not a capture
+     */
+    public static int getCaptured(int move) {
+        return Move.isCapture(move) ? (move >>> Move.CAPTURED_SHIFT) & 0x7 : -1;
+    }
+
+    /**
+     * Gets the special move flags of a move.
+     * @param move  the packed move
+     * @return  any combination of DOUBLE_PUSH, EN_PASSANT, CASTLE and CAPTURE
+     */
+    public static int getFlags(int move) {
+        return (move >>> Move.FLAGS_SHIFT) & 0xF;
+    }
+
+    /**
+     * Gets the board position a move starts from.
+     * @param move  the packed move
+     * @return  the position, such as "e2"
+     */
+    public static String getFromPosition(int move) {
+        return Board.squareName(Move.getFrom(move));
+    }
+
+    /**
+     * Gets the board position a move ends on.
+     * @param move  the packed move
+     * @return  the position, such as "e4"
+     */
+    public static String getToPosition(int move) {
+        return Board.squareName(Move.getTo(move));
+    }
+
+    /**
+     * Writes a move in the form used by Board.POSITIONS, such as "e2e4" or "e7e8Q".
+     * @param move  the packed move
+     * @return  the move as a String
+     */
+    public static String toString(int move) {
+        String text = Board.squareName(Move.getFrom(move)) + Board.squareName(Move.getTo(move));
+        if(Move.getPromotion(move) != Piece.PAWN) {
+            text += Piece.TYPES.get(Move.getPromotion(move));
+        }
+        return text;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * @author woodjamesdee
+ *
+ * Preallocated move buffers, one per ply of a search, for use with Board.generateLegalMoves(int[], int). Allocating
+ * the buffers once up front means that generating moves while walking the move tree creates no garbage.
+ */
+public final class MoveBuffers {
+
+    private final int[][] buffers;
+    private final int[] counts;
+
+    /**
+     * Creates buffers for a given number of plies, each able to hold Board.MAX_MOVES moves.
+     * @param plies the deepest ply the buffers will be used for, plus one
+     */
+    public MoveBuffers(int plies) {
+        this.buffers = new int[plies][Board.MAX_MOVES];
+        this.counts = new int[plies];
+    }
+
+    /**
+     * Gets the buffer for a ply.
+     * @param ply   the distance from the root
+     * @return  the buffer, which is reused by every later call for the same ply
+     */
+    public int[] get(int ply) {
+        return this.buffers[ply];
+    }
+
+    /**
+     * Generates the legal moves of a Board into the buffer for a ply.
+     * @param board the position to generate moves for
+     * @param ply   the distance from the root
+     * @return  the number of moves generated
+     */
+    public int generate(Board board, int ply) {
+        this.counts[ply] = board.generateLegalMoves(this.buffers[ply], 0);
+        return this.counts[ply];
+    }
+
+    /**
+     * Gets the number of moves last generated for a ply.
+     * @param ply   the distance from the root
+     * @return  the number of moves
+     */
+    public int count(int ply) {
+        return this.counts[ply];
+    }
+
+    /**
+     * Gets the number of plies these buffers cover.
+     * @return  the number of plies
+     */
+    public int size() {
+        return this.buffers.length;
+    }
+}
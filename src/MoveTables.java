@@ -0,0 +1,118 @@
+/**
+ * @author woodjamesdee
+ *
+ * Precomputed move tables for every piece type on every square of the Board. The tables are built once when the
+ * class is loaded and are shared by all Piece objects, so looking up the potential moves of a Piece neither scans
+ * Board.POSITIONS nor allocates any new arrays.
+ *
+ * Squares are identified by their index into Board.POSITIONS (0 for "h1" through 63 for "a8"). Each table entry
+ * has the same layout as the lists returned by Piece.getPotentialMoves(): an array of rays, each ray ordered from
+ * the nearest square outwards.
+ */
+public final class MoveTables {
+
+    private static final int MOVED = 1;
+
+    private static final int[][][][][][] SQUARES = new int[Piece.COLORS.size()][2][Piece.TYPES.size()][64][][];
+    private static final String[][][][][][] NAMES = new String[Piece.COLORS.size()][2][Piece.TYPES.size()][64][][];
+
+    static {
+        for(int square = 0; square < 64; square++) {
+            int[][] knight = new int[][] {MoveTables.leaps(square, new int[] {2, 1, -1, -2, -2, -1, 1, 2}, new int[] {1, 2, 2, 1, -1, -2, -2, -1})};
+            int[][] bishop = new int[][] {MoveTables.ray(square, -1, -1), MoveTables.ray(square, -1, 1), MoveTables.ray(square, 1, -1), MoveTables.ray(square, 1, 1)};
+            int[][] rook = new int[][] {MoveTables.ray(square, -1, 0), MoveTables.ray(square, 0, -1), MoveTables.ray(square, 0, 1), MoveTables.ray(square, 1, 0)};
+            int[][] queen = new int[][] {bishop[0], bishop[1], bishop[2], bishop[3], rook[0], rook[1], rook[2], rook[3]};
+            int[] kingSteps = MoveTables.leaps(square, new int[] {-1, -1, -1, 0, 1, 1, 1, 0}, new int[] {1, 0, -1, -1, -1, 0, 1, 1});
+            int[][] movedKing = new int[][] {kingSteps};
+            int[][] king = new int[][] {kingSteps, MoveTables.leaps(square, new int[] {-2, 2}, new int[] {0, 0})};
+            for(int color = 0; color < Piece.COLORS.size(); color++) {
+                int forward = color == 0 ? 1 : -1;
+                int[] pawnSteps = MoveTables.leaps(square, new int[] {forward, forward, forward}, new int[] {-1, 0, 1});
+                int[][] movedPawn = new int[][] {pawnSteps};
+                int[][] pawn = new int[][] {pawnSteps, MoveTables.leaps(square, new int[] {2 * forward}, new int[] {0})};
+                for(int moved = 0; moved < 2; moved++) {
+                    int[][][][] byType = MoveTables.SQUARES[color][moved];
+                    byType[0][square] = moved == MOVED ? movedPawn : pawn;
+                    byType[1][square] = knight;
+                    byType[2][square] = bishop;
+                    byType[3][square] = rook;
+                    byType[4][square] = queen;
+                    byType[5][square] = moved == MOVED ? movedKing : king;
+                    for(int type = 0; type < Piece.TYPES.size(); type++) {
+                        MoveTables.NAMES[color][moved][type][square] = MoveTables.toNames(byType[type][square]);
+                    }
+                }
+            }
+        }
+    }
+
+    private MoveTables() {
+    }
+
+    /**
+     * Gets the precomputed potential moves of a piece as square indices. The returned arrays are shared and must not
+     * be modified by the caller.
+     * @param type      the index of the piece type within Piece.TYPES
+     * @param color     the index of the piece color within Piece.COLORS
+     * @param hasMoved  whether the piece has moved yet
+     * @param square    the index of the square the piece stands on
+     * @return  the rays of potential destination squares
+     */
+    public static int[][] getSquares(int type, int color, boolean hasMoved, int square) {
+        return MoveTables.SQUARES[color][hasMoved ? MOVED : 0][type][square];
+    }
+
+    /**
+     * Gets the precomputed potential moves of a piece as position names. The returned arrays are shared and must not
+     * be modified by the caller.
+     * @param type      the index of the piece type within Piece.TYPES
+     * @param color     the index of the piece color within Piece.COLORS
+     * @param hasMoved  whether the piece has moved yet
+     * @param square    the index of the square the piece stands on
+     * @return  the rays of potential destination positions
+     */
+    public static String[][] getNames(int type, int color, boolean hasMoved, int square) {
+        return MoveTables.NAMES[color][hasMoved ? MOVED : 0][type][square];
+    }
+
+    private static int[] leaps(int square, int[] ranks, int[] files) {
+        int[] targets = new int[ranks.length];
+        int count = 0;
+        for(int i = 0; i < ranks.length; i++) {
+            int rank = square % 8 + ranks[i];
+            int file = square / 8 + files[i];
+            if(rank >= 0 && rank < 8 && file >= 0 && file < 8) { //Only keep leaps which land on the Board
+                targets[count++] = file * 8 + rank;
+            }
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(targets, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static int[] ray(int square, int fileStep, int rankStep) {
+        int[] targets = new int[7];
+        int count = 0;
+        int rank = square % 8 + rankStep;
+        int file = square / 8 + fileStep;
+        while(rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+            targets[count++] = file * 8 + rank;
+            rank += rankStep;
+            file += fileStep;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(targets, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static String[][] toNames(int[][] rays) {
+        String[][] names = new String[rays.length][];
+        for(int i = 0; i < rays.length; i++) {
+            names[i] = new String[rays[i].length];
+            for(int j = 0; j < rays[i].length; j++) {
+                names[i][j] = Board.POSITIONS.get(rays[i][j]);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author woodjamesdee
+ *
+ * An opening book file, memory-mapped and searched in place so that opening even a very large book reads nothing
+ * but its header. The file starts with a 16 byte header, the magic number and the number of entries, followed by
+ * 16 byte entries sorted by key:
+ *
+ *  bytes 0-7   the Zobrist hash of the position
+ *  bytes 8-11  the packed move, as generated by Board
+ *  bytes 12-13 the weight of the move, such as how often it was played
+ *  bytes 14-15 zero
+ *
+ * A position has one entry per book move. Lookups binary search the keys, touching only the pages they need.
+ */
+public final class OpeningBook {
+
+    private static final long MAGIC = 0x43484553534B3031L; //"CHESSK01"
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int SEGMENT_ENTRIES = 1 << 26;
+
+    private final MappedByteBuffer[] segments;
+    private final int segmentEntries;
+    private final long size;
+
+    private OpeningBook(MappedByteBuffer[] segments, int segmentEntries, long size) {
+        this.segments = segments;
+        this.segmentEntries = segmentEntries;
+        this.size = size;
+    }
+
+    /**
+     * Opens a book file.
+     * @param path  the file to open
+     * @return  the book
+     * @throws IOException  if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        return OpeningBook.open(path, OpeningBook.SEGMENT_ENTRIES);
+    }
+
+    /**
+     * Opens a book file, mapping it in pieces of a given number of entries, since one mapping cannot exceed 2 GB.
+     */
+    static OpeningBook open(Path path, int segmentEntries) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(OpeningBook.HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                continue;
+            }
+            if(header.hasRemaining() || header.getLong(0) != OpeningBook.MAGIC) {
+                throw new IOException(path + " is not an opening book.");
+            }
+            long size = header.getLong(8);
+            if(size < 0 || channel.size() != OpeningBook.HEADER_SIZE + size * OpeningBook.ENTRY_SIZE) {
+                throw new IOException(path + " is truncated.");
+            }
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segmentEntries - 1) / segmentEntries)];
+            for(int i = 0; i < segments.length; i++) {
+                long first = (long) i * segmentEntries;
+                long entries = Math.min(segmentEntries, size - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, OpeningBook.HEADER_SIZE + first * OpeningBook.ENTRY_SIZE,
+                        entries * OpeningBook.ENTRY_SIZE);
+            }
+            return new OpeningBook(segments, segmentEntries, size);
+        }
+    }
+
+    /**
+     * Gets the number of entries in this book.
+     * @return  the number of entries
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Looks up the book moves of a position.
+     * @param key       the Zobrist hash of the position
+     * @param moves     receives the packed moves
+     * @param weights   receives the weight of each move, and must be as long as moves
+     * @return  the number of moves found, at most the length of moves
+     */
+    public int probe(long key, int[] moves, int[] weights) {
+        long low = 0;
+        long high = this.size;
+        while(low < high) {
+            long middle = (low + high) >>> 1;
+            if(this.getKey(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int count = 0;
+        for(long i = low; i < this.size && count < moves.length && this.getKey(i) == key; i++) {
+            MappedByteBuffer segment = this.segments[(int) (i / this.segmentEntries)];
+            int offset = (int) (i % this.segmentEntries) * OpeningBook.ENTRY_SIZE;
+            moves[count] = segment.getInt(offset + 8);
+            weights[count] = segment.getShort(offset + 12) & 0xFFFF;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Chooses a book move for a position at random, in proportion to the weights of the moves. Moves which are not
+     * legal in the position, as can happen when two positions share a hash, are never chosen.
+     * @param board     the position
+     * @param random    the source of randomness
+     * @return  the packed move, or Move.NONE if the position is not in the book
+     */
+    public int choose(Board board, Random random) {
+        int[] moves = new int[Board.MAX_MOVES];
+        int[] weights = new int[Board.MAX_MOVES];
+        int count = this.probe(board.getHash(), moves, weights);
+        int[] legal = new int[Board.MAX_MOVES];
+        int legalCount = board.generateLegalMoves(legal, 0);
+        long total = 0;
+        for(int i = 0; i < count; i++) {
+            boolean found = false;
+            for(int j = 0; j < legalCount && !found; j++) {
+                found = legal[j] == moves[i];
+            }
+            if(!found) {
+                weights[i] = 0;
+            }
+            total += weights[i];
+        }
+        if(total == 0) {
+            return Move.NONE;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for(int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if(pick < 0) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    private long getKey(long index) {
+        return this.segments[(int) (index / this.segmentEntries)].getLong((int) (index % this.segmentEntries) * OpeningBook.ENTRY_SIZE);
+    }
+
+    /**
+     * Collects book moves in memory and writes them out as a sorted book file.
+     */
+    public static final class Builder {
+
+        private long[] keys;
+        private int[] moves;
+        private int[] weights;
+        private int count;
+
+        /**
+         * Creates an empty Builder.
+         */
+        public Builder() {
+            this.keys = new long[1024];
+            this.moves = new int[1024];
+            this.weights = new int[1024];
+        }
+
+        /**
+         * Adds a book move. Adding the same move for the same position again adds to its weight.
+         * @param key       the Zobrist hash of the position
+         * @param move      the packed move
+         * @param weight    how much the move counts, at least 1
+         * @return  this Builder
+         */
+        public Builder add(long key, int move, int weight) {
+            if(weight < 1) {
+                throw new IllegalArgumentException(weight + " is not a valid weight.");
+            }
+            if(this.count == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.count * 2);
+                this.moves = Arrays.copyOf(this.moves, this.count * 2);
+                this.weights = Arrays.copyOf(this.weights, this.count * 2);
+            }
+            this.keys[this.count] = key;
+            this.moves[this.count] = move;
+            this.weights[this.count] = weight;
+            this.count++;
+            return this;
+        }
+
+        /**
+         * Adds a book move for the position of a Board.
+         * @param board     the position
+         * @param move      the packed move, which should be legal in the position
+         * @param weight    how much the move counts, at least 1
+         * @return  this Builder
+         */
+        public Builder add(Board board, int move, int weight) {
+            return this.add(board.getHash(), move, weight);
+        }
+
+        /**
+         * Sorts the moves added so far, merges repeated ones, and writes them as a book file.
+         * @param path  the file to write
+         * @return  the number of entries written
+         * @throws IOException  if the file cannot be written
+         */
+        public long write(Path path) throws IOException {
+            Integer[] order = new Integer[this.count];
+            for(int i = 0; i < this.count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> this.keys[a] != this.keys[b] ? Long.compare(this.keys[a], this.keys[b])
+                    : Integer.compare(this.moves[a], this.moves[b]));
+            long entries = 0;
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                buffer.putLong(OpeningBook.MAGIC).putLong(0L);
+                for(int i = 0; i < this.count; ) {
+                    int first = order[i];
+                    long weight = 0;
+                    for(; i < this.count && this.keys[order[i]] == this.keys[first] && this.moves[order[i]] == this.moves[first]; i++) {
+                        weight += this.weights[order[i]];
+                    }
+                    if(buffer.remaining() < OpeningBook.ENTRY_SIZE) {
+                        buffer.flip();
+                        while(buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    buffer.putLong(this.keys[first]).putInt(this.moves[first]).putShort((short) Math.min(weight, 0xFFFF)).putShort((short) 0);
+                    entries++;
+                }
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                ByteBuffer header = ByteBuffer.allocate(8).putLong(0, entries);
+                channel.write(header, 8);
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * @author woodjamesdee
+ *
+ * A small cache of pawn structure scores keyed by the pawn hash of a Board. Pawns move far less often than other
+ * pieces, so almost every evaluation during a search finds its pawn structure here. Each search thread keeps its
+ * own table, which is not safe to share between threads.
+ *
+ * An empty entry has key 0 and score 0, which is exactly the entry for a position without pawns, so no separate
+ * marker is needed for empty entries.
+ */
+public final class PawnTable {
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a table holding a number of entries, rounded down to a power of two.
+     * @param entries   the number of entries
+     */
+    public PawnTable(int entries) {
+        if(entries < 1) {
+            throw new IllegalArgumentException(entries + " is not a valid table size.");
+        }
+        int size = Integer.highestOneBit(entries);
+        this.keys = new long[size];
+        this.scores = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Gets the pawn structure score of a position, working it out and storing it if it is not cached yet.
+     * @param board the position
+     * @return  the packed middlegame and endgame scores, as returned by Evaluation.pawnStructure()
+     */
+    int get(Board board) {
+        this.probes++;
+        long key = board.getPawnHash();
+        int index = (int) key & this.mask;
+        if(this.keys[index] == key) {
+            this.hits++;
+            return this.scores[index];
+        }
+        int score = Evaluation.pawnStructure(board);
+        this.keys[index] = key;
+        this.scores[index] = score;
+        return score;
+    }
+
+    /**
+     * Gets the number of entries the table can hold.
+     * @return  the capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets the fraction of lookups which found their pawn structure.
+     * @return  the hit rate, from 0 to 1
+     */
+    public double getHitRate() {
+        return this.probes == 0 ? 0 : (double) this.hits / this.probes;
+    }
+}
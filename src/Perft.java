@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author woodjamesdee
+ *
+ * Runs perft, the count of leaf nodes of the legal move tree, with the root moves split across a ForkJoinPool.
+ * Holds the node count together with the time taken so that throughput can be compared across thread counts.
+ */
+public final class Perft {
+
+    private static final int SEQUENTIAL_DEPTH = 3;
+
+    private final int depth;
+    private final long nodes;
+    private final long nanos;
+
+    private Perft(int depth, long nodes, long nanos) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree below a Board, splitting subtrees across a pool.
+     * @param board the position to start from, which is not modified
+     * @param depth the number of plies to search
+     * @param pool  the pool to run on
+     * @return  the result of the count
+     */
+    public static Perft run(Board board, int depth, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new Split(new Board(board), depth));
+        return new Perft(depth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the depth which was searched.
+     * @return  the number of plies
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Gets the number of leaf nodes found.
+     * @return  the node count
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Gets the wall clock time the count took.
+     * @return  the time in nanoseconds
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * Gets the throughput of the count.
+     * @return  the number of leaf nodes per second
+     */
+    public double getNodesPerSecond() {
+        return this.nanos == 0 ? 0 : this.nodes * 1e9 / this.nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("perft(%d) = %d in %.3f s (%.0f nodes/s)", this.depth, this.nodes, this.nanos / 1e9, this.getNodesPerSecond());
+    }
+
+    /**
+     * Runs perft from the default start position and prints the result.
+     * @param args  the depth, followed optionally by the number of threads
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Board board = new Board();
+        board.generateDefaultStart();
+        System.out.println(board.perft(depth, new ForkJoinPool(threads)));
+    }
+
+    private static final class Split extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int depth;
+
+        Split(Board board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if(this.depth <= Perft.SEQUENTIAL_DEPTH) {
+                return this.board.perft(this.depth);
+            }
+            ArrayList<Split> children = new ArrayList<Split>();
+            for(int move : this.board.getLegalMoves()) {
+                Board child = new Board(this.board);
+                child.makeMove(move);
+                children.add(new Split(child, this.depth - 1));
+            }
+            long nodes = 0;
+            for(Split child : RecursiveTask.invokeAll(children)) {
+                nodes += child.join();
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * @author woodjamesdee
+ *
+ * Replays every game of a PGN archive on several threads. The calling thread reads the archive in large chunks,
+ * each cut at the start of a game, and hands them to worker threads through a bounded queue, so that reading waits
+ * whenever the workers fall behind. Each worker replays its games on a single Board, reading the moves as SAN
+ * straight from the bytes of the chunk, and passes every position to its own Handler. The chunks are recycled, so
+ * memory use stays the same however large the archive is.
+ *
+ * Comments, variations, numeric annotations and move numbers are skipped. Games may start from a position given by
+ * a FEN tag. A game with a move which cannot be read or is not legal is abandoned at that move.
+ */
+public class PgnReplay {
+
+    /**
+     * Receives the positions of the games replayed by one worker thread.
+     */
+    public interface Handler {
+
+        /**
+         * Called for the starting position of each game and again after each of its moves. The Board is reused for
+         * the next position, so it must be copied if it is needed afterwards.
+         * @param board the position
+         * @param move  the move which led to the position, or Move.NONE for the starting position of a game
+         */
+        void position(Board board, int move);
+    }
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final byte[] START = Fen.START.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FEN_TAG = "FEN".getBytes(StandardCharsets.US_ASCII);
+
+    private final int threads;
+    private final int chunkSize;
+    private final int queueCapacity;
+
+    /**
+     * Creates a new PgnReplay reading 1 megabyte chunks, with room for two chunks per worker in its queue.
+     * @param threads   the number of worker threads
+     */
+    public PgnReplay(int threads) {
+        this(threads, PgnReplay.CHUNK_SIZE, 2 * threads);
+    }
+
+    /**
+     * Creates a new PgnReplay.
+     * @param threads       the number of worker threads
+     * @param chunkSize     the number of bytes to read at once, which grows if a single game does not fit
+     * @param queueCapacity the number of chunks which may wait for a worker
+     */
+    public PgnReplay(int threads, int chunkSize, int queueCapacity) {
+        if(threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid number of threads.");
+        }
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException(chunkSize + " is not a valid chunk size.");
+        }
+        if(queueCapacity < 1) {
+            throw new IllegalArgumentException(queueCapacity + " is not a valid queue capacity.");
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Replays every game of a PGN file.
+     * @param path      the file to read
+     * @param handlers  creates one Handler for each worker thread
+     * @return  counts of what was replayed
+     * @throws IOException  if the file cannot be read
+     */
+    public Result replay(Path path, Supplier<? extends Handler> handlers) throws IOException {
+        try(InputStream in = Files.newInputStream(path)) {
+            return this.replay(in, handlers);
+        }
+    }
+
+    /**
+     * Replays every game of a PGN stream, which is read to its end but not closed.
+     * @param in        the stream to read
+     * @param handlers  creates one Handler for each worker thread
+     * @return  counts of what was replayed
+     * @throws IOException  if the stream cannot be read
+     */
+    public Result replay(InputStream in, Supplier<? extends Handler> handlers) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Chunk> full = new ArrayBlockingQueue<Chunk>(this.queueCapacity + this.threads);
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(this.queueCapacity + this.threads + 1);
+        for(int i = 0; i < this.queueCapacity + this.threads + 1; i++) {
+            free.add(new Chunk(this.chunkSize));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        ArrayList<Worker> workers = new ArrayList<Worker>();
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        long bytes = 0;
+        try {
+            for(int i = 0; i < this.threads; i++) {
+                Worker worker = new Worker(handlers.get(), full, free);
+                workers.add(worker);
+                futures.add(pool.submit(worker));
+            }
+            bytes = PgnReplay.read(in, full, free);
+            for(int i = 0; i < workers.size(); i++) {
+                full.put(Chunk.END);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IOException("Interrupted while replaying games.", e);
+        } catch(IOException | RuntimeException e) {
+            pool.shutdownNow();
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying games.", e);
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("A replay thread failed.", e.getCause());
+            }
+        }
+        long games = 0;
+        long positions = 0;
+        long invalid = 0;
+        for(Worker worker : workers) {
+            games += worker.games;
+            positions += worker.positions;
+            invalid += worker.invalid;
+        }
+        return new Result(games, positions, invalid, bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Reads a stream into chunks which each end just before the start of a game, and queues them for the workers.
+     */
+    private static long read(InputStream in, BlockingQueue<Chunk> full, BlockingQueue<Chunk> free) throws IOException, InterruptedException {
+        long total = 0;
+        Chunk chunk = free.take();
+        int length = 0;
+        while(true) {
+            if(length == chunk.bytes.length) {
+                chunk.grow(length * 2); //A single game is larger than the chunk
+            }
+            int read = 0;
+            while(length < chunk.bytes.length && (read = in.read(chunk.bytes, length, chunk.bytes.length - length)) >= 0) {
+                length += read;
+                total += read;
+            }
+            if(read < 0) {
+                if(length > 0) {
+                    chunk.length = length;
+                    full.put(chunk);
+                }
+                return total;
+            }
+            int boundary = PgnReplay.lastGameStart(chunk.bytes, length);
+            if(boundary <= 0) {
+                continue;
+            }
+            Chunk next = free.take();
+            if(next.bytes.length < length - boundary) {
+                next.grow(chunk.bytes.length);
+            }
+            System.arraycopy(chunk.bytes, boundary, next.bytes, 0, length - boundary);
+            chunk.length = boundary;
+            full.put(chunk);
+            chunk = next;
+            length -= boundary;
+        }
+    }
+
+    /**
+     * Finds the start of the last game which begins within some bytes: a tag line which does not follow another tag
+     * line.
+     * @return  the index of the start of the game, or -1 if there is none after the first byte
+     */
+    static int lastGameStart(byte[] bytes, int length) {
+        for(int i = length - 2; i > 0; i--) {
+            if(bytes[i - 1] != '\n' || !PgnReplay.isTag(bytes, i, length)) {
+                continue;
+            }
+            int previous = i - 1;
+            while(previous > 0 && (bytes[previous - 1] == '\n' || bytes[previous - 1] == '\r' || bytes[previous - 1] == ' ')) {
+                previous--;
+            }
+            while(previous > 0 && bytes[previous - 1] != '\n') {
+                previous--;
+            }
+            if(!PgnReplay.isTag(bytes, previous, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTag(byte[] bytes, int index, int length) {
+        return index + 1 < length && bytes[index] == '[' && ((bytes[index + 1] >= 'A' && bytes[index + 1] <= 'Z')
+                || (bytes[index + 1] >= 'a' && bytes[index + 1] <= 'z'));
+    }
+
+    /**
+     * A reusable block of whole games.
+     */
+    private static final class Chunk {
+
+        static final Chunk END = new Chunk(0);
+
+        byte[] bytes;
+        ByteBuffer buffer;
+        int length;
+
+        Chunk(int size) {
+            this.bytes = new byte[size];
+            this.buffer = ByteBuffer.wrap(this.bytes);
+        }
+
+        void grow(int size) {
+            this.bytes = Arrays.copyOf(this.bytes, size);
+            this.buffer = ByteBuffer.wrap(this.bytes);
+        }
+    }
+
+    /**
+     * Replays the games of the chunks it takes from the queue on its own Board.
+     */
+    private static final class Worker implements Runnable {
+
+        private final Handler handler;
+        private final BlockingQueue<Chunk> full;
+        private final BlockingQueue<Chunk> free;
+        private final Board board;
+        private final ByteBuffer start;
+        private final int[] moves;
+        private long games;
+        private long positions;
+        private long invalid;
+
+        Worker(Handler handler, BlockingQueue<Chunk> full, BlockingQueue<Chunk> free) {
+            this.handler = handler;
+            this.full = full;
+            this.free = free;
+            this.board = new Board();
+            this.start = ByteBuffer.wrap(PgnReplay.START);
+            this.moves = new int[Board.MAX_MOVES];
+        }
+
+        @Override
+        public void run() {
+            RuntimeException failure = null;
+            while(true) {
+                Chunk chunk;
+                try {
+                    chunk = this.full.take();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if(chunk == Chunk.END) {
+                    break;
+                }
+                if(failure == null) {
+                    try {
+                        this.replay(chunk);
+                    } catch(RuntimeException e) {
+                        failure = e; //Keep taking chunks so that the reading thread is not left waiting
+                    }
+                }
+                this.free.offer(chunk);
+            }
+            if(failure != null) {
+                throw failure;
+            }
+        }
+
+        private void replay(Chunk chunk) {
+            byte[] bytes = chunk.bytes;
+            int length = chunk.length;
+            int index = 0;
+            while(index < length) {
+                int fenStart = -1;
+                int fenEnd = -1;
+                boolean tags = false;
+                while(index < length) {
+                    int lineEnd = PgnReplay.lineEnd(bytes, index, length);
+                    int first = index;
+                    while(first < lineEnd && (bytes[first] == ' ' || bytes[first] == '\t' || bytes[first] == '\r')) {
+                        first++;
+                    }
+                    if(first < lineEnd && !PgnReplay.isTag(bytes, first, length)) {
+                        break;
+                    }
+                    if(first < lineEnd) {
+                        tags = true;
+                        int nameEnd = first + 1;
+                        while(nameEnd < lineEnd && bytes[nameEnd] != ' ') {
+                            nameEnd++;
+                        }
+                        if(PgnReplay.equals(bytes, first + 1, nameEnd, PgnReplay.FEN_TAG)) {
+                            fenStart = PgnReplay.indexOf(bytes, (byte) '"', nameEnd, lineEnd) + 1;
+                            fenEnd = PgnReplay.indexOf(bytes, (byte) '"', fenStart, lineEnd);
+                        }
+                    }
+                    index = lineEnd + 1;
+                }
+                if(!tags && index >= length) {
+                    break;
+                }
+                index = this.replayGame(chunk, index, length, fenStart, fenEnd);
+            }
+        }
+
+        private int replayGame(Chunk chunk, int index, int length, int fenStart, int fenEnd) {
+            byte[] bytes = chunk.bytes;
+            this.games++;
+            boolean valid = true;
+            try {
+                if(fenStart > 0 && fenEnd > fenStart) {
+                    Fen.parse(chunk.buffer, fenStart, fenEnd, this.board);
+                } else {
+                    Fen.parse(this.start, 0, PgnReplay.START.length, this.board);
+                }
+            } catch(IllegalArgumentException e) {
+                valid = false;
+                this.invalid++;
+            }
+            if(valid) {
+                this.handler.position(this.board, Move.NONE);
+                this.positions++;
+            }
+            int depth = 0;
+            boolean lineStart = index == 0 || bytes[index - 1] == '\n';
+            while(index < length) {
+                byte c = bytes[index];
+                if(lineStart && PgnReplay.isTag(bytes, index, length)) {
+                    return index; //The next game, which left out its result
+                }
+                if(lineStart && c == '%') {
+                    index = PgnReplay.lineEnd(bytes, index, length);
+                    continue;
+                }
+                lineStart = c == '\n';
+                if(c == '\n' || c == '\r' || c == ' ' || c == '\t') {
+                    index++;
+                } else if(c == '{') {
+                    index = PgnReplay.indexOf(bytes, (byte) '}', index, length) + 1;
+                    if(index == 0) {
+                        index = length;
+                    }
+                } else if(c == ';') {
+                    index = PgnReplay.lineEnd(bytes, index, length);
+                } else if(c == '(') {
+                    depth++;
+                    index++;
+                } else if(c == ')') {
+                    depth = Math.max(0, depth - 1);
+                    index++;
+                } else {
+                    int end = index;
+                    while(end < length && bytes[end] > ' ' && bytes[end] != '{' && bytes[end] != '(' && bytes[end] != ')' && bytes[end] != ';') {
+                        end++;
+                    }
+                    if(depth == 0) {
+                        if(PgnReplay.isResult(bytes, index, end)) {
+                            return end;
+                        }
+                        if(valid) {
+                            valid = this.play(bytes, index, end);
+                        }
+                    }
+                    index = end;
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Plays one token of movetext, skipping any move number in front of it.
+         * @return  false if the token is a move which cannot be played
+         */
+        private boolean play(byte[] bytes, int start, int end) {
+            if(bytes[start] == '$') {
+                return true;
+            }
+            int digits = start;
+            while(digits < end && bytes[digits] >= '0' && bytes[digits] <= '9') {
+                digits++;
+            }
+            if(digits == end || bytes[digits] == '.') {
+                start = digits;
+            }
+            while(start < end && bytes[start] == '.') {
+                start++;
+            }
+            if(start == end) {
+                return true;
+            }
+            int move = San.parse(this.board, bytes, start, end, this.moves);
+            if(move == Move.NONE) {
+                this.invalid++;
+                return false;
+            }
+            this.board.makeMove(move);
+            this.handler.position(this.board, move);
+            this.positions++;
+            return true;
+        }
+    }
+
+    private static int lineEnd(byte[] bytes, int index, int length) {
+        while(index < length && bytes[index] != '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for(int i = from; i < to; i++) {
+            if(bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(byte[] bytes, int start, int end, byte[] expected) {
+        if(end - start != expected.length) {
+            return false;
+        }
+        for(int i = 0; i < expected.length; i++) {
+            if(bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isResult(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if(length == 1) {
+            return bytes[start] == '*';
+        }
+        if(length == 3) {
+            return (bytes[start] == '1' && bytes[start + 1] == '-' && bytes[start + 2] == '0')
+                    || (bytes[start] == '0' && bytes[start + 1] == '-' && bytes[start + 2] == '1');
+        }
+        return length == 7 && bytes[start] == '1' && bytes[start + 1] == '/' && bytes[start + 2] == '2' && bytes[start + 3] == '-';
+    }
+
+    /**
+     * Counts of what a replay read.
+     */
+    public static final class Result {
+
+        private final long games;
+        private final long positions;
+        private final long invalidGames;
+        private final long bytes;
+        private final long nanos;
+
+        Result(long games, long positions, long invalidGames, long bytes, long nanos) {
+            this.games = games;
+            this.positions = positions;
+            this.invalidGames = invalidGames;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the number of games read.
+         * @return  the number of games
+         */
+        public long getGames() {
+            return this.games;
+        }
+
+        /**
+         * Gets the number of positions passed to the handlers, including the starting position of each game.
+         * @return  the number of positions
+         */
+        public long getPositions() {
+            return this.positions;
+        }
+
+        /**
+         * Gets the number of games abandoned because of a move or FEN tag which could not be read.
+         * @return  the number of invalid games
+         */
+        public long getInvalidGames() {
+            return this.invalidGames;
+        }
+
+        /**
+         * Gets the number of bytes read.
+         * @return  the size of the archive
+         */
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Gets how long the replay took.
+         * @return  the time taken in nanoseconds
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        /**
+         * Gets the rate at which games were replayed.
+         * @return  the number of games per second
+         */
+        public double getGamesPerSecond() {
+            return this.nanos == 0 ? 0 : this.games * 1e9 / this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "games " + this.games + " positions " + this.positions + " invalid " + this.invalidGames
+                    + " games/s " + (long) this.getGamesPerSecond();
+        }
+    }
+}
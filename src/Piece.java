@@ -1,8 +1,6 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 
-import static java.util.Collections.addAll;
-
 /**
  * @author woodjamesdee
  *
@@ -13,9 +11,21 @@ public class Piece {
     public static final ArrayList<String> TYPES = new ArrayList<String>(Arrays.asList(new String[] {" ", "N", "B", "R", "Q", "K"}));
     public static final ArrayList<String> COLORS = new ArrayList<String>(Arrays.asList(new String[] {"white", "black"}));
 
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
     private String type;
     private String color;
     private String position;
+    private int typeIndex;
+    private int colorIndex;
+    private int square;
     private boolean captured;
     private boolean hasMoved;
 
@@ -32,16 +42,35 @@ public class Piece {
         if(!Piece.COLORS.contains(color)) {
             throw new IllegalArgumentException(color + " is not a valid color.");
         }
-        if(!Board.POSITIONS.contains(position)) {
+        int square = Board.squareIndex(position);
+        if(square < 0) {
             throw new IllegalArgumentException(position + " is not a valid position.");
         }
         this.type = type;
         this.color = color;
         this.position = position;
+        this.typeIndex = Piece.TYPES.indexOf(type);
+        this.colorIndex = Piece.COLORS.indexOf(color);
+        this.square = square;
         this.captured = false;
         this.hasMoved = false;
     }
 
+    /**
+     * Creates a new Piece which is an independent copy of another Piece, including its captured and moved status.
+     * @param other the Piece to copy
+     */
+    public Piece(Piece other) {
+        this.type = other.type;
+        this.color = other.color;
+        this.position = other.position;
+        this.typeIndex = other.typeIndex;
+        this.colorIndex = other.colorIndex;
+        this.square = other.square;
+        this.captured = other.captured;
+        this.hasMoved = other.hasMoved;
+    }
+
     /**
      * Gets the kind of piece of this Piece object.
      * @return  the type of piece
@@ -59,6 +88,15 @@ public class Piece {
             throw new IllegalArgumentException(type + " is not a valid type.");
         }
         this.type = type;
+        this.typeIndex = Piece.TYPES.indexOf(type);
+    }
+
+    /**
+     * Gets the kind of piece of this Piece object as an index within TYPES, such as Piece.KNIGHT.
+     * @return  the index of the type of piece
+     */
+    public int getTypeIndex() {
+        return this.typeIndex;
     }
 
     /**
@@ -69,6 +107,14 @@ public class Piece {
         return this.color;
     }
 
+    /**
+     * Gets the color of this Piece object as an index within COLORS, either Piece.WHITE or Piece.BLACK.
+     * @return  the index of the color of the piece
+     */
+    public int getColorIndex() {
+        return this.colorIndex;
+    }
+
     /**
      * Gets the current board position of this Piece object.
      * @return  the board position
@@ -82,10 +128,20 @@ public class Piece {
      * @param position  the new position of the piece
      */
     public void setPosition(String position) {
-        if(!Board.POSITIONS.contains(position)) {
+        int square = Board.squareIndex(position);
+        if(square < 0) {
             throw new IllegalArgumentException(position + " is not a valid position.");
         }
         this.position = position;
+        this.square = square;
+    }
+
+    /**
+     * Gets the current board position of this Piece object as an index within Board.POSITIONS.
+     * @return  the index of the board position, or -1 if the Piece has been captured
+     */
+    public int getSquare() {
+        return this.captured ? -1 : this.square;
     }
 
     /**
@@ -120,204 +176,82 @@ public class Piece {
     }
 
     /**
-     * Generates an array of potential moves for this Piece based on the current Board position.
-     * Does not take into account other Pieces, but does consider the boundaries of the board.
-     * @return  the possible moves of this Piece
+     * Moves this Piece to a square without validating it, for use by Board when playing and taking back moves.
+     * @param square    the index of the new position within Board.POSITIONS
+     * @param moved     the new state of the hasMoved variable
      */
-    public ArrayList<String[]> getPotentialMoves() {
-        if(this.captured) {
-            return null;
-        }
-        ArrayList<String[]> returnArray = null;
-        switch(this.type) {
-            case " ":
-                returnArray = this.getPotentialPawnMoves();
-                break;
-            case "N":
-                returnArray = this.getPotentialKnightMoves();
-                break;
-            case "B":
-                returnArray = this.getPotentialBishopMoves();
-                break;
-            case "R":
-                returnArray = this.getPotentialRookMoves();
-                break;
-            case "Q":
-                returnArray = this.getPotentialQueenMoves();
-                break;
-            case "K":
-                returnArray = this.getPotentialKingMoves();
-                break;
-        }
-        return returnArray;
+    void moveTo(int square, boolean moved) {
+        this.square = square;
+        this.position = Board.POSITIONS.get(square);
+        this.hasMoved = moved;
     }
 
-    private ArrayList<String[]> getPotentialPawnMoves() {
-        ArrayList<String[]> returnArray = new ArrayList<String[]>();
-        int currentPositionIndex = Board.POSITIONS.indexOf(this.position);
-        if(this.color.equals("white")) {
-            if(!this.position.contains("a") && !this.position.contains("h")) { //Not an edge case
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 7), Board.POSITIONS.get(currentPositionIndex + 1), Board.POSITIONS.get(currentPositionIndex + 9)});
-            } else if(this.position.contains("a")) { //In file a
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 7), Board.POSITIONS.get(currentPositionIndex + 1)});
-            } else { //In file h
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex + 1), Board.POSITIONS.get(currentPositionIndex + 9)});
-            }
-            if(!hasMoved) {
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex + 2)});
-            }
-        } else {
-            if(!this.position.contains("a") && !this.position.contains("h")) { //Not an edge case
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 9), Board.POSITIONS.get(currentPositionIndex - 1), Board.POSITIONS.get(currentPositionIndex + 7)});
-            } else if(this.position.contains("a")) { //In file a
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 9), Board.POSITIONS.get(currentPositionIndex - 1)});
-            } else { //In file h
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 1), Board.POSITIONS.get(currentPositionIndex + 7)});
-            }
-            if(!hasMoved) {
-                returnArray.add(new String[] {Board.POSITIONS.get(currentPositionIndex - 2)});
-            }
-        }
-        return returnArray;
+    /**
+     * Changes the type of this Piece without validating it, for use by Board when promoting and taking back
+     * promotions.
+     * @param type  the index of the new type within TYPES
+     */
+    void promote(int type) {
+        this.typeIndex = type;
+        this.type = Piece.TYPES.get(type);
     }
 
-    private ArrayList<String[]> getPotentialKnightMoves() {
-        ArrayList<String[]> returnArray = new ArrayList<String[]>();
-        ArrayList<String> positions = new ArrayList<String>(); //Because the number of moves isn't determined at this point
-        int currentPositionIndex = Board.POSITIONS.indexOf(this.position);
-        int[] ranks = new int[] {2, 1, -1, -2, -2, -1, 1, 2}; //Possible combinations of moves from the current index
-        int[] files = new int[] {1, 2, 2, 1, -1, -2, -2, -1};
-        for(int i = 0; i < ranks.length; i++) {
-            int index = currentPositionIndex + (ranks[i] + 8 * files[i]); //The new index of the Knight
-            if(!(index < 0 || index >= Board.POSITIONS.size())) { //If the index is not out of bounds of the Board array
-                if(!(index % 8 > currentPositionIndex % 8 + 2 || index % 8 < currentPositionIndex % 8 - 2 )) //If the index is not more than two squares away in any direction
-                positions.add(Board.POSITIONS.get(index));
-            }
-        }
-        returnArray.add(positions.toArray(new String[0]));
-        return returnArray;
+    /**
+     * Turns this Piece into a different piece without validating it or allocating, for use by Board when it reuses
+     * its Piece objects to set up a new position.
+     * @param type      the index of the type within TYPES
+     * @param color     the index of the color within COLORS
+     * @param square    the index of the position within Board.POSITIONS
+     * @param moved     the new state of the hasMoved variable
+     */
+    void reset(int type, int color, int square, boolean moved) {
+        this.typeIndex = type;
+        this.type = Piece.TYPES.get(type);
+        this.colorIndex = color;
+        this.color = Piece.COLORS.get(color);
+        this.square = square;
+        this.position = Board.POSITIONS.get(square);
+        this.captured = false;
+        this.hasMoved = moved;
     }
 
-    private ArrayList<String[]> getPotentialBishopMoves() {
-        ArrayList<String[]> returnArray = new ArrayList<String[]>();
-        ArrayList<String> upLeftPositions = new ArrayList<String>();
-        ArrayList<String> upRightPositions = new ArrayList<String>();
-        ArrayList<String> downLeftPositions = new ArrayList<String>();
-        ArrayList<String> downRightPositions = new ArrayList<String>();
-        int currentPositionIndex = Board.POSITIONS.indexOf(this.position);
-        boolean canUpLeft = true;
-        boolean canUpRight = true;
-        boolean canDownLeft = true;
-        boolean canDownRight = true;
-        for(int i = 1; i < 8; i++) {
-            int upLeft = (-9) * i + currentPositionIndex;
-            int upRight = (-7) * i + currentPositionIndex;
-            int downLeft = 7 * i + currentPositionIndex;
-            int downRight = 9 * i + currentPositionIndex;
-            if(!(upLeft < 0 || Math.abs((upLeft % 8) - (currentPositionIndex % 8)) != i) && canUpLeft) {
-                upLeftPositions.add(Board.POSITIONS.get(upLeft));
-                if((upLeft % 8) - 1 < 0) {
-                    canUpLeft = false;
-                }
-            } else {
-                canUpLeft = false;
-            }
-            if(!(upRight < 0 || Math.abs((upRight % 8) - (currentPositionIndex % 8)) != i) && canUpRight) {
-                upRightPositions.add(Board.POSITIONS.get(upRight));
-                if((upRight % 8) + 1 > 7) {
-                    canUpRight = false;
-                }
-            } else {
-                canUpRight = false;
-            }
-            if(!(downLeft >= Board.POSITIONS.size() || Math.abs((downLeft % 8) - (currentPositionIndex % 8)) != i) && canDownLeft) {
-                downLeftPositions.add(Board.POSITIONS.get(downLeft));
-                if((downLeft % 8) - 1 < 0) {
-                    canDownLeft = false;
-                }
-            } else {
-                canDownLeft = false;
-            }
-            if(!(downRight >= Board.POSITIONS.size() || Math.abs((downRight % 8) - (currentPositionIndex % 8)) != i) && canDownRight) {
-                downRightPositions.add(Board.POSITIONS.get(downRight));
-                if((downRight % 8) + 1 > 7) {
-                    canDownRight = false;
-                }
-            } else {
-                canDownRight = false;
-            }
-        }
-        returnArray.add(upLeftPositions.toArray(new String[0]));
-        returnArray.add(upRightPositions.toArray(new String[0]));
-        returnArray.add(downLeftPositions.toArray(new String[0]));
-        returnArray.add(downRightPositions.toArray(new String[0]));
-        return returnArray;
+    /**
+     * Returns a captured Piece to the board, for use by Board when taking back a capture.
+     * @param square    the index of the position within Board.POSITIONS to return to
+     */
+    void restore(int square) {
+        this.captured = false;
+        this.square = square;
+        this.position = Board.POSITIONS.get(square);
     }
 
-    private ArrayList<String[]> getPotentialRookMoves() {
-        ArrayList<String[]> returnArray = new ArrayList<String[]>();
-        ArrayList<String> upPositions = new ArrayList<String>();
-        ArrayList<String> leftPositions = new ArrayList<String>();
-        ArrayList<String> rightPositions = new ArrayList<String>();
-        ArrayList<String> downPositions = new ArrayList<String>();
-        int currentPositionIndex = Board.POSITIONS.indexOf(this.position);
-        boolean canRight = true;
-        boolean canLeft = true;
-        for(int i = 1; i < 8; i++) {
-            int up = (-8) * i + currentPositionIndex;
-            int left = (-1) * i + currentPositionIndex;
-            int right = i + currentPositionIndex;
-            int down = 8 * i + currentPositionIndex;
-            if(!(up < 0)) {
-                upPositions.add(Board.POSITIONS.get(up));
-            }
-            if(!(!canLeft || left < 0)) {
-                leftPositions.add(Board.POSITIONS.get(left));
-                if((left % 8) - 1 < 0) {
-                    canLeft = false;
-                }
-            }
-            if(!(!canRight || right >= Board.POSITIONS.size())) {
-                rightPositions.add(Board.POSITIONS.get(right));
-                if((right % 8) + 1 > 7) {
-                    canRight = false;
-                }
-            }
-            if(!(down >= Board.POSITIONS.size())) {
-                downPositions.add(Board.POSITIONS.get(down));
-            }
+    /**
+     * Generates an array of potential moves for this Piece based on the current Board position.
+     * Does not take into account other Pieces, but does consider the boundaries of the board.
+     * The rays are copies, so the caller is free to modify them.
+     * @return  the possible moves of this Piece
+     */
+    public ArrayList<String[]> getPotentialMoves() {
+        if(this.captured) {
+            return null;
         }
-        returnArray.add(upPositions.toArray(new String[0]));
-        returnArray.add(leftPositions.toArray(new String[0]));
-        returnArray.add(rightPositions.toArray(new String[0]));
-        returnArray.add(downPositions.toArray(new String[0]));
-        return returnArray;
-    }
-
-    private ArrayList<String[]> getPotentialQueenMoves() {
-        ArrayList<String[]> returnArray = this.getPotentialBishopMoves();
-        returnArray.addAll(this.getPotentialRookMoves());
-        return returnArray;
+        String[][] rays = MoveTables.getNames(this.typeIndex, this.colorIndex, this.hasMoved, this.square);
+        ArrayList<String[]> moves = new ArrayList<String[]>(rays.length);
+        for(String[] ray : rays) {
+            moves.add(ray.clone());
+        }
+        return moves;
     }
 
-    private ArrayList<String[]> getPotentialKingMoves() {
-        ArrayList<String[]> returnArray = new ArrayList<String[]>();
-        ArrayList<String> positions = new ArrayList<String>();
-        int currentPositionIndex = Board.POSITIONS.indexOf(this.position);
-        int[] ranks = new int[] {-1, -1, -1, 0, 1, 1, 1, 0};
-        int[] files = new int[] {1, 0, -1, -1, -1, 0, 1, 1};
-        for(int i = 0; i < ranks.length; i++) {
-            int index = currentPositionIndex + (ranks[i] + 8 * files[i]);
-            if(!(index < 0 || index >= Board.POSITIONS.size())) {
-                if(!(index % 8 > currentPositionIndex % 8 + 2 || index % 8 < currentPositionIndex % 8 - 1 ))
-                    positions.add(Board.POSITIONS.get(index));
-            }
-        }
-        returnArray.add(positions.toArray(new String[0]));
-        if(!this.hasMoved) {
-            String[] castlePositions = new String[] {Board.POSITIONS.get(currentPositionIndex - 2), Board.POSITIONS.get(currentPositionIndex + 2)};
-            returnArray.add(castlePositions);
+    /**
+     * Gets the potential moves of this Piece as indices within Board.POSITIONS, in the same layout as
+     * getPotentialMoves(). The arrays come from MoveTables and are shared, so they must not be modified.
+     * @return  the possible moves of this Piece, or null if it has been captured
+     */
+    public int[][] getPotentialMoveSquares() {
+        if(this.captured) {
+            return null;
         }
-        return returnArray;
+        return MoveTables.getSquares(this.typeIndex, this.colorIndex, this.hasMoved, this.square);
     }
 }
@@ -0,0 +1,506 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author woodjamesdee
+ *
+ * Many positions held at once as columns of primitives, for jobs such as labelling training data which need the
+ * evaluation or the legal move count of far more positions than they could afford Board objects for. Each of the
+ * twelve piece bitboards is a long[] with one entry per position, as are the occupancies of the two colors, and the
+ * side to move, castling rights and en passant square are byte[] columns alongside them. The piece square sums
+ * and game phase which Board keeps up to date are worked out once, as a position is added, and kept in int[]
+ * columns. Nothing else of a Board is kept, so a position costs 127 bytes however it was loaded.
+ *
+ * The kernels each loop over a range of positions, reading the columns in order. Evaluation and the first pass of
+ * the legality check have no branches within a position, only shifts, masks and population counts, so the JIT can
+ * unroll and vectorize them, and move counting adds up population counts of target squares instead of building
+ * moves. A ForkJoinPool can be given to split the batch into ranges run on different threads. The kernels give
+ * exactly what the scalar path gives for the same position: evaluate() matches Evaluation.evaluate(), and
+ * countMoves() matches the length of Board.getLegalMoves().
+ */
+public final class PositionBatch {
+
+    private static final int TYPE_COUNT = Piece.TYPES.size();
+    private static final int CODES = Piece.COLORS.size() * PositionBatch.TYPE_COUNT;
+    private static final int SEQUENTIAL_SIZE = 1024;
+
+    private long[][] bitboards;
+    private long[][] colorOccupancy;
+    private int[] middlegame;
+    private int[] endgame;
+    private int[] phase;
+    private byte[] sideToMove;
+    private byte[] castlingRights;
+    private byte[] enPassantSquare;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * @param capacity  the number of positions to make room for, which is grown as needed
+     */
+    public PositionBatch(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException(capacity + " is not a valid capacity.");
+        }
+        this.bitboards = new long[PositionBatch.CODES][capacity];
+        this.colorOccupancy = new long[Piece.COLORS.size()][capacity];
+        this.middlegame = new int[capacity];
+        this.endgame = new int[capacity];
+        this.phase = new int[capacity];
+        this.sideToMove = new byte[capacity];
+        this.castlingRights = new byte[capacity];
+        this.enPassantSquare = new byte[capacity];
+    }
+
+    /**
+     * Gets the number of positions in this batch.
+     * @return  the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Empties this batch, keeping its columns for the positions added next.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Adds a position to the end of this batch.
+     * @param board the position to add, which is not modified
+     * @return  the index of the position within the batch
+     */
+    public int add(Board board) {
+        int index = this.grow();
+        for(int color = 0; color < Piece.COLORS.size(); color++) {
+            for(int type = 0; type < PositionBatch.TYPE_COUNT; type++) {
+                this.bitboards[color * PositionBatch.TYPE_COUNT + type][index] = board.getBitboard(type, color);
+            }
+            this.colorOccupancy[color][index] = board.getOccupancy(color);
+        }
+        this.middlegame[index] = board.getMiddlegameScore();
+        this.endgame[index] = board.getEndgameScore();
+        this.phase[index] = board.getPhase();
+        this.sideToMove[index] = (byte) board.getSideToMove();
+        this.castlingRights[index] = (byte) board.getCastlingRights();
+        this.enPassantSquare[index] = (byte) board.getEnPassantSquare();
+        return index;
+    }
+
+    /**
+     * Adds a position packed by BinaryPosition to the end of this batch, without going through a Board. Castling
+     * rights and the en passant square are checked as BinaryPosition.read() checks them, since the kernels trust
+     * them; whether the rest of the position is legal is left to checkLegal(), as it is for add(Board).
+     * @param buffer    the buffer to read from, whose position is not changed
+     * @param offset    the index of the BinaryPosition.SIZE bytes to read
+     * @return  the index of the position within the batch
+     * @throws IllegalArgumentException if the bytes hold an invalid piece code or an impossible en passant square
+     */
+    public int add(ByteBuffer buffer, int offset) {
+        long occupancy = buffer.getLong(offset);
+        if(Long.bitCount(occupancy) > 32) {
+            throw new IllegalArgumentException("A packed position cannot hold " + Long.bitCount(occupancy) + " pieces.");
+        }
+        int index = this.grow();
+        for(int code = 0; code < PositionBatch.CODES; code++) {
+            this.bitboards[code][index] = 0L;
+        }
+        this.colorOccupancy[Piece.WHITE][index] = 0L;
+        this.colorOccupancy[Piece.BLACK][index] = 0L;
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        int count = 0;
+        for(long squares = occupancy; squares != 0; squares &= squares - 1) {
+            int packed = buffer.get(offset + BinaryPosition.CODES_OFFSET + count / 2);
+            int code = (count & 1) == 0 ? (packed >>> 4) & 0xF : packed & 0xF;
+            if(code >= PositionBatch.CODES) {
+                this.size--;
+                throw new IllegalArgumentException(code + " is not a valid piece code.");
+            }
+            int square = Long.numberOfTrailingZeros(squares);
+            this.bitboards[code][index] |= 1L << square;
+            this.colorOccupancy[code / PositionBatch.TYPE_COUNT][index] |= 1L << square;
+            middlegame += Evaluation.middlegame(code, square);
+            endgame += Evaluation.endgame(code, square);
+            phase += Evaluation.phase(code);
+            count++;
+        }
+        this.middlegame[index] = middlegame;
+        this.endgame[index] = endgame;
+        this.phase[index] = phase;
+        int state = buffer.get(offset + BinaryPosition.STATE_OFFSET);
+        int us = state & 1;
+        int castlingRights = (state >>> 1) & 0xF;
+        for(int color = 0; color < Piece.COLORS.size(); color++) {
+            int base = color * PositionBatch.TYPE_COUNT;
+            for(int side = 0; side < 2; side++) {
+                if(!Board.hasCastlingPieces(color, side, this.bitboards[base + Piece.KING][index], this.bitboards[base + Piece.ROOK][index])) {
+                    castlingRights &= ~Board.castlingRight(color, side);
+                }
+            }
+        }
+        int enPassant = (buffer.get(offset + BinaryPosition.STATE_OFFSET + 1) & 0xFF) - 1;
+        if(enPassant >= 64) {
+            this.size--;
+            throw new IllegalArgumentException(enPassant + " is not a valid en passant square.");
+        }
+        if(enPassant >= 0) {
+            String illegality = Board.getEnPassantIllegality(enPassant, us, occupancy,
+                    this.bitboards[(us ^ 1) * PositionBatch.TYPE_COUNT + Piece.PAWN][index]);
+            if(illegality != null) {
+                this.size--;
+                throw new IllegalArgumentException("A packed position is impossible: " + illegality + ".");
+            }
+            if(!Board.isEnPassantCapturable(enPassant, us, this.bitboards[us * PositionBatch.TYPE_COUNT + Piece.PAWN][index])) {
+                enPassant = -1;
+            }
+        }
+        this.sideToMove[index] = (byte) us;
+        this.castlingRights[index] = (byte) castlingRights;
+        this.enPassantSquare[index] = (byte) enPassant;
+        return index;
+    }
+
+    /**
+     * Sets up a Board with one of the positions of this batch. The halfmove clock and fullmove number are not kept
+     * by the batch, so they are reset.
+     * @param index the index of the position within the batch
+     * @param board the Board to set up, replacing whatever it held before
+     */
+    public void get(int index, Board board) {
+        this.checkIndex(index);
+        board.reset();
+        for(int code = 0; code < PositionBatch.CODES; code++) {
+            for(long pieces = this.bitboards[code][index]; pieces != 0; pieces &= pieces - 1) {
+                board.put(code % PositionBatch.TYPE_COUNT, code / PositionBatch.TYPE_COUNT, Long.numberOfTrailingZeros(pieces));
+            }
+        }
+        board.setSideToMove(this.sideToMove[index]);
+        board.setCastlingRights(this.castlingRights[index]);
+        board.setEnPassantSquare(this.enPassantSquare[index]);
+    }
+
+    /**
+     * Evaluates every position of this batch on the calling thread.
+     * @param scores    filled with the score of each position, as given by Evaluation.evaluate()
+     */
+    public void evaluate(int[] scores) {
+        this.checkResults(scores.length);
+        this.evaluate(scores, 0, this.size);
+    }
+
+    /**
+     * Evaluates every position of this batch, split across a pool.
+     * @param scores    filled with the score of each position, as given by Evaluation.evaluate()
+     * @param pool      the pool to run on
+     */
+    public void evaluate(final int[] scores, ForkJoinPool pool) {
+        this.checkResults(scores.length);
+        pool.invoke(new Split(new Kernel() {
+            @Override
+            public void run(int from, int to) {
+                PositionBatch.this.evaluate(scores, from, to);
+            }
+        }, 0, this.size));
+    }
+
+    /**
+     * Checks every position of this batch on the calling thread for being one which could arise in a game: each side
+     * has exactly one king, no pawn stands on the first or last rank, and the side which has just moved is not in
+     * check.
+     * @param legal filled with whether each position is legal, which is when Board.getIllegality() finds nothing
+     */
+    public void checkLegal(boolean[] legal) {
+        this.checkResults(legal.length);
+        this.checkLegal(legal, 0, this.size);
+    }
+
+    /**
+     * Checks every position of this batch for being legal, as checkLegal(boolean[]) does, split across a pool.
+     * @param legal filled with whether each position is legal
+     * @param pool  the pool to run on
+     */
+    public void checkLegal(final boolean[] legal, ForkJoinPool pool) {
+        this.checkResults(legal.length);
+        pool.invoke(new Split(new Kernel() {
+            @Override
+            public void run(int from, int to) {
+                PositionBatch.this.checkLegal(legal, from, to);
+            }
+        }, 0, this.size));
+    }
+
+    /**
+     * Counts the legal moves of every position of this batch on the calling thread. The moves are counted, not
+     * generated, so most pieces cost one population count.
+     * @param counts    filled with the number of legal moves of each position, as Board.getLegalMoves() gives them
+     */
+    public void countMoves(int[] counts) {
+        this.checkResults(counts.length);
+        this.countMoves(counts, 0, this.size);
+    }
+
+    /**
+     * Counts the legal moves of every position of this batch, split across a pool.
+     * @param counts    filled with the number of legal moves of each position, as Board.getLegalMoves() gives them
+     * @param pool      the pool to run on
+     */
+    public void countMoves(final int[] counts, ForkJoinPool pool) {
+        this.checkResults(counts.length);
+        pool.invoke(new Split(new Kernel() {
+            @Override
+            public void run(int from, int to) {
+                PositionBatch.this.countMoves(counts, from, to);
+            }
+        }, 0, this.size));
+    }
+
+    private void evaluate(int[] scores, int from, int to) {
+        long[] whitePawns = this.bitboards[Piece.PAWN];
+        long[] blackPawns = this.bitboards[PositionBatch.TYPE_COUNT + Piece.PAWN];
+        for(int i = from; i < to; i++) {
+            int pawns = Evaluation.pawnStructure(whitePawns[i], blackPawns[i]);
+            scores[i] = Evaluation.blend(this.middlegame[i] + Evaluation.unpackMiddlegame(pawns),
+                    this.endgame[i] + Evaluation.unpackEndgame(pawns), this.phase[i], this.sideToMove[i]);
+        }
+    }
+
+    private void checkLegal(boolean[] legal, int from, int to) {
+        long[] whiteKings = this.bitboards[Piece.KING];
+        long[] blackKings = this.bitboards[PositionBatch.TYPE_COUNT + Piece.KING];
+        long[] whitePawns = this.bitboards[Piece.PAWN];
+        long[] blackPawns = this.bitboards[PositionBatch.TYPE_COUNT + Piece.PAWN];
+        for(int i = from; i < to; i++) {
+            legal[i] = Board.isPlacementLegal(whiteKings[i], blackKings[i], whitePawns[i] | blackPawns[i]);
+        }
+        for(int i = from; i < to; i++) {
+            if(legal[i]) {
+                int us = this.sideToMove[i];
+                int king = Long.numberOfTrailingZeros(this.bitboards[(us ^ 1) * PositionBatch.TYPE_COUNT + Piece.KING][i]);
+                legal[i] = !this.isAttacked(i, king, us, this.colorOccupancy[Piece.WHITE][i] | this.colorOccupancy[Piece.BLACK][i]);
+            }
+        }
+    }
+
+    private void countMoves(int[] counts, int from, int to) {
+        for(int i = from; i < to; i++) {
+            counts[i] = this.countMoves(i);
+        }
+    }
+
+    /**
+     * Counts the legal moves of one position the way Board.generate() finds them.
+     */
+    private int countMoves(int index) {
+        int count = 0;
+        int us = this.sideToMove[index];
+        int them = us ^ 1;
+        long ours = this.colorOccupancy[us][index];
+        long theirs = this.colorOccupancy[them][index];
+        long occupancy = ours | theirs;
+        int base = us * PositionBatch.TYPE_COUNT;
+        long kingBit = this.bitboards[base + Piece.KING][index];
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long checkers = 0L;
+        long pinned = 0L;
+        if(kingBit != 0) {
+            checkers = this.attackersTo(index, king, occupancy) & theirs;
+            pinned = this.pinnedPieces(index, us, king, occupancy);
+            for(long targets = Bitboards.kingAttacks(king) & ~ours; targets != 0; targets &= targets - 1) {
+                if(!this.isAttacked(index, Long.numberOfTrailingZeros(targets), them, occupancy ^ kingBit)) {
+                    count++;
+                }
+            }
+            if(Long.bitCount(checkers) > 1) { //Only the king can escape a double check
+                return count;
+            }
+        }
+        long evasions = Bitboards.FULL;
+        if(checkers != 0) { //Must capture the checker or block it
+            evasions = Bitboards.between(king, Long.numberOfTrailingZeros(checkers)) | checkers;
+        }
+        long allowed = ~ours & evasions;
+        for(int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            for(long pieces = this.bitboards[base + type][index]; pieces != 0; pieces &= pieces - 1) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                long targets = Bitboards.attacks(type, from, occupancy) & allowed;
+                if((pinned & (1L << from)) != 0) {
+                    targets &= Bitboards.line(king, from);
+                }
+                count += Long.bitCount(targets);
+            }
+        }
+        int forward = us == Piece.WHITE ? 1 : -1;
+        int startRank = us == Piece.WHITE ? 1 : 6;
+        int enPassant = this.enPassantSquare[index];
+        for(long pawns = this.bitboards[base + Piece.PAWN][index]; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long pinLine = (pinned & (1L << from)) != 0 ? Bitboards.line(king, from) : Bitboards.FULL;
+            long pushes = evasions & pinLine;
+            int single = from + forward;
+            if((occupancy & (1L << single)) == 0) {
+                if((pushes & (1L << single)) != 0) {
+                    count += single % 8 == 0 || single % 8 == 7 ? 4 : 1;
+                }
+                int twice = single + forward;
+                if(from % 8 == startRank && (occupancy & (1L << twice)) == 0 && (pushes & (1L << twice)) != 0) {
+                    count++;
+                }
+            }
+            long targets = Bitboards.pawnAttacks(us, from) & theirs & allowed & pinLine;
+            count += Long.bitCount(targets & ~Board.BACK_RANKS) + 4 * Long.bitCount(targets & Board.BACK_RANKS);
+            if(enPassant >= 0 && (Bitboards.pawnAttacks(us, from) & (1L << enPassant)) != 0
+                    && this.isLegalEnPassant(index, from, enPassant, kingBit, occupancy)) {
+                count++;
+            }
+        }
+        if(kingBit != 0 && checkers == 0) {
+            for(int side = 0; side < 2; side++) {
+                int corner = Board.castlingCorner(us, side);
+                if((this.castlingRights[index] & Board.castlingRight(us, side)) == 0
+                        || !Board.hasCastlingPieces(us, side, kingBit, this.bitboards[base + Piece.ROOK][index])
+                        || (Bitboards.between(king, corner) & occupancy) != 0) {
+                    continue;
+                }
+                int direction = corner > king ? 8 : -8;
+                if(!this.isAttacked(index, king + direction, them, occupancy)
+                        && !this.isAttacked(index, king + 2 * direction, them, occupancy)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private long attackersTo(int index, int square, long occupied) {
+        long[][] bitboards = this.bitboards;
+        int black = PositionBatch.TYPE_COUNT;
+        long rooks = bitboards[Piece.ROOK][index] | bitboards[black + Piece.ROOK][index]
+                | bitboards[Piece.QUEEN][index] | bitboards[black + Piece.QUEEN][index];
+        long bishops = bitboards[Piece.BISHOP][index] | bitboards[black + Piece.BISHOP][index]
+                | bitboards[Piece.QUEEN][index] | bitboards[black + Piece.QUEEN][index];
+        return (Bitboards.pawnAttacks(Piece.WHITE, square) & bitboards[black + Piece.PAWN][index])
+                | (Bitboards.pawnAttacks(Piece.BLACK, square) & bitboards[Piece.PAWN][index])
+                | (Bitboards.knightAttacks(square) & (bitboards[Piece.KNIGHT][index] | bitboards[black + Piece.KNIGHT][index]))
+                | (Bitboards.kingAttacks(square) & (bitboards[Piece.KING][index] | bitboards[black + Piece.KING][index]))
+                | (Bitboards.bishopAttacks(square, occupied) & bishops)
+                | (Bitboards.rookAttacks(square, occupied) & rooks);
+    }
+
+    private boolean isAttacked(int index, int square, int byColor, long occupied) {
+        long[][] bitboards = this.bitboards;
+        int base = byColor * PositionBatch.TYPE_COUNT;
+        return (Bitboards.knightAttacks(square) & bitboards[base + Piece.KNIGHT][index]) != 0
+                || (Bitboards.pawnAttacks(byColor ^ 1, square) & bitboards[base + Piece.PAWN][index]) != 0
+                || (Bitboards.kingAttacks(square) & bitboards[base + Piece.KING][index]) != 0
+                || (Bitboards.bishopAttacks(square, occupied) & (bitboards[base + Piece.BISHOP][index] | bitboards[base + Piece.QUEEN][index])) != 0
+                || (Bitboards.rookAttacks(square, occupied) & (bitboards[base + Piece.ROOK][index] | bitboards[base + Piece.QUEEN][index])) != 0;
+    }
+
+    private long pinnedPieces(int index, int color, int king, long occupancy) {
+        long[][] bitboards = this.bitboards;
+        int base = (color ^ 1) * PositionBatch.TYPE_COUNT;
+        long theirs = this.colorOccupancy[color ^ 1][index];
+        long snipers = (Bitboards.rookAttacks(king, theirs) & (bitboards[base + Piece.ROOK][index] | bitboards[base + Piece.QUEEN][index]))
+                | (Bitboards.bishopAttacks(king, theirs) & (bitboards[base + Piece.BISHOP][index] | bitboards[base + Piece.QUEEN][index]));
+        long pinned = 0L;
+        for(; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(king, Long.numberOfTrailingZeros(snipers)) & occupancy;
+            if(Long.bitCount(blockers) == 1) {
+                pinned |= blockers & this.colorOccupancy[color][index];
+            }
+        }
+        return pinned;
+    }
+
+    private boolean isLegalEnPassant(int index, int from, int enPassant, long kingBit, long occupancy) {
+        if(kingBit == 0) {
+            return true;
+        }
+        long[][] bitboards = this.bitboards;
+        int us = this.sideToMove[index];
+        int base = (us ^ 1) * PositionBatch.TYPE_COUNT;
+        int captured = enPassant - (us == Piece.WHITE ? 1 : -1);
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long occupied = (occupancy ^ (1L << from) ^ (1L << captured)) | (1L << enPassant);
+        long rooks = bitboards[base + Piece.ROOK][index] | bitboards[base + Piece.QUEEN][index];
+        long bishops = bitboards[base + Piece.BISHOP][index] | bitboards[base + Piece.QUEEN][index];
+        long pawns = bitboards[base + Piece.PAWN][index] & ~(1L << captured);
+        return (Bitboards.rookAttacks(king, occupied) & rooks) == 0
+                && (Bitboards.bishopAttacks(king, occupied) & bishops) == 0
+                && (Bitboards.knightAttacks(king) & bitboards[base + Piece.KNIGHT][index]) == 0
+                && (Bitboards.pawnAttacks(us, king) & pawns) == 0;
+    }
+
+    /**
+     * Makes room for one more position, growing the columns if they are full.
+     * @return  the index of the new position
+     */
+    private int grow() {
+        int capacity = this.sideToMove.length;
+        if(this.size == capacity) {
+            for(int code = 0; code < PositionBatch.CODES; code++) {
+                this.bitboards[code] = Arrays.copyOf(this.bitboards[code], capacity * 2);
+            }
+            for(int color = 0; color < Piece.COLORS.size(); color++) {
+                this.colorOccupancy[color] = Arrays.copyOf(this.colorOccupancy[color], capacity * 2);
+            }
+            this.middlegame = Arrays.copyOf(this.middlegame, capacity * 2);
+            this.endgame = Arrays.copyOf(this.endgame, capacity * 2);
+            this.phase = Arrays.copyOf(this.phase, capacity * 2);
+            this.sideToMove = Arrays.copyOf(this.sideToMove, capacity * 2);
+            this.castlingRights = Arrays.copyOf(this.castlingRights, capacity * 2);
+            this.enPassantSquare = Arrays.copyOf(this.enPassantSquare, capacity * 2);
+        }
+        return this.size++;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= this.size) {
+            throw new IllegalArgumentException(index + " is not a valid index into a batch of " + this.size + ".");
+        }
+    }
+
+    private void checkResults(int length) {
+        if(length < this.size) {
+            throw new IllegalArgumentException("An array of " + length + " cannot hold the results of " + this.size + " positions.");
+        }
+    }
+
+    /**
+     * One of the kernels, run over a range of the batch.
+     */
+    private interface Kernel {
+        void run(int from, int to);
+    }
+
+    private static final class Split extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel kernel;
+        private final int from;
+        private final int to;
+
+        Split(Kernel kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from <= PositionBatch.SEQUENTIAL_SIZE) {
+                this.kernel.run(this.from, this.to);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            RecursiveAction.invokeAll(new Split(this.kernel, this.from, middle), new Split(this.kernel, middle, this.to));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author woodjamesdee
+ *
+ * Reads moves in Standard Algebraic Notation, such as "Nbd7", "exd5", "e8=Q+" or "O-O", by matching them against
+ * the legal moves of a Board. Reading works on raw ASCII bytes so that game files can be replayed without creating
+ * a String per move. Check, mate and annotation suffixes are ignored, and castling may be written with zeros.
+ */
+public final class San {
+
+    private static final String PIECES = "PNBRQK";
+
+    private San() {
+    }
+
+    /**
+     * Finds the legal move of a Board written by a SAN string.
+     * @param board the position the move is played from
+     * @param san   the move
+     * @return  the packed move, or Move.NONE if it is not legal or is ambiguous
+     */
+    public static int parse(Board board, String san) {
+        byte[] bytes = san.getBytes(StandardCharsets.US_ASCII);
+        return San.parse(board, bytes, 0, bytes.length, new int[Board.MAX_MOVES]);
+    }
+
+    /**
+     * Finds the legal move of a Board written in SAN within an array of ASCII bytes.
+     * @param board the position the move is played from
+     * @param text  the bytes holding the move
+     * @param start the index of the first byte of the move
+     * @param end   the index after the last byte of the move
+     * @param moves a buffer of at least Board.MAX_MOVES moves to generate the legal moves into
+     * @return  the packed move, or Move.NONE if it is not legal or is ambiguous
+     */
+    public static int parse(Board board, byte[] text, int start, int end, int[] moves) {
+        while(end > start && (text[end - 1] == '+' || text[end - 1] == '#' || text[end - 1] == '!' || text[end - 1] == '?')) {
+            end--;
+        }
+        if(end - start < 2) {
+            return Move.NONE;
+        }
+        int count = board.generateLegalMoves(moves, 0);
+        if(text[start] == 'O' || text[start] == '0') {
+            int length = end - start;
+            boolean queenside = length == 5;
+            if(length != 3 && length != 5) {
+                return Move.NONE;
+            }
+            for(int i = 0; i < count; i++) {
+                if((Move.getFlags(moves[i]) & Move.CASTLE) != 0 && (Move.getTo(moves[i]) > Move.getFrom(moves[i])) == queenside) {
+                    return moves[i];
+                }
+            }
+            return Move.NONE;
+        }
+        int type = Piece.PAWN;
+        if(text[start] >= 'B' && text[start] <= 'R' && San.PIECES.indexOf(text[start]) > 0) {
+            type = San.PIECES.indexOf(text[start]);
+            start++;
+        }
+        int promotion = Piece.PAWN;
+        if(end - start >= 3 && San.PIECES.indexOf(text[end - 1]) > 0 && San.PIECES.indexOf(text[end - 1]) < Piece.KING) {
+            promotion = San.PIECES.indexOf(text[end - 1]);
+            end--;
+            if(text[end - 1] == '=') {
+                end--;
+            }
+        }
+        if(end - start < 2) {
+            return Move.NONE;
+        }
+        int to = San.square(text[end - 2], text[end - 1]);
+        if(to < 0) {
+            return Move.NONE;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for(int i = start; i < end - 2; i++) {
+            if(text[i] >= 'a' && text[i] <= 'h') {
+                fromFile = 'h' - text[i];
+            } else if(text[i] >= '1' && text[i] <= '8') {
+                fromRank = text[i] - '1';
+            } else if(text[i] != 'x' && text[i] != ':' && text[i] != '-') {
+                return Move.NONE;
+            }
+        }
+        int found = Move.NONE;
+        for(int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.getFrom(move);
+            if(Move.getTo(move) == to && Move.getPromotion(move) == promotion && board.getPieceType(from) == type
+                    && (fromFile < 0 || from / 8 == fromFile) && (fromRank < 0 || from % 8 == fromRank)) {
+                if(found != Move.NONE) {
+                    return Move.NONE; //Ambiguous
+                }
+                found = move;
+            }
+        }
+        return found;
+    }
+
+    private static int square(byte file, byte rank) {
+        if(file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return ('h' - file) * 8 + rank - '1';
+    }
+}
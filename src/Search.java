@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author woodjamesdee
+ *
+ * Chooses a move for a Board with an iterative deepening alpha-beta search. The search runs on several threads in
+ * the Lazy SMP style: every thread searches the same position on its own copy of the Board, and the threads share
+ * only the TranspositionTable, through which they pass results to each other. The calling thread acts as the main
+ * thread and decides when the search stops.
+ *
+ * Each search is recorded in EngineMetrics and as Java Flight Recorder events, one for the whole search and one for
+ * each iteration of the main thread.
+ */
+public class Search {
+
+    /**
+     * Receives the results of a search as it deepens.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the main search thread each time it completes an iteration.
+         * @param result    the best move, score and principal variation of the iteration
+         */
+        void iteration(SearchResult result);
+    }
+
+    public static final int MAX_PLY = 128;
+    public static final int MATE = 30000;
+    public static final int INFINITY = 32000;
+
+    private final TranspositionTable table;
+    private final SearchWorker[] workers;
+    private final ExecutorService helpers;
+    private volatile boolean stopped;
+    private volatile boolean pondering;
+    private volatile long startNanos;
+    private Tablebases tablebases;
+    private Listener listener;
+    private EngineMetrics metrics;
+    private SearchLimits limits;
+    private long iterationNanos;
+    private long hashProbes;
+    private long hashHits;
+    private long hashCollisions;
+
+    /**
+     * Creates a new Search.
+     * @param table     the table shared by all threads
+     * @param threads   the number of threads to search with, including the calling thread
+     */
+    public Search(TranspositionTable table, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid number of threads.");
+        }
+        this.table = table;
+        this.workers = new SearchWorker[threads];
+        for(int i = 0; i < threads; i++) {
+            this.workers[i] = new SearchWorker(this, i);
+        }
+        this.helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "search-helper-" + (++this.count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.stopped = true;
+        this.metrics = EngineMetrics.getDefault();
+    }
+
+    /**
+     * Searches a position until one of the limits is reached or stop() is called.
+     * @param board     the position to search, which is not modified
+     * @param limits    when to stop searching
+     * @return  the best move found along with its score and principal variation
+     */
+    public SearchResult search(Board board, SearchLimits limits) {
+        this.prepare(board, limits);
+        return this.run();
+    }
+
+    /**
+     * Sets up a search of a position to be run later, possibly on another thread. The search counts as started once
+     * this returns, so that a call to stop() or ponderhit() made before run() is not lost.
+     * @param board     the position to search, which is copied
+     * @param limits    when to stop searching
+     */
+    public void prepare(Board board, SearchLimits limits) {
+        this.limits = limits;
+        this.startNanos = System.nanoTime();
+        this.pondering = limits.isPonder();
+        this.stopped = false;
+        this.iterationNanos = this.startNanos;
+        this.hashProbes = this.table.getProbes();
+        this.hashHits = this.table.getHits();
+        this.hashCollisions = this.table.getCollisions();
+        this.table.newSearch();
+        for(SearchWorker worker : this.workers) {
+            worker.prepare(board);
+        }
+    }
+
+    /**
+     * Runs the search set up by prepare() on the calling thread and the helper threads.
+     * @return  the best move found along with its score and principal variation
+     */
+    public SearchResult run() {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for(int i = 1; i < this.workers.length; i++) {
+            futures.add(this.helpers.submit(this.workers[i]));
+        }
+        this.workers[0].run();
+        this.stopped = true;
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("A search thread failed.", e.getCause());
+            }
+        }
+        SearchWorker best = this.workers[0];
+        for(SearchWorker worker : this.workers) {
+            if(worker.getCompletedDepth() > best.getCompletedDepth() && worker.getBestMove() != Move.NONE) {
+                best = worker;
+            }
+        }
+        this.pondering = false;
+        SearchResult result = this.getResult(best);
+        event.end();
+        this.record(result, event);
+        return result;
+    }
+
+    /**
+     * Tells a pondering search that the opponent played the expected move. From now on the search keeps to its time
+     * limits, measured from this call.
+     */
+    public void ponderhit() {
+        this.startNanos = System.nanoTime();
+        this.pondering = false;
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. The search still returns the best move of the deepest
+     * iteration completed so far.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Stops the helper threads for good. The Search cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.stop();
+        if(this.helpers != null) {
+            this.helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the table shared by the search threads.
+     * @return  the transposition table
+     */
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Sets the endgame tables to probe at the leaves of later searches.
+     * @param tablebases    the tables, or null to probe none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * Gets the endgame tables probed at the leaves.
+     * @return  the tables, or null if there are none
+     */
+    public Tablebases getTablebases() {
+        return this.tablebases;
+    }
+
+    /**
+     * Sets the listener told about each iteration of later searches.
+     * @param listener  the listener, or null for none
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the metrics later searches are recorded in.
+     * @param metrics   the metrics, or null to record none
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metrics searches are recorded in.
+     * @return  the metrics, which are EngineMetrics.getDefault() unless set otherwise, or null
+     */
+    public EngineMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets the number of threads the search runs on.
+     * @return  the number of threads, including the calling thread
+     */
+    public int getThreads() {
+        return this.workers.length;
+    }
+
+    /**
+     * Gets the number of nodes searched so far by all threads in the current or last search.
+     * @return  the node count
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for(SearchWorker worker : this.workers) {
+            nodes += worker.getNodes();
+        }
+        return nodes;
+    }
+
+    boolean isStopped() {
+        return this.stopped;
+    }
+
+    SearchLimits getLimits() {
+        return this.limits;
+    }
+
+    long getElapsedMillis() {
+        return (System.nanoTime() - this.startNanos) / 1000000;
+    }
+
+    private SearchResult getResult(SearchWorker worker) {
+        return new SearchResult(worker.getBestMove(), worker.getScore(), worker.getCompletedDepth(), worker.getPrincipalVariation(),
+                this.getNodes(), System.nanoTime() - this.startNanos);
+    }
+
+    /**
+     * Called by the main thread after each iteration to tell the listener about it and record it.
+     */
+    void reportIteration(SearchWorker worker) {
+        if(this.metrics != null) {
+            this.metrics.recordIteration(worker.getCompletedDepth(), System.nanoTime() - this.iterationNanos);
+        }
+        SearchIterationEvent event = new SearchIterationEvent();
+        if(event.isEnabled()) {
+            event.depth = worker.getCompletedDepth();
+            event.score = worker.getScore();
+            event.nodes = this.getNodes();
+            event.bestMove = Move.toString(worker.getBestMove());
+            event.commit();
+        }
+        this.iterationNanos = System.nanoTime();
+        if(this.listener != null) {
+            this.listener.iteration(this.getResult(worker));
+        }
+    }
+
+    /**
+     * Adds up the counters of the threads once they have all finished, and records the search.
+     */
+    private void record(SearchResult result, SearchEvent event) {
+        long quiescenceNodes = 0;
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        long generatedMoves = 0;
+        for(SearchWorker worker : this.workers) {
+            quiescenceNodes += worker.getQuiescenceNodes();
+            cutoffs += worker.getCutoffs();
+            firstMoveCutoffs += worker.getFirstMoveCutoffs();
+            generatedMoves += worker.getGeneratedMoves();
+        }
+        long hashProbes = this.table.getProbes() - this.hashProbes;
+        long hashHits = this.table.getHits() - this.hashHits;
+        long hashCollisions = this.table.getCollisions() - this.hashCollisions;
+        if(this.metrics != null) {
+            this.metrics.recordSearch(result.getDepth(), result.getNodes(), quiescenceNodes, cutoffs, firstMoveCutoffs, generatedMoves,
+                    hashProbes, hashHits, hashCollisions, result.getNanos());
+        }
+        if(event.shouldCommit()) {
+            event.depth = result.getDepth();
+            event.nodes = result.getNodes();
+            event.nodesPerSecond = (long) result.getNodesPerSecond();
+            event.quiescenceShare = result.getNodes() == 0 ? 0 : (double) quiescenceNodes / result.getNodes();
+            event.firstMoveCutoffRate = cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+            event.generatedMoves = generatedMoves;
+            event.hashProbes = hashProbes;
+            event.hashHits = hashHits;
+            event.hashCollisions = hashCollisions;
+            event.threads = this.workers.length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Called periodically by the main thread to stop the search once the node or time limit is reached.
+     */
+    void checkLimits() {
+        if(this.getNodes() >= this.limits.getNodes() || (this.limits.getMoveTime() > 0 && !this.pondering
+                && this.getElapsedMillis() >= this.limits.getMoveTime())) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * Called by the main thread after each iteration to decide whether another one is likely to finish in time.
+     * While the best move keeps changing the search is given up to twice its optimum time, but no more than half of
+     * the move time, after which another iteration would rarely finish.
+     * @param unstable  true if the iteration just completed changed the best move
+     * @return  true if the search should not start another iteration
+     */
+    boolean isIterationTimeUsed(boolean unstable) {
+        long moveTime = this.limits.getMoveTime();
+        long optimum = this.limits.getOptimumTime() > 0 ? this.limits.getOptimumTime() : moveTime / 2;
+        if(optimum == 0 || this.pondering) {
+            return false;
+        }
+        if(unstable) {
+            optimum = moveTime > 0 ? Math.min(optimum * 2, Math.max(optimum, moveTime / 2)) : optimum * 2;
+        }
+        return this.getElapsedMillis() >= optimum;
+    }
+}
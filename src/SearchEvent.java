@@ -0,0 +1,53 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * @author woodjamesdee
+ *
+ * A Java Flight Recorder event for one whole search, committed by the Search when it finishes. JFR leaves disabled
+ * events all but free, so the event is always emitted.
+ */
+@Name("chess.Search")
+@Label("Search")
+@Category("Chess")
+@Description("A search for the best move of a position")
+@StackTrace(false)
+final class SearchEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Nodes per Second")
+    long nodesPerSecond;
+
+    @Label("Quiescence Share")
+    @Percentage
+    double quiescenceShare;
+
+    @Label("First Move Cutoff Rate")
+    @Percentage
+    double firstMoveCutoffRate;
+
+    @Label("Generated Moves")
+    long generatedMoves;
+
+    @Label("Hash Probes")
+    long hashProbes;
+
+    @Label("Hash Hits")
+    long hashHits;
+
+    @Label("Hash Collisions")
+    long hashCollisions;
+
+    @Label("Threads")
+    int threads;
+}
@@ -0,0 +1,120 @@
+/**
+ * @author woodjamesdee
+ *
+ * The limits of a single search. A search stops at whichever limit it reaches first; limits which are not set do not
+ * apply, and a search with no limits at all runs until Search.stop() is called. A pondering search ignores its time
+ * limits until Search.ponderhit() is called, and measures them from that moment on.
+ */
+public class SearchLimits {
+
+    private int depth;
+    private long nodes;
+    private long moveTime;
+    private long optimumTime;
+    private boolean ponder;
+
+    /**
+     * Creates limits which do not stop the search by themselves.
+     */
+    public SearchLimits() {
+        this.depth = Search.MAX_PLY - 1;
+        this.nodes = Long.MAX_VALUE;
+        this.moveTime = 0;
+        this.optimumTime = 0;
+        this.ponder = false;
+    }
+
+    /**
+     * Gets the deepest iteration to search.
+     * @return  the depth in plies
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Sets the deepest iteration to search.
+     * @param depth the depth in plies
+     */
+    public void setDepth(int depth) {
+        if(depth < 1 || depth >= Search.MAX_PLY) {
+            throw new IllegalArgumentException(depth + " is not a valid depth.");
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the number of nodes, summed over all threads, after which to stop.
+     * @return  the node limit
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Sets the number of nodes, summed over all threads, after which to stop.
+     * @param nodes the node limit
+     */
+    public void setNodes(long nodes) {
+        if(nodes < 1) {
+            throw new IllegalArgumentException(nodes + " is not a valid node limit.");
+        }
+        this.nodes = nodes;
+    }
+
+    /**
+     * Gets the time after which to stop.
+     * @return  the time in milliseconds, or 0 if there is no time limit
+     */
+    public long getMoveTime() {
+        return this.moveTime;
+    }
+
+    /**
+     * Sets the time after which to stop.
+     * @param moveTime  the time in milliseconds, or 0 for no time limit
+     */
+    public void setMoveTime(long moveTime) {
+        if(moveTime < 0) {
+            throw new IllegalArgumentException(moveTime + " is not a valid move time.");
+        }
+        this.moveTime = moveTime;
+    }
+
+    /**
+     * Gets the time after which the search should not start another iteration, unless the best move is still
+     * changing.
+     * @return  the time in milliseconds, or 0 to use half of the move time
+     */
+    public long getOptimumTime() {
+        return this.optimumTime;
+    }
+
+    /**
+     * Sets the time after which the search should not start another iteration, unless the best move is still
+     * changing. The move time still stops the search outright.
+     * @param optimumTime   the time in milliseconds, or 0 to use half of the move time
+     */
+    public void setOptimumTime(long optimumTime) {
+        if(optimumTime < 0) {
+            throw new IllegalArgumentException(optimumTime + " is not a valid optimum time.");
+        }
+        this.optimumTime = optimumTime;
+    }
+
+    /**
+     * Checks whether the search starts by pondering, thinking on the opponent's time.
+     * @return  true if the time limits wait for Search.ponderhit()
+     */
+    public boolean isPonder() {
+        return this.ponder;
+    }
+
+    /**
+     * Sets whether the search starts by pondering, thinking on the opponent's time.
+     * @param ponder    true if the time limits should wait for Search.ponderhit()
+     */
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+    }
+}
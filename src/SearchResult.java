@@ -0,0 +1,106 @@
+/**
+ * @author woodjamesdee
+ *
+ * The outcome of a search: the best move along with its score and the principal variation, the line of play both
+ * sides are expected to follow.
+ */
+public class SearchResult {
+
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final int[] principalVariation;
+    private final long nodes;
+    private final long nanos;
+
+    /**
+     * Creates a new SearchResult.
+     * @param bestMove              the best move found, packed as described by Move
+     * @param score                 the score of the best move in centipawns, from the side to move's point of view
+     * @param depth                 the deepest iteration completed
+     * @param principalVariation    the expected line of play, starting with the best move
+     * @param nodes                 the number of nodes searched by all threads
+     * @param nanos                 the time the search took
+     */
+    public SearchResult(int bestMove, int score, int depth, int[] principalVariation, long nodes, long nanos) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.principalVariation = principalVariation;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Gets the best move found.
+     * @return  the packed move, or Move.NONE if the position has no legal moves
+     */
+    public int getBestMove() {
+        return this.bestMove;
+    }
+
+    /**
+     * Gets the score of the best move.
+     * @return  the score in centipawns, from the side to move's point of view
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Checks whether the score is a forced mate for either side.
+     * @return  true if the score is a mate score
+     */
+    public boolean isMate() {
+        return Math.abs(this.score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * Gets the deepest iteration completed.
+     * @return  the depth in plies
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Gets the expected line of play.
+     * @return  the packed moves, starting with the best move
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation.clone();
+    }
+
+    /**
+     * Gets the number of nodes searched by all threads.
+     * @return  the node count
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Gets the time the search took.
+     * @return  the time in nanoseconds
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * Gets the search speed.
+     * @return  the number of nodes per second
+     */
+    public double getNodesPerSecond() {
+        return this.nanos == 0 ? 0 : this.nodes * 1e9 / this.nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for(int move : this.principalVariation) {
+            pv.append(' ').append(Move.toString(move));
+        }
+        return "depth " + this.depth + " score " + this.score + " nodes " + this.nodes + " pv" + pv;
+    }
+}
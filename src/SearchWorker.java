@@ -0,0 +1,435 @@
+/**
+ * @author woodjamesdee
+ *
+ * One thread of a Search. Runs iterative deepening with aspiration windows over a principal variation search with
+ * null move pruning, late move reductions and a quiescence search of captures at the leaves. Moves are ordered by
+ * the transposition table move, then captures by most valuable victim and least valuable attacker, then killer moves
+ * and finally the history heuristic. Positions covered by the endgame tables of the Search are scored exactly instead
+ * of being searched. Everything the worker needs is allocated once, so searching creates no garbage.
+ *
+ * The worker counts its quiescence nodes, beta cutoffs and generated moves in plain fields of its own, which the
+ * Search adds up for EngineMetrics once the worker has finished, so the counters are never contended.
+ */
+final class SearchWorker implements Runnable {
+
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 26;
+    private static final int KILLER_SCORE = 1 << 25;
+    private static final int HISTORY_LIMIT = 1 << 24;
+    private static final int PAWN_ENTRIES = 1 << 14;
+
+    private final Search search;
+    private final int id;
+    private final TranspositionTable table;
+    private final MoveBuffers moves;
+    private final int[][] scores;
+    private final int[][] killers;
+    private final int[][] history;
+    private final int[][] pv;
+    private final int[] pvLength;
+    private final PawnTable pawns;
+    private Tablebases tablebases;
+    private Board board;
+    private long nodes;
+    private volatile long publishedNodes;
+    private long quiescenceNodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long generatedMoves;
+    private boolean aborted;
+    private int completedDepth;
+    private int bestMove;
+    private int score;
+    private int[] principalVariation;
+
+    SearchWorker(Search search, int id) {
+        this.search = search;
+        this.id = id;
+        this.table = search.getTable();
+        this.moves = new MoveBuffers(Search.MAX_PLY);
+        this.scores = new int[Search.MAX_PLY][Board.MAX_MOVES];
+        this.killers = new int[Search.MAX_PLY][2];
+        this.history = new int[Piece.COLORS.size()][64 * 64];
+        this.pv = new int[Search.MAX_PLY][Search.MAX_PLY];
+        this.pvLength = new int[Search.MAX_PLY];
+        this.pawns = new PawnTable(SearchWorker.PAWN_ENTRIES);
+        this.principalVariation = new int[0];
+    }
+
+    /**
+     * Resets this worker for a new search of a position.
+     * @param board the position to search, which is copied
+     */
+    void prepare(Board board) {
+        this.board = new Board(board);
+        this.tablebases = this.search.getTablebases();
+        this.nodes = 0;
+        this.publishedNodes = 0;
+        this.quiescenceNodes = 0;
+        this.cutoffs = 0;
+        this.firstMoveCutoffs = 0;
+        this.generatedMoves = 0;
+        this.aborted = false;
+        this.completedDepth = 0;
+        this.bestMove = Move.NONE;
+        this.score = 0;
+        this.principalVariation = new int[0];
+        for(int[] plyKillers : this.killers) {
+            plyKillers[0] = Move.NONE;
+            plyKillers[1] = Move.NONE;
+        }
+        for(int[] colorHistory : this.history) {
+            for(int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] /= 8; //Keep some of what earlier searches learned
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        SearchLimits limits = this.search.getLimits();
+        int score = 0;
+        for(int depth = 1 + this.id % 2; depth <= limits.getDepth(); depth++) { //Helpers at odd ids stay a ply ahead
+            int alpha = -Search.INFINITY;
+            int beta = Search.INFINITY;
+            int delta = SearchWorker.ASPIRATION_WINDOW;
+            if(depth >= 5) {
+                alpha = Math.max(score - delta, -Search.INFINITY);
+                beta = Math.min(score + delta, Search.INFINITY);
+            }
+            while(true) {
+                int result = this.pvs(alpha, beta, depth, 0, false);
+                if(this.aborted) {
+                    break;
+                }
+                if(result <= alpha) {
+                    beta = (alpha + beta) / 2;
+                    alpha = Math.max(result - delta, -Search.INFINITY);
+                } else if(result >= beta) {
+                    beta = Math.min(result + delta, Search.INFINITY);
+                } else {
+                    score = result;
+                    break;
+                }
+                delta += delta;
+            }
+            if(this.aborted) {
+                break;
+            }
+            int previousMove = this.bestMove;
+            this.completedDepth = depth;
+            this.score = score;
+            this.principalVariation = new int[this.pvLength[0]];
+            System.arraycopy(this.pv[0], 0, this.principalVariation, 0, this.pvLength[0]);
+            this.bestMove = this.pvLength[0] > 0 ? this.pv[0][0] : Move.NONE;
+            if(this.id == 0) {
+                this.search.reportIteration(this);
+            }
+            if(this.bestMove == Move.NONE || Math.abs(score) >= Search.MATE - depth
+                    || (this.id == 0 && this.search.isIterationTimeUsed(this.bestMove != previousMove && depth > 1))
+                    || this.search.isStopped()) {
+                break;
+            }
+        }
+        this.publishedNodes = this.nodes;
+    }
+
+    int getCompletedDepth() {
+        return this.completedDepth;
+    }
+
+    int getBestMove() {
+        return this.bestMove;
+    }
+
+    int getScore() {
+        return this.score;
+    }
+
+    int[] getPrincipalVariation() {
+        return this.principalVariation;
+    }
+
+    long getNodes() {
+        return this.publishedNodes;
+    }
+
+    long getQuiescenceNodes() {
+        return this.quiescenceNodes;
+    }
+
+    long getCutoffs() {
+        return this.cutoffs;
+    }
+
+    long getFirstMoveCutoffs() {
+        return this.firstMoveCutoffs;
+    }
+
+    long getGeneratedMoves() {
+        return this.generatedMoves;
+    }
+
+    private int pvs(int alpha, int beta, int depth, int ply, boolean nullAllowed) {
+        this.pvLength[ply] = ply;
+        boolean pvNode = beta - alpha > 1;
+        if(ply > 0) {
+            if(this.board.getHalfmoveClock() >= 100 || this.board.isRepetition()) {
+                return 0;
+            }
+            if(this.tablebases != null) {
+                int score = this.tablebases.score(this.board, ply);
+                if(score != Tablebases.UNKNOWN) {
+                    return score;
+                }
+            }
+            if(ply >= Search.MAX_PLY - 1) {
+                return Evaluation.evaluate(this.board, this.pawns);
+            }
+            alpha = Math.max(alpha, -Search.MATE + ply); //No mate found later can be shorter than one found already
+            beta = Math.min(beta, Search.MATE - ply - 1);
+            if(alpha >= beta) {
+                return alpha;
+            }
+        }
+        boolean inCheck = this.board.isInCheck();
+        if(inCheck) {
+            depth++;
+        }
+        if(depth <= 0) {
+            return this.quiesce(alpha, beta, ply);
+        }
+        if(this.countNode()) {
+            return 0;
+        }
+        long key = this.board.getHash();
+        long entry = this.table.probe(key);
+        int ttMove = Move.NONE;
+        if(entry != 0) {
+            ttMove = TranspositionTable.getMove(entry);
+            if(!pvNode && TranspositionTable.getDepth(entry) >= depth) {
+                int stored = SearchWorker.fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if(bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && stored >= beta)
+                        || (bound == TranspositionTable.UPPER && stored <= alpha)) {
+                    return stored;
+                }
+            }
+        }
+        if(!pvNode && !inCheck && nullAllowed && depth >= 3 && this.hasPieces(this.board.getSideToMove())
+                && Evaluation.evaluate(this.board, this.pawns) >= beta) {
+            this.board.makeNullMove();
+            int score = -this.pvs(-beta, -beta + 1, depth - (depth >= 6 ? 4 : 3), ply + 1, false);
+            this.board.unmakeMove();
+            if(this.aborted) {
+                return 0;
+            }
+            if(score >= beta) {
+                return score >= Search.MATE - Search.MAX_PLY ? beta : score;
+            }
+        }
+        int count = this.moves.generate(this.board, ply);
+        this.generatedMoves += count;
+        if(count == 0) {
+            return inCheck ? -Search.MATE + ply : 0;
+        }
+        int[] list = this.moves.get(ply);
+        this.scoreMoves(list, count, ttMove, ply);
+        int originalAlpha = alpha;
+        int best = -Search.INFINITY;
+        int bestMove = Move.NONE;
+        for(int i = 0; i < count; i++) {
+            int move = this.pickMove(list, count, i, ply);
+            boolean quiet = !Move.isCapture(move) && Move.getPromotion(move) == Piece.PAWN;
+            this.board.makeMove(move);
+            int score;
+            if(i == 0) {
+                score = -this.pvs(-beta, -alpha, depth - 1, ply + 1, true);
+            } else {
+                int reduction = quiet && !inCheck && depth >= 3 && i >= 3 && !this.board.isInCheck() ? 1 + (i >= 8 ? 1 : 0) : 0;
+                score = -this.pvs(-alpha - 1, -alpha, depth - 1 - reduction, ply + 1, true);
+                if(score > alpha && reduction > 0) {
+                    score = -this.pvs(-alpha - 1, -alpha, depth - 1, ply + 1, true);
+                }
+                if(score > alpha && score < beta) {
+                    score = -this.pvs(-beta, -alpha, depth - 1, ply + 1, true);
+                }
+            }
+            this.board.unmakeMove();
+            if(this.aborted) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                bestMove = move;
+                if(score > alpha) {
+                    alpha = score;
+                    this.updatePrincipalVariation(ply, move);
+                    if(alpha >= beta) {
+                        this.cutoffs++;
+                        if(i == 0) {
+                            this.firstMoveCutoffs++;
+                        }
+                        if(quiet) {
+                            this.rememberCutoff(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        this.table.store(key, bestMove, SearchWorker.toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    private int quiesce(int alpha, int beta, int ply) {
+        this.pvLength[ply] = ply;
+        this.quiescenceNodes++;
+        if(this.countNode()) {
+            return 0;
+        }
+        if(ply >= Search.MAX_PLY - 1) {
+            return Evaluation.evaluate(this.board, this.pawns);
+        }
+        boolean inCheck = this.board.isInCheck();
+        int[] list = this.moves.get(ply);
+        int count;
+        int best;
+        if(inCheck) { //Every evasion has to be searched, or a mate could be missed
+            count = this.moves.generate(this.board, ply);
+            if(count == 0) {
+                return -Search.MATE + ply;
+            }
+            best = -Search.INFINITY;
+        } else {
+            best = Evaluation.evaluate(this.board, this.pawns);
+            if(best >= beta) {
+                return best;
+            }
+            if(best > alpha) {
+                alpha = best;
+            }
+            count = this.board.generateLegalCaptures(list, 0);
+        }
+        this.generatedMoves += count;
+        this.scoreMoves(list, count, Move.NONE, ply);
+        for(int i = 0; i < count; i++) {
+            int move = this.pickMove(list, count, i, ply);
+            this.board.makeMove(move);
+            int score = -this.quiesce(-beta, -alpha, ply + 1);
+            this.board.unmakeMove();
+            if(this.aborted) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                if(score > alpha) {
+                    alpha = score;
+                    if(alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean countNode() {
+        this.nodes++;
+        if((this.nodes & 1023) == 0) {
+            this.publishedNodes = this.nodes;
+            if(this.id == 0) {
+                this.search.checkLimits();
+            }
+            if(this.search.isStopped() && (this.completedDepth > 0 || this.id != 0)) { //The main thread always finishes depth 1
+                this.aborted = true;
+            }
+        }
+        return this.aborted;
+    }
+
+    private void scoreMoves(int[] list, int count, int ttMove, int ply) {
+        int[] moveScores = this.scores[ply];
+        int[] colorHistory = this.history[this.board.getSideToMove()];
+        for(int i = 0; i < count; i++) {
+            int move = list[i];
+            if(move == ttMove) {
+                moveScores[i] = SearchWorker.TT_MOVE_SCORE;
+            } else if(Move.isCapture(move) || Move.getPromotion(move) != Piece.PAWN) {
+                int victim = Move.isCapture(move) ? Evaluation.VALUES[Move.getCaptured(move)] : 0;
+                moveScores[i] = SearchWorker.CAPTURE_SCORE + 16 * (victim + Evaluation.VALUES[Move.getPromotion(move)])
+                        - this.board.getPieceType(Move.getFrom(move));
+            } else if(move == this.killers[ply][0]) {
+                moveScores[i] = SearchWorker.KILLER_SCORE + 1;
+            } else if(move == this.killers[ply][1]) {
+                moveScores[i] = SearchWorker.KILLER_SCORE;
+            } else {
+                moveScores[i] = colorHistory[Move.getFrom(move) * 64 + Move.getTo(move)];
+            }
+        }
+    }
+
+    private int pickMove(int[] list, int count, int index, int ply) {
+        int[] moveScores = this.scores[ply];
+        int best = index;
+        for(int i = index + 1; i < count; i++) {
+            if(moveScores[i] > moveScores[best]) {
+                best = i;
+            }
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = moveScores[best];
+        moveScores[best] = moveScores[index];
+        moveScores[index] = score;
+        return move;
+    }
+
+    private void rememberCutoff(int move, int depth, int ply) {
+        if(this.killers[ply][0] != move) {
+            this.killers[ply][1] = this.killers[ply][0];
+            this.killers[ply][0] = move;
+        }
+        int[] colorHistory = this.history[this.board.getSideToMove()];
+        int index = Move.getFrom(move) * 64 + Move.getTo(move);
+        colorHistory[index] += depth * depth;
+        if(colorHistory[index] >= SearchWorker.HISTORY_LIMIT) {
+            for(int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] /= 2;
+            }
+        }
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        this.pv[ply][ply] = move;
+        System.arraycopy(this.pv[ply + 1], ply + 1, this.pv[ply], ply + 1, this.pvLength[ply + 1] - ply - 1);
+        this.pvLength[ply] = Math.max(this.pvLength[ply + 1], ply + 1);
+    }
+
+    private boolean hasPieces(int color) {
+        return (this.board.getOccupancy(color) & ~this.board.getBitboard(Piece.PAWN, color) & ~this.board.getBitboard(Piece.KING, color)) != 0;
+    }
+
+    private static int toTable(int score, int ply) {
+        if(score >= Search.MATE - Search.MAX_PLY) {
+            return score + ply;
+        }
+        if(score <= -Search.MATE + Search.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if(score >= Search.MATE - Search.MAX_PLY) {
+            return score - ply;
+        }
+        if(score <= -Search.MATE + Search.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * @author woodjamesdee
+ *
+ * A sequential probability ratio test between two hypotheses about the Elo difference of two players: H0, that the
+ * difference is elo0, and H1, that it is elo1. After each game the log likelihood ratio of the wins, draws and
+ * losses so far is compared with bounds set by the accepted error rates, and testing stops as soon as it crosses
+ * one of them. The ratio uses the normal approximation of the generalized SPRT, with half a win, draw and loss
+ * added to the counts so that a one-sided start does not end the test at once.
+ */
+public final class Sprt {
+
+    public static final int ACCEPT_H0 = -1;
+    public static final int CONTINUE = 0;
+    public static final int ACCEPT_H1 = 1;
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * Creates a new test.
+     * @param elo0  the Elo difference of H0
+     * @param elo1  the Elo difference of H1, which must be larger than elo0
+     * @param alpha the chance of accepting H1 when H0 is true
+     * @param beta  the chance of accepting H0 when H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if(!(elo1 > elo0)) {
+            throw new IllegalArgumentException("[" + elo0 + ", " + elo1 + "] is not a valid Elo interval.");
+        }
+        if(!(alpha > 0 && alpha < 1 && beta > 0 && beta < 1)) {
+            throw new IllegalArgumentException(alpha + " and " + beta + " are not valid error rates.");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Gets the log likelihood ratio below which H0 is accepted.
+     * @return  the lower bound
+     */
+    public double getLowerBound() {
+        return this.lowerBound;
+    }
+
+    /**
+     * Gets the log likelihood ratio above which H1 is accepted.
+     * @return  the upper bound
+     */
+    public double getUpperBound() {
+        return this.upperBound;
+    }
+
+    /**
+     * Works out the log likelihood ratio of H1 against H0 for a set of results.
+     * @param wins      the number of games won
+     * @param draws     the number of games drawn
+     * @param losses    the number of games lost
+     * @return  the log likelihood ratio
+     */
+    public double getLlr(long wins, long draws, long losses) {
+        double w = wins + 0.5;
+        double d = draws + 0.5;
+        double l = losses + 0.5;
+        double n = w + d + l;
+        double score = (w + d / 2) / n;
+        double variance = (w * Math.pow(1 - score, 2) + d * Math.pow(0.5 - score, 2) + l * Math.pow(score, 2)) / n;
+        double score0 = Sprt.getScore(this.elo0);
+        double score1 = Sprt.getScore(this.elo1);
+        return n * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * Decides whether a set of results is enough to stop testing.
+     * @param wins      the number of games won
+     * @param draws     the number of games drawn
+     * @param losses    the number of games lost
+     * @return  ACCEPT_H0, ACCEPT_H1, or CONTINUE if more games are needed
+     */
+    public int decide(long wins, long draws, long losses) {
+        double llr = this.getLlr(wins, draws, losses);
+        return llr >= this.upperBound ? Sprt.ACCEPT_H1 : llr <= this.lowerBound ? Sprt.ACCEPT_H0 : Sprt.CONTINUE;
+    }
+
+    /**
+     * Converts an Elo difference into the expected score of the stronger player.
+     * @param elo   the Elo difference
+     * @return  the expected score, from 0 to 1
+     */
+    public static double getScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Converts a score into the Elo difference which would be expected to give it.
+     * @param score the score, from 0 to 1
+     * @return  the Elo difference, infinite for a score of 0 or 1
+     */
+    public static double getElo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "SPRT [" + this.elo0 + ", " + this.elo1 + "] bounds " + String.format("%.2f", this.lowerBound) + " "
+                + String.format("%.2f", this.upperBound);
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author woodjamesdee
+ *
+ * An endgame table of one set of material, such as "KQvK" or "KRPvKR", giving the exact result and distance to mate
+ * of every position with that material and no castling rights. The table is memory-mapped from a file written by
+ * TablebaseGenerator, so it lives off the heap and looking up a position is a single index calculation and read.
+ *
+ * The file starts with a 32 byte header, the magic number, the number of pieces, the piece codes and the number of
+ * positions per side, followed by one byte per position with white to move and then one per position with black to
+ * move. A position is indexed by the squares of its pieces in the order of the material name, white king first,
+ * each taking six bits. Symmetry shrinks the table: without pawns the board is mirrored and turned so that the white
+ * king stands in the a1-d1-d4 triangle, and with pawns it is only mirrored so that the white king is on files a-d.
+ *
+ * A stored value of 0 is a draw. Any other value v means mate in v - 1 plies: the side to move is mated if v is odd
+ * and mates if v is even.
+ */
+public final class Tablebase {
+
+    public static final int DRAW = 0;
+    public static final int MAX_PIECES = 5;
+
+    static final int HEADER_SIZE = 32;
+    static final long MAGIC = 0x4348455353544231L; //"CHESSTB1"
+
+    private static final String LETTERS = "PNBRQK";
+    private static final int TYPE_COUNT = Piece.TYPES.size();
+    private static final int FLIP_FILE = 1;
+    private static final int FLIP_RANK = 2;
+    private static final int SWAP = 4;
+    private static final int TIE = 8;
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+
+    static {
+        int index = 0;
+        for(int square = 0; square < 64; square++) {
+            int file = square >>> 3;
+            int rank = square & 7;
+            if(file <= 3 && rank <= file) {
+                Tablebase.TRIANGLE_SQUARES[index] = square;
+                Tablebase.TRIANGLE[square] = index++;
+            } else {
+                Tablebase.TRIANGLE[square] = -1;
+            }
+        }
+    }
+
+    private final String material;
+    private final int[] codes;
+    private final boolean pawns;
+    private final int size;
+    private final MappedByteBuffer[] sides;
+
+    private Tablebase(int[] codes, int size, MappedByteBuffer[] sides) {
+        this.material = Tablebase.name(codes);
+        this.codes = codes;
+        this.pawns = Tablebase.hasPawns(codes);
+        this.size = size;
+        this.sides = sides;
+    }
+
+    /**
+     * Opens a table file.
+     * @param path  the file to open
+     * @return  the table
+     * @throws IOException  if the file cannot be read or is not a table
+     */
+    public static Tablebase open(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                continue;
+            }
+            int count = header.getInt(8);
+            if(header.hasRemaining() || header.getLong(0) != Tablebase.MAGIC || count < 2 || count > Tablebase.MAX_PIECES) {
+                throw new IOException(path + " is not an endgame table.");
+            }
+            int[] codes = new int[count];
+            for(int i = 0; i < count; i++) {
+                codes[i] = header.get(16 + i);
+            }
+            long size = header.getLong(24);
+            if(size != Tablebase.size(count, Tablebase.hasPawns(codes))
+                    || channel.size() != Tablebase.HEADER_SIZE + 2 * size) {
+                throw new IOException(path + " is truncated.");
+            }
+            MappedByteBuffer[] sides = new MappedByteBuffer[Piece.COLORS.size()];
+            for(int side = 0; side < sides.length; side++) {
+                sides[side] = channel.map(FileChannel.MapMode.READ_ONLY, Tablebase.HEADER_SIZE + side * size, size);
+            }
+            return new Tablebase(codes, (int) size, sides);
+        }
+    }
+
+    /**
+     * Gets the name of the material this table covers, such as "KRvKN".
+     * @return  the material
+     */
+    public String getMaterial() {
+        return this.material;
+    }
+
+    /**
+     * Gets the number of pieces, including the kings, in every position of this table.
+     * @return  the number of pieces
+     */
+    public int getPieceCount() {
+        return this.codes.length;
+    }
+
+    /**
+     * Gets the number of positions stored for each side to move, including unreachable ones.
+     * @return  the number of positions per side
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Looks up a position, which must have exactly the material of this table with either color playing either
+     * side, and no castling rights or en passant square.
+     * @param board the position
+     * @return  the stored value, DRAW or mate in value - 1 plies
+     */
+    public int probe(Board board) {
+        long key = Tablebase.key(board);
+        if(key != Tablebase.key(this.codes, false) && key != Tablebase.key(this.codes, true)) {
+            throw new IllegalArgumentException(board + " does not have the material " + this.material + ".");
+        }
+        return this.probe(board, key != Tablebase.key(this.codes, false));
+    }
+
+    /**
+     * Looks up a position without creating any objects.
+     * @param board     the position
+     * @param flipped   true if the colors of the position are the reverse of this table's
+     * @return  the stored value
+     */
+    int probe(Board board, boolean flipped) {
+        int flip = flipped ? 7 : 0; //Mirroring the ranks turns black into white
+        int swap = flipped ? 1 : 0;
+        int king = Long.numberOfTrailingZeros(board.getBitboard(Piece.KING, Piece.WHITE ^ swap)) ^ flip;
+        int transform = Tablebase.transform(king, this.pawns);
+        int first = Tablebase.apply(king, transform);
+        long index = this.pawns ? first : Tablebase.TRIANGLE[first];
+        long mirrored = index;
+        long used = 1L << (king ^ flip);
+        for(int i = 1; i < this.codes.length; i++) {
+            int code = this.codes[i];
+            long pieces = board.getBitboard(code % Tablebase.TYPE_COUNT, (code / Tablebase.TYPE_COUNT) ^ swap) & ~used;
+            int square = Long.numberOfTrailingZeros(pieces);
+            used |= 1L << square;
+            index = (index << 6) | Tablebase.apply(square ^ flip, transform);
+            mirrored = (mirrored << 6) | Tablebase.apply(square ^ flip, transform | Tablebase.SWAP);
+        }
+        if((transform & Tablebase.TIE) != 0) {
+            index = Math.min(index, mirrored);
+        }
+        return this.get(board.getSideToMove() ^ swap, (int) index);
+    }
+
+    /**
+     * Gets the stored value of a position by index.
+     */
+    int get(int side, int index) {
+        return this.sides[side].get(index) & 0xFF;
+    }
+
+    int[] getCodes() {
+        return this.codes;
+    }
+
+    /**
+     * Checks whether a stored value means the side to move mates.
+     * @param value the stored value
+     * @return  true if the position is won
+     */
+    public static boolean isWin(int value) {
+        return value != Tablebase.DRAW && (value & 1) == 0;
+    }
+
+    /**
+     * Checks whether a stored value means the side to move is mated.
+     * @param value the stored value
+     * @return  true if the position is lost
+     */
+    public static boolean isLoss(int value) {
+        return (value & 1) != 0;
+    }
+
+    /**
+     * Gets the number of plies until mate of a won or lost position.
+     * @param value the stored value, which is not DRAW
+     * @return  the plies until mate, counting the mating move
+     */
+    public static int getPlies(int value) {
+        return value - 1;
+    }
+
+    /**
+     * Gets the number of positions per side of a table.
+     */
+    static long size(int count, boolean pawns) {
+        return (pawns ? 32L : 10L) << (6 * (count - 1));
+    }
+
+    /**
+     * Gets the index of a position with the pieces on given squares, in the order of the table's codes, after
+     * bringing it into the canonical orientation. Every orientation of a position has the same index.
+     */
+    static int index(int[] squares, int count, boolean pawns) {
+        int transform = Tablebase.transform(squares[0], pawns);
+        int first = Tablebase.apply(squares[0], transform);
+        int index = pawns ? first : Tablebase.TRIANGLE[first];
+        int mirrored = index;
+        for(int i = 1; i < count; i++) {
+            index = (index << 6) | Tablebase.apply(squares[i], transform);
+            mirrored = (mirrored << 6) | Tablebase.apply(squares[i], transform | Tablebase.SWAP);
+        }
+        return (transform & Tablebase.TIE) != 0 ? Math.min(index, mirrored) : index;
+    }
+
+    /**
+     * Sets the squares of the pieces of the position with an index. The squares are in the canonical orientation,
+     * so the position is only a real one of the table if indexing them gives back the same index.
+     */
+    static void decode(int index, int count, boolean pawns, int[] squares) {
+        for(int i = count - 1; i > 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        squares[0] = pawns ? index : Tablebase.TRIANGLE_SQUARES[index];
+    }
+
+    /**
+     * Chooses the symmetry which brings the white king into the canonical part of the board. A king on the diagonal
+     * of the triangle is marked as a tie, to be broken by the rest of the position.
+     */
+    private static int transform(int king, boolean pawns) {
+        int transform = 0;
+        int file = king >>> 3;
+        int rank = king & 7;
+        if(file > 3) {
+            transform |= Tablebase.FLIP_FILE;
+            file = 7 - file;
+        }
+        if(pawns) {
+            return transform;
+        }
+        if(rank > 3) {
+            transform |= Tablebase.FLIP_RANK;
+            rank = 7 - rank;
+        }
+        if(rank > file) {
+            transform |= Tablebase.SWAP;
+        } else if(rank == file) {
+            transform |= Tablebase.TIE;
+        }
+        return transform;
+    }
+
+    private static int apply(int square, int transform) {
+        if((transform & Tablebase.FLIP_FILE) != 0) {
+            square ^= 56;
+        }
+        if((transform & Tablebase.FLIP_RANK) != 0) {
+            square ^= 7;
+        }
+        if((transform & Tablebase.SWAP) != 0) {
+            square = ((square & 7) << 3) | (square >>> 3);
+        }
+        return square;
+    }
+
+    /**
+     * Reads a material name such as "KRPvKR" into piece codes, white king first, then the other white pieces from
+     * the queen down to pawns, then the black king and the other black pieces.
+     */
+    static int[] parseMaterial(String material) {
+        int separator = material.indexOf('v');
+        if(separator < 1 || material.length() - separator < 2 || material.charAt(0) != 'K' || material.charAt(separator + 1) != 'K') {
+            throw new IllegalArgumentException(material + " is not a valid material.");
+        }
+        int count = material.length() - 1;
+        int[] codes = new int[count];
+        int index = 0;
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            String letters = color == Piece.WHITE ? material.substring(0, separator) : material.substring(separator + 1);
+            for(int type = Piece.KING; type >= Piece.PAWN; type--) {
+                int found = 0;
+                for(int i = 0; i < letters.length(); i++) {
+                    int letter = Tablebase.LETTERS.indexOf(letters.charAt(i));
+                    if(letter < 0 || (letter == Piece.KING && i > 0)) {
+                        throw new IllegalArgumentException(material + " is not a valid material.");
+                    }
+                    if(letter == type) {
+                        codes[index++] = color * Tablebase.TYPE_COUNT + type;
+                        found++;
+                    }
+                }
+                if(type == Piece.KING && found != 1) {
+                    throw new IllegalArgumentException(material + " is not a valid material.");
+                }
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Gets the name of some material, given as piece codes in any order.
+     */
+    static String name(int[] codes) {
+        StringBuilder builder = new StringBuilder();
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            if(color == Piece.BLACK) {
+                builder.append('v');
+            }
+            for(int type = Piece.KING; type >= Piece.PAWN; type--) {
+                for(int code : codes) {
+                    if(code == color * Tablebase.TYPE_COUNT + type) {
+                        builder.append(Tablebase.LETTERS.charAt(type));
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Gets the name under which the table of some material is stored. A material and the one with the colors
+     * reversed share a table, named with the stronger side as white.
+     */
+    static String canonical(String material) {
+        int separator = material.indexOf('v');
+        String white = material.substring(0, separator);
+        String black = material.substring(separator + 1);
+        return Tablebase.strength(black) > Tablebase.strength(white)
+                || (Tablebase.strength(black) == Tablebase.strength(white) && black.compareTo(white) > 0)
+                ? black + "v" + white : material;
+    }
+
+    private static int strength(String letters) {
+        int strength = 0;
+        for(int i = 0; i < letters.length(); i++) {
+            int type = Tablebase.LETTERS.indexOf(letters.charAt(i));
+            strength += type == Piece.KING ? 0 : Evaluation.VALUES[type];
+        }
+        return strength * 8 + letters.length();
+    }
+
+    static boolean hasPawns(int[] codes) {
+        for(int code : codes) {
+            if(code % Tablebase.TYPE_COUNT == Piece.PAWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a number identifying some material, four bits per piece code holding the number of such pieces.
+     */
+    static long key(int[] codes, boolean flipped) {
+        long key = 0;
+        for(int code : codes) {
+            int color = (code / Tablebase.TYPE_COUNT) ^ (flipped ? 1 : 0);
+            key += 1L << (4 * (color * Tablebase.TYPE_COUNT + code % Tablebase.TYPE_COUNT));
+        }
+        return key;
+    }
+
+    static long key(Board board) {
+        long key = 0;
+        for(int code = 0; code < 2 * Tablebase.TYPE_COUNT; code++) {
+            key |= (long) Long.bitCount(board.getBitboard(code % Tablebase.TYPE_COUNT, code / Tablebase.TYPE_COUNT)) << (4 * code);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,768 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author woodjamesdee
+ *
+ * Builds Tablebase files by retrograde analysis. The tables of the material a capture or promotion can lead to are
+ * built first, then the positions of a table are solved one ply of distance to mate at a time: the positions whose
+ * result became known at the last ply are taken back one move, and each position reached that way is checked again
+ * to see whether it now mates or is mated. Captures and promotions out of the table are looked up in the smaller
+ * tables and scheduled for the ply at which they decide the position.
+ *
+ * The values are written straight into the memory-mapped table file. The table is split into shards which are
+ * solved by the threads in parallel, each thread owning the positions of its shards, so no locking is needed. During
+ * generation one further byte per position is kept on the heap.
+ */
+public final class TablebaseGenerator {
+
+    private static final int FINAL = 0xFF;
+    private static final int MAX_PLIES = 254;
+    private static final int SHARDS_PER_THREAD = 4;
+    private static final int[] PROMOTIONS = new int[] {Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT};
+    private static final int TYPE_COUNT = Piece.TYPES.size();
+
+    private final int threads;
+    private final ExecutorService pool;
+
+    /**
+     * Creates a new TablebaseGenerator.
+     * @param threads   the number of threads to generate with
+     */
+    public TablebaseGenerator(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid number of threads.");
+        }
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tablebase-generator-" + (++this.count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Builds the table of some material, and the tables of every material it can turn into, in a directory. Tables
+     * already in the directory are used as they are.
+     * @param material  the material, such as "KRPvKR", with between three and five pieces
+     * @param directory the directory to write the tables to, named after their material
+     * @return  the table
+     * @throws IOException  if a table cannot be read or written
+     */
+    public Tablebase generate(String material, Path directory) throws IOException {
+        int[] codes = Tablebase.parseMaterial(material);
+        if(codes.length < 3 || codes.length > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException(material + " does not have between 3 and " + Tablebase.MAX_PIECES + " pieces.");
+        }
+        return this.generate(Tablebase.canonical(material), directory, new HashMap<String, Tablebase>());
+    }
+
+    /**
+     * Stops the generator threads. The TablebaseGenerator cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    private Tablebase generate(String material, Path directory, HashMap<String, Tablebase> tables) throws IOException {
+        Tablebase table = tables.get(material);
+        if(table != null) {
+            return table;
+        }
+        Path path = directory.resolve(material + ".tb");
+        if(Files.exists(path)) {
+            table = Tablebase.open(path);
+        } else {
+            int[] codes = Tablebase.parseMaterial(material);
+            for(String child : TablebaseGenerator.children(codes)) {
+                this.generate(child, directory, tables);
+            }
+            new Job(codes, tables).run(path);
+            table = Tablebase.open(path);
+        }
+        tables.put(material, table);
+        return table;
+    }
+
+    /**
+     * Gets the canonical names of every material with more than the two kings which one capture or promotion,
+     * or both at once, turns some material into.
+     */
+    private static ArrayList<String> children(int[] codes) {
+        ArrayList<String> children = new ArrayList<String>();
+        for(int captured = -1; captured < codes.length; captured++) {
+            for(int promoted = -1; promoted < codes.length; promoted++) {
+                for(int promotion : TablebaseGenerator.PROMOTIONS) {
+                    int[] child = TablebaseGenerator.convert(codes, captured, promoted, promotion);
+                    if(child != null && child.length > 2 && !children.contains(Tablebase.canonical(Tablebase.name(child)))) {
+                        children.add(Tablebase.canonical(Tablebase.name(child)));
+                    }
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Gets the piece codes left after a capture and a promotion, with -1 for neither, or null if no such move can
+     * happen. The codes after a captured piece move down one slot.
+     */
+    private static int[] convert(int[] codes, int captured, int promoted, int promotion) {
+        if((captured < 0 && promoted < 0) || (captured >= 0 && codes[captured] % TablebaseGenerator.TYPE_COUNT == Piece.KING)
+                || (promoted >= 0 && codes[promoted] % TablebaseGenerator.TYPE_COUNT != Piece.PAWN)
+                || (captured >= 0 && promoted >= 0 && codes[captured] / TablebaseGenerator.TYPE_COUNT == codes[promoted] / TablebaseGenerator.TYPE_COUNT)
+                || (promoted < 0 && promotion != Piece.QUEEN)) {
+            return null;
+        }
+        int[] child = new int[codes.length - (captured >= 0 ? 1 : 0)];
+        int index = 0;
+        for(int i = 0; i < codes.length; i++) {
+            if(i != captured) {
+                child[index++] = i == promoted ? (codes[i] - Piece.PAWN + promotion) : codes[i];
+            }
+        }
+        return child;
+    }
+
+    private void parallel(int tasks, final Task task) throws IOException {
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for(int i = 0; i < tasks; i++) {
+            final int index = i;
+            futures.add(this.pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    task.run(index);
+                }
+            }));
+        }
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Generation was interrupted.", e);
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("A generator thread failed.", e.getCause());
+            }
+        }
+    }
+
+    private interface Task {
+        void run(int index);
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if(this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+
+    /**
+     * How the pieces of a position are found in the table of the material a capture or promotion leads to.
+     */
+    private static final class Conversion {
+
+        private final Tablebase table;
+        private final boolean flipped;
+        private final int[] slots;
+        private final boolean pawns;
+
+        Conversion(Tablebase table, boolean flipped, int[] slots) {
+            this.table = table;
+            this.flipped = flipped;
+            this.slots = slots;
+            this.pawns = table != null && Tablebase.hasPawns(table.getCodes());
+        }
+    }
+
+    /**
+     * The generation of one table.
+     */
+    private final class Job {
+
+        private final int[] codes;
+        private final int count;
+        private final boolean pawns;
+        private final int size;
+        private final int shards;
+        private final int shardSize;
+        private final Conversion[][][] conversions;
+        private final byte[][] state;
+        private final IntList[][][] pending;
+        private final IntList[][][] emitted;
+        private IntList[][] frontier;
+        private MappedByteBuffer[] values;
+        private volatile int lastPending;
+
+        Job(int[] codes, HashMap<String, Tablebase> tables) {
+            this.codes = codes;
+            this.count = codes.length;
+            this.pawns = Tablebase.hasPawns(codes);
+            this.size = (int) Tablebase.size(this.count, this.pawns);
+            this.shards = TablebaseGenerator.this.threads * TablebaseGenerator.SHARDS_PER_THREAD;
+            this.shardSize = (this.size + this.shards - 1) / this.shards;
+            this.conversions = new Conversion[this.count + 1][this.count + 1][Piece.QUEEN + 1];
+            for(int captured = -1; captured < this.count; captured++) {
+                for(int promoted = -1; promoted < this.count; promoted++) {
+                    for(int promotion : TablebaseGenerator.PROMOTIONS) {
+                        int[] child = TablebaseGenerator.convert(codes, captured, promoted, promotion);
+                        if(child != null) {
+                            this.conversions[captured + 1][promoted + 1][promotion] = this.conversion(child, captured, tables);
+                        }
+                    }
+                }
+            }
+            this.state = new byte[Piece.COLORS.size()][this.size];
+            this.pending = new IntList[this.shards][TablebaseGenerator.MAX_PLIES + 1][];
+            this.emitted = new IntList[this.shards][Piece.COLORS.size()][this.shards];
+            for(IntList[][] task : this.emitted) {
+                for(IntList[] side : task) {
+                    for(int shard = 0; shard < this.shards; shard++) {
+                        side[shard] = new IntList();
+                    }
+                }
+            }
+        }
+
+        private Conversion conversion(int[] child, int captured, HashMap<String, Tablebase> tables) {
+            String name = Tablebase.name(child);
+            Tablebase table = child.length > 2 ? tables.get(Tablebase.canonical(name)) : null;
+            if(table == null) {
+                return new Conversion(null, false, null); //Bare kings, always a draw
+            }
+            boolean flipped = !Tablebase.canonical(name).equals(name);
+            int[] slots = new int[child.length];
+            boolean[] used = new boolean[child.length];
+            int[] tableCodes = table.getCodes();
+            for(int k = 0; k < tableCodes.length; k++) {
+                int wanted = flipped ? (tableCodes[k] + TablebaseGenerator.TYPE_COUNT) % (2 * TablebaseGenerator.TYPE_COUNT) : tableCodes[k];
+                for(int i = 0; i < child.length; i++) {
+                    if(!used[i] && child[i] == wanted) {
+                        used[i] = true;
+                        slots[k] = i < captured || captured < 0 ? i : i + 1; //Back to the slot in this table
+                        break;
+                    }
+                }
+            }
+            return new Conversion(table, flipped, slots);
+        }
+
+        void run(Path path) throws IOException {
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+                header.putLong(0, Tablebase.MAGIC).putInt(8, this.count).putLong(24, this.size);
+                for(int i = 0; i < this.count; i++) {
+                    header.put(16 + i, (byte) this.codes[i]);
+                }
+                channel.write(header, 0);
+                channel.write(ByteBuffer.allocate(1), Tablebase.HEADER_SIZE + 2L * this.size - 1);
+                this.values = new MappedByteBuffer[Piece.COLORS.size()];
+                for(int side = 0; side < this.values.length; side++) {
+                    this.values[side] = channel.map(FileChannel.MapMode.READ_WRITE, Tablebase.HEADER_SIZE + (long) side * this.size, this.size);
+                }
+                this.solve();
+                for(MappedByteBuffer side : this.values) {
+                    side.force();
+                }
+            } catch(IOException | RuntimeException e) {
+                Files.deleteIfExists(path);
+                throw e;
+            }
+        }
+
+        private void solve() throws IOException {
+            this.frontier = this.newFrontier();
+            TablebaseGenerator.this.parallel(this.shards, new Task() {
+                @Override
+                public void run(int shard) {
+                    Job.this.initialize(shard);
+                }
+            });
+            for(int level = 1; level <= this.lastPending || this.hasFrontier(); level++) {
+                if(level > TablebaseGenerator.MAX_PLIES) {
+                    throw new IllegalStateException(Tablebase.name(this.codes) + " has mates too long to store.");
+                }
+                final int current = level;
+                TablebaseGenerator.this.parallel(this.shards, new Task() {
+                    @Override
+                    public void run(int shard) {
+                        Job.this.retract(shard);
+                    }
+                });
+                this.frontier = this.newFrontier();
+                TablebaseGenerator.this.parallel(this.shards, new Task() {
+                    @Override
+                    public void run(int shard) {
+                        Job.this.update(shard, current);
+                    }
+                });
+            }
+        }
+
+        private IntList[][] newFrontier() {
+            IntList[][] frontier = new IntList[this.shards][Piece.COLORS.size()];
+            for(IntList[] shard : frontier) {
+                for(int side = 0; side < shard.length; side++) {
+                    shard[side] = new IntList();
+                }
+            }
+            return frontier;
+        }
+
+        private boolean hasFrontier() {
+            for(IntList[] shard : this.frontier) {
+                for(IntList side : shard) {
+                    if(side.size > 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Finds the checkmates and stalemates of a shard, marks the indices which are not real positions, and
+         * schedules every position for the plies at which its captures and promotions decide it.
+         */
+        private void initialize(int shard) {
+            Scratch scratch = new Scratch(this.count);
+            int end = Math.min(this.size, (shard + 1) * this.shardSize);
+            int lastPending = 0;
+            for(int side = Piece.WHITE; side <= Piece.BLACK; side++) {
+                for(int index = shard * this.shardSize; index < end; index++) {
+                    Tablebase.decode(index, this.count, this.pawns, scratch.squares);
+                    if(!this.isValid(scratch.squares, side) || Tablebase.index(scratch.squares, this.count, this.pawns) != index) {
+                        this.state[side][index] = (byte) TablebaseGenerator.FINAL;
+                        continue;
+                    }
+                    scratch.events.size = 0;
+                    int value = this.analyse(scratch.squares, side, 0, scratch);
+                    if(scratch.legal == 0) {
+                        if(value == 0) {
+                            this.state[side][index] = (byte) TablebaseGenerator.FINAL; //Stalemate
+                        } else {
+                            this.values[side].put(index, (byte) value);
+                            this.frontier[shard][side].add(index);
+                        }
+                        continue;
+                    }
+                    for(int i = 0; i < scratch.events.size; i++) {
+                        int level = scratch.events.values[i];
+                        if(level > TablebaseGenerator.MAX_PLIES) {
+                            throw new IllegalStateException(Tablebase.name(this.codes) + " has mates too long to store.");
+                        }
+                        IntList[] lists = this.pending[shard][level];
+                        if(lists == null) {
+                            lists = new IntList[] {new IntList(), new IntList()};
+                            this.pending[shard][level] = lists;
+                        }
+                        lists[side].add(index);
+                        lastPending = Math.max(lastPending, level);
+                    }
+                }
+            }
+            synchronized(this) {
+                this.lastPending = Math.max(this.lastPending, lastPending);
+            }
+        }
+
+        /**
+         * Takes back every move leading to the positions of a shard decided at the last ply, and sends the earlier
+         * positions found to the shards which own them.
+         */
+        private void retract(int shard) {
+            Scratch scratch = new Scratch(this.count);
+            IntList[][] emitted = this.emitted[shard];
+            for(IntList[] side : emitted) {
+                for(IntList list : side) {
+                    list.size = 0;
+                }
+            }
+            for(int side = Piece.WHITE; side <= Piece.BLACK; side++) {
+                IntList list = this.frontier[shard][side];
+                for(int i = 0; i < list.size; i++) {
+                    Tablebase.decode(list.values[i], this.count, this.pawns, scratch.squares);
+                    this.unmove(scratch.squares, side, emitted[1 - side], scratch);
+                }
+            }
+        }
+
+        /**
+         * Checks again every position of a shard which may have been decided at a ply.
+         */
+        private void update(int shard, int level) {
+            Scratch scratch = new Scratch(this.count);
+            for(int side = Piece.WHITE; side <= Piece.BLACK; side++) {
+                for(int task = 0; task < this.shards; task++) {
+                    IntList list = this.emitted[task][side][shard];
+                    for(int i = 0; i < list.size; i++) {
+                        this.check(shard, side, list.values[i], level, scratch);
+                    }
+                }
+                IntList[] lists = this.pending[shard][level];
+                if(lists != null) {
+                    for(int i = 0; i < lists[side].size; i++) {
+                        this.check(shard, side, lists[side].values[i], level, scratch);
+                    }
+                }
+            }
+            this.pending[shard][level] = null;
+        }
+
+        private void check(int shard, int side, int index, int level, Scratch scratch) {
+            int state = this.state[side][index] & 0xFF;
+            if(state == TablebaseGenerator.FINAL || state == level || this.values[side].get(index) != 0) {
+                return;
+            }
+            this.state[side][index] = (byte) level;
+            Tablebase.decode(index, this.count, this.pawns, scratch.squares);
+            int value = this.analyse(scratch.squares, side, level, scratch);
+            if(value != 0) {
+                this.values[side].put(index, (byte) value);
+                this.frontier[shard][side].add(index);
+            }
+        }
+
+        /**
+         * Works out the value of a position from its moves, using only what was known before a ply.
+         * @return  the stored value if the position mates or is mated in at most level plies, or else 0
+         */
+        private int analyse(int[] squares, int side, int level, Scratch scratch) {
+            int minWin = Integer.MAX_VALUE;
+            int maxLoss = 0;
+            boolean open = false;
+            scratch.legal = 0;
+            long occupied = TablebaseGenerator.occupancy(squares, this.count);
+            long own = this.occupancy(squares, side);
+            for(int piece = 0; piece < this.count; piece++) {
+                int code = this.codes[piece];
+                if(code / TablebaseGenerator.TYPE_COUNT != side) {
+                    continue;
+                }
+                int from = squares[piece];
+                int type = code % TablebaseGenerator.TYPE_COUNT;
+                long targets;
+                if(type == Piece.PAWN) {
+                    int push = from + (side == Piece.WHITE ? 1 : -1);
+                    targets = Bitboards.pawnAttacks(side, from) & occupied & ~own;
+                    if((occupied & (1L << push)) == 0) {
+                        targets |= 1L << push;
+                        int rank = from & 7;
+                        int jump = push + (side == Piece.WHITE ? 1 : -1);
+                        if(rank == (side == Piece.WHITE ? 1 : 6) && (occupied & (1L << jump)) == 0) {
+                            targets |= 1L << jump;
+                        }
+                    }
+                } else {
+                    targets = Bitboards.attacks(type, from, occupied) & ~own;
+                }
+                for(; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    int captured = this.pieceAt(squares, to);
+                    boolean promotes = type == Piece.PAWN && ((to & 7) == 0 || (to & 7) == 7);
+                    for(int promotion : TablebaseGenerator.PROMOTIONS) {
+                        int option = this.option(squares, side, piece, to, captured, promotes ? promotion : -1, level, scratch);
+                        if(option == Integer.MIN_VALUE) {
+                            break; //Illegal
+                        }
+                        scratch.legal++;
+                        if(option > 0) {
+                            minWin = Math.min(minWin, option);
+                        } else if(option < 0) {
+                            maxLoss = Math.max(maxLoss, -option);
+                        } else {
+                            open = true;
+                        }
+                        if(!promotes) {
+                            break;
+                        }
+                    }
+                }
+            }
+            if(scratch.legal == 0) {
+                int king = squares[this.kingSlot(side)];
+                return this.isAttacked(squares, king, 1 - side, occupied) ? 1 : 0;
+            }
+            if(minWin <= level) {
+                return minWin + 1;
+            }
+            return !open && minWin == Integer.MAX_VALUE && maxLoss <= level ? maxLoss + 1 : 0;
+        }
+
+        /**
+         * Makes a move and looks up the result.
+         * @return  Integer.MIN_VALUE if the move is illegal, a win in n plies as n, a loss in n plies as -n, or 0 if
+         *          the result is a draw or not known yet
+         */
+        private int option(int[] squares, int side, int piece, int to, int captured, int promotion, int level, Scratch scratch) {
+            int[] moved = scratch.moved;
+            System.arraycopy(squares, 0, moved, 0, this.count);
+            moved[piece] = to;
+            if(captured >= 0) {
+                moved[captured] = -1;
+            }
+            long occupied = TablebaseGenerator.occupancy(moved, this.count);
+            if(this.isAttacked(moved, moved[this.kingSlot(side)], 1 - side, occupied)) {
+                return Integer.MIN_VALUE;
+            }
+            if(captured >= 0 || promotion >= 0) {
+                int value = this.convert(moved, 1 - side, captured, promotion >= 0 ? piece : -1, promotion >= 0 ? promotion : Piece.QUEEN, scratch);
+                int option = TablebaseGenerator.toOption(value);
+                if(level == 0 && option != 0) {
+                    scratch.events.add(Math.abs(option)); //Decides the position no earlier than this ply
+                }
+                return option;
+            }
+            int value = this.values[1 - side].get(Tablebase.index(moved, this.count, this.pawns)) & 0xFF;
+            if(value - 1 >= level) {
+                value = 0; //Not decided before this ply
+            }
+            if(this.codes[piece] % TablebaseGenerator.TYPE_COUNT == Piece.PAWN && Math.abs(to - squares[piece]) == 2) {
+                value = this.withEnPassant(moved, 1 - side, piece, (to + squares[piece]) / 2, value, level, scratch);
+            }
+            return TablebaseGenerator.toOption(value);
+        }
+
+        /**
+         * Gets the value of a position just after a double pawn push, in which the opponent may also capture en
+         * passant, given the value of the position without that right.
+         */
+        private int withEnPassant(int[] moved, int side, int pawn, int passed, int value, int level, Scratch scratch) {
+            int minWin = Integer.MAX_VALUE;
+            int maxLoss = 0;
+            boolean open = false;
+            boolean captures = false;
+            for(int piece = 0; piece < this.count; piece++) {
+                int code = this.codes[piece];
+                if(code != side * TablebaseGenerator.TYPE_COUNT + Piece.PAWN || (Bitboards.pawnAttacks(side, moved[piece]) & (1L << passed)) == 0) {
+                    continue;
+                }
+                int[] captured = scratch.captured;
+                System.arraycopy(moved, 0, captured, 0, this.count);
+                captured[piece] = passed;
+                captured[pawn] = -1;
+                if(this.isAttacked(captured, captured[this.kingSlot(side)], 1 - side, TablebaseGenerator.occupancy(captured, this.count))) {
+                    continue;
+                }
+                captures = true;
+                int option = TablebaseGenerator.toOption(this.convert(captured, 1 - side, pawn, -1, Piece.QUEEN, scratch));
+                if(level == 0 && option != 0) {
+                    scratch.events.add(Math.abs(option) + 1);
+                }
+                if(option > 0) {
+                    minWin = Math.min(minWin, option);
+                } else if(option < 0) {
+                    maxLoss = Math.max(maxLoss, -option);
+                } else {
+                    open = true;
+                }
+            }
+            if(!captures) {
+                return value;
+            }
+            int state = this.state[side][Tablebase.index(moved, this.count, this.pawns)] & 0xFF;
+            boolean stalemate = value == 0 && state == TablebaseGenerator.FINAL;
+            if(value != 1 && !stalemate) { //Unless the pawn push left no other moves, they count too
+                int option = value == Tablebase.DRAW ? 0 : Tablebase.isLoss(value) ? -(value - 1) : value - 1;
+                if(option > 0) {
+                    minWin = Math.min(minWin, option);
+                } else if(option < 0) {
+                    maxLoss = Math.max(maxLoss, -option);
+                } else {
+                    open = true;
+                }
+            }
+            int combined = minWin != Integer.MAX_VALUE ? minWin + 1 : open ? 0 : maxLoss + 1;
+            return combined - 1 >= level ? 0 : combined;
+        }
+
+        /**
+         * Looks up a position after a capture or promotion in the table of its material.
+         */
+        private int convert(int[] moved, int side, int captured, int promoted, int promotion, Scratch scratch) {
+            Conversion conversion = this.conversions[captured + 1][promoted + 1][promotion];
+            if(conversion.table == null) {
+                return Tablebase.DRAW;
+            }
+            int[] squares = scratch.child;
+            int flip = conversion.flipped ? 7 : 0;
+            for(int k = 0; k < conversion.slots.length; k++) {
+                squares[k] = moved[conversion.slots[k]] ^ flip;
+            }
+            return conversion.table.get(side ^ (conversion.flipped ? 1 : 0), Tablebase.index(squares, conversion.slots.length, conversion.pawns));
+        }
+
+        /**
+         * Finds every position, with the other side to move, from which a move which is neither a capture nor a
+         * promotion leads to a position.
+         */
+        private void unmove(int[] squares, int side, IntList[] emitted, Scratch scratch) {
+            int mover = 1 - side;
+            long occupied = TablebaseGenerator.occupancy(squares, this.count);
+            int[] moved = scratch.moved;
+            for(int piece = 0; piece < this.count; piece++) {
+                int code = this.codes[piece];
+                if(code / TablebaseGenerator.TYPE_COUNT != mover) {
+                    continue;
+                }
+                int to = squares[piece];
+                int type = code % TablebaseGenerator.TYPE_COUNT;
+                long froms;
+                if(type == Piece.PAWN) {
+                    int back = mover == Piece.WHITE ? -1 : 1;
+                    int rank = to & 7;
+                    froms = 0;
+                    if(mover == Piece.WHITE ? rank >= 2 : rank <= 5) {
+                        froms = (1L << (to + back)) & ~occupied;
+                        if(froms != 0 && rank == (mover == Piece.WHITE ? 3 : 4)) {
+                            froms |= (1L << (to + 2 * back)) & ~occupied;
+                        }
+                    }
+                } else {
+                    froms = Bitboards.attacks(type, to, occupied) & ~occupied;
+                }
+                for(; froms != 0; froms &= froms - 1) {
+                    int from = Long.numberOfTrailingZeros(froms);
+                    System.arraycopy(squares, 0, moved, 0, this.count);
+                    moved[piece] = from;
+                    long before = occupied ^ (1L << to) ^ (1L << from);
+                    if(this.isAttacked(moved, moved[this.kingSlot(side)], mover, before)) {
+                        continue; //The side which did not move cannot have been in check
+                    }
+                    int index = Tablebase.index(moved, this.count, this.pawns);
+                    emitted[index / this.shardSize].add(index);
+                }
+            }
+        }
+
+        private boolean isValid(int[] squares, int side) {
+            long occupied = 0;
+            for(int i = 0; i < this.count; i++) {
+                long bit = 1L << squares[i];
+                if((occupied & bit) != 0) {
+                    return false;
+                }
+                occupied |= bit;
+                int rank = squares[i] & 7;
+                if(this.codes[i] % TablebaseGenerator.TYPE_COUNT == Piece.PAWN && (rank == 0 || rank == 7)) {
+                    return false;
+                }
+            }
+            return !this.isAttacked(squares, squares[this.kingSlot(1 - side)], side, occupied);
+        }
+
+        private boolean isAttacked(int[] squares, int square, int color, long occupied) {
+            long bit = 1L << square;
+            for(int i = 0; i < this.count; i++) {
+                int code = this.codes[i];
+                if(squares[i] < 0 || code / TablebaseGenerator.TYPE_COUNT != color) {
+                    continue;
+                }
+                int type = code % TablebaseGenerator.TYPE_COUNT;
+                long attacks = type == Piece.PAWN ? Bitboards.pawnAttacks(color, squares[i]) : Bitboards.attacks(type, squares[i], occupied);
+                if((attacks & bit) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int pieceAt(int[] squares, int square) {
+            for(int i = 0; i < this.count; i++) {
+                if(squares[i] == square) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long occupancy(int[] squares, int color) {
+            long occupied = 0;
+            for(int i = 0; i < this.count; i++) {
+                if(squares[i] >= 0 && this.codes[i] / TablebaseGenerator.TYPE_COUNT == color) {
+                    occupied |= 1L << squares[i];
+                }
+            }
+            return occupied;
+        }
+
+        private int kingSlot(int color) {
+            for(int i = 0; i < this.count; i++) {
+                if(this.codes[i] == color * TablebaseGenerator.TYPE_COUNT + Piece.KING) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("No king of color " + color + ".");
+        }
+    }
+
+    /**
+     * The working arrays of one thread.
+     */
+    private static final class Scratch {
+
+        private final int[] squares;
+        private final int[] moved;
+        private final int[] captured;
+        private final int[] child;
+        private final IntList events;
+        private int legal;
+
+        Scratch(int count) {
+            this.squares = new int[count];
+            this.moved = new int[count];
+            this.captured = new int[count];
+            this.child = new int[count];
+            this.events = new IntList();
+        }
+    }
+
+    private static long occupancy(int[] squares, int count) {
+        long occupied = 0;
+        for(int i = 0; i < count; i++) {
+            if(squares[i] >= 0) {
+                occupied |= 1L << squares[i];
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * Turns the stored value of the position after a move into the result of the move for the side making it.
+     */
+    private static int toOption(int value) {
+        if(value == Tablebase.DRAW) {
+            return 0;
+        }
+        return Tablebase.isLoss(value) ? value : -value;
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * @author woodjamesdee
+ *
+ * A set of endgame tables which a Search probes at its leaves. Tables are found by a material key computed from
+ * the bitboards of the Board, in an open addressed table holding each Tablebase under both color orientations, so
+ * probing takes constant time and creates no objects.
+ */
+public final class Tablebases {
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final long[] keys;
+    private final Tablebase[] tables;
+    private final boolean[] flipped;
+    private final int maxPieces;
+
+    /**
+     * Creates a set of tables.
+     * @param tables    the tables, which must all have different material
+     */
+    public Tablebases(Collection<Tablebase> tables) {
+        int capacity = Integer.highestOneBit(Math.max(1, tables.size()) * 4) * 2;
+        this.keys = new long[capacity];
+        this.tables = new Tablebase[capacity];
+        this.flipped = new boolean[capacity];
+        int maxPieces = 0;
+        for(Tablebase table : tables) {
+            this.add(table, false);
+            this.add(table, true);
+            maxPieces = Math.max(maxPieces, table.getPieceCount());
+        }
+        this.maxPieces = maxPieces;
+    }
+
+    /**
+     * Opens every table file, ending in ".tb", in a directory.
+     * @param directory the directory holding the tables
+     * @return  the set of tables
+     * @throws IOException  if the directory or a table cannot be read
+     */
+    public static Tablebases open(Path directory) throws IOException {
+        ArrayList<Tablebase> tables = new ArrayList<Tablebase>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")) {
+            for(Path file : files) {
+                tables.add(Tablebase.open(file));
+            }
+        }
+        return new Tablebases(tables);
+    }
+
+    private void add(Tablebase table, boolean flipped) {
+        long key = Tablebase.key(table.getCodes(), flipped);
+        int slot = this.find(key);
+        if(this.tables[slot] != null && this.tables[slot] != table) {
+            throw new IllegalArgumentException("There is more than one table for " + table.getMaterial() + ".");
+        }
+        if(this.tables[slot] == null) {
+            this.keys[slot] = key;
+            this.tables[slot] = table;
+            this.flipped[slot] = flipped;
+        }
+    }
+
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while(this.tables[slot] != null && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the largest number of pieces of any table in the set.
+     * @return  the number of pieces, including the kings
+     */
+    public int getMaxPieces() {
+        return this.maxPieces;
+    }
+
+    /**
+     * Looks up a position in the table of its material.
+     * @param board the position
+     * @return  the value stored by the Tablebase, or UNKNOWN if there is no table for the material, or the position
+     *          has castling rights or an en passant square
+     */
+    public int probe(Board board) {
+        if(Long.bitCount(board.getOccupancy()) > this.maxPieces || board.getCastlingRights() != 0 || board.getEnPassantSquare() >= 0) {
+            return Tablebases.UNKNOWN;
+        }
+        int slot = this.find(Tablebase.key(board));
+        if(this.tables[slot] == null) {
+            return Tablebases.UNKNOWN;
+        }
+        return this.tables[slot].probe(board, this.flipped[slot]);
+    }
+
+    /**
+     * Looks up a position and turns its value into a search score.
+     * @param board the position
+     * @param ply   the distance of the position from the root of the search
+     * @return  the score from the point of view of the side to move, or UNKNOWN
+     */
+    public int score(Board board, int ply) {
+        int value = this.probe(board);
+        if(value == Tablebases.UNKNOWN || value == Tablebase.DRAW) {
+            return value;
+        }
+        int distance = ply + Tablebase.getPlies(value);
+        int score = distance < Search.MAX_PLY ? Search.MATE - distance : Search.MATE - Search.MAX_PLY - 1;
+        return Tablebase.isWin(value) ? score : -score;
+    }
+}
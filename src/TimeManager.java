@@ -0,0 +1,79 @@
+/**
+ * @author woodjamesdee
+ *
+ * Budgets the time of each move from the clock. The remaining time, less a safety margin for the delay between the
+ * engine and the clock, is shared out over the moves expected before the next time control or the end of the game,
+ * and most of the increment is spent as it comes. This gives an optimum time, after which the search does not start
+ * another iteration unless its best move is still changing, and a maximum time, at which it stops outright. The
+ * maximum leaves room for the moves still to come, so the clock cannot run out however long a search is extended.
+ */
+public final class TimeManager {
+
+    public static final long DEFAULT_OVERHEAD = 50;
+
+    private static final int MAX_MOVES_TO_GO = 50;
+    private static final int MIN_MOVES_TO_GO = 20;
+    private static final int MAXIMUM_FACTOR = 5;
+
+    private final long overhead;
+
+    /**
+     * Creates a new TimeManager with the default safety margin.
+     */
+    public TimeManager() {
+        this(TimeManager.DEFAULT_OVERHEAD);
+    }
+
+    /**
+     * Creates a new TimeManager.
+     * @param overhead  the time lost on each move between the engine and the clock, in milliseconds
+     */
+    public TimeManager(long overhead) {
+        if(overhead < 0) {
+            throw new IllegalArgumentException(overhead + " is not a valid overhead.");
+        }
+        this.overhead = overhead;
+    }
+
+    /**
+     * Gets the time lost on each move between the engine and the clock.
+     * @return  the overhead in milliseconds
+     */
+    public long getOverhead() {
+        return this.overhead;
+    }
+
+    /**
+     * Sets the optimum and move time of a search from the clock of the side to move.
+     * @param limits        the limits to set
+     * @param board         the position to be searched
+     * @param time          the time left on the clock, in milliseconds
+     * @param increment     the time added to the clock after each move, in milliseconds
+     * @param movesToGo     the number of moves until the next time control, or 0 if the rest of the game must be
+     *                      played in the time left
+     * @param ponder        true if the engine thinks on the opponent's time, which saves time on average
+     */
+    public void allocate(SearchLimits limits, Board board, long time, long increment, int movesToGo, boolean ponder) {
+        if(time < 0 || increment < 0 || movesToGo < 0) {
+            throw new IllegalArgumentException(time + "+" + increment + " with " + movesToGo + " moves to go is not a valid clock.");
+        }
+        long available = Math.max(1, time - this.overhead);
+        int moves = movesToGo > 0 ? Math.min(movesToGo, TimeManager.MAX_MOVES_TO_GO) : TimeManager.getExpectedMoves(board);
+        long optimum = available / moves + increment * 3 / 4;
+        if(ponder) {
+            optimum += optimum / 4;
+        }
+        long maximum = moves == 1 ? available : Math.min(available * 4 / 5, optimum * TimeManager.MAXIMUM_FACTOR);
+        maximum = Math.max(1, Math.min(maximum, available));
+        limits.setOptimumTime(Math.max(1, Math.min(optimum, maximum)));
+        limits.setMoveTime(maximum);
+    }
+
+    /**
+     * Guesses how many more moves the side to move will play, which falls as the game goes on but never below
+     * MIN_MOVES_TO_GO, so there is always time left for an endgame.
+     */
+    static int getExpectedMoves(Board board) {
+        return Math.max(TimeManager.MIN_MOVES_TO_GO, TimeManager.MAX_MOVES_TO_GO - board.getFullmoveNumber() / 2);
+    }
+}
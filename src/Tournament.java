@@ -0,0 +1,470 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * @author woodjamesdee
+ *
+ * Plays a match between two players on every core at once, to find out which is stronger. Each opening is played
+ * twice, with the players swapping colors, and games are handed out in order to worker threads. Every worker makes
+ * its own pair of players once and keeps them for all of its games, only telling them when a new game starts, so
+ * the searches keep their tables and buffers from one game to the next.
+ *
+ * Games end by the rules, as decided by Game, when a player runs out of time, or as a draw after a maximum number
+ * of plies. With an Sprt set, the match stops as soon as the test accepts one of its hypotheses, once the games in
+ * progress are finished.
+ */
+public class Tournament {
+
+    /**
+     * One side of a match. A worker thread keeps its players for every game it plays, and a player is only ever
+     * used by that thread.
+     */
+    public interface Player {
+
+        /**
+         * Called before each game, so the player can forget what it learned in the last one.
+         */
+        void newGame();
+
+        /**
+         * Chooses a move.
+         * @param board     the position, which must not be modified
+         * @param time      the time left on the player's clock in milliseconds, or -1 if the game is not timed
+         * @param increment the time added to the clock after each move in milliseconds
+         * @return  a legal move
+         */
+        int move(Board board, long time, long increment);
+
+        /**
+         * Called once the player's worker has finished all of its games.
+         */
+        void close();
+    }
+
+    /**
+     * A Player which searches with one thread, either a fixed number of nodes per move or with its time budgeted
+     * from the clock by a TimeManager.
+     */
+    public static class SearchPlayer implements Player {
+
+        private static final long OVERHEAD = 5; //There is no GUI or pipe between the player and the clock
+
+        private final Search search;
+        private final long nodes;
+        private final TimeManager timeManager;
+
+        /**
+         * Creates a new SearchPlayer.
+         * @param megabytes the size of its transposition table
+         * @param nodes     the number of nodes to search per move, or 0 to play on the clock
+         */
+        public SearchPlayer(int megabytes, long nodes) {
+            if(nodes < 0) {
+                throw new IllegalArgumentException(nodes + " is not a valid node limit.");
+            }
+            this.search = new Search(new TranspositionTable(megabytes), 1);
+            this.nodes = nodes;
+            this.timeManager = new TimeManager(SearchPlayer.OVERHEAD);
+        }
+
+        @Override
+        public void newGame() {
+            this.search.getTable().clear();
+        }
+
+        @Override
+        public int move(Board board, long time, long increment) {
+            SearchLimits limits = new SearchLimits();
+            if(this.nodes > 0) {
+                limits.setNodes(this.nodes);
+            } else if(time >= 0) {
+                this.timeManager.allocate(limits, board, time, increment, 0, false);
+            } else {
+                throw new IllegalStateException("A player without a node limit needs a clock.");
+            }
+            return this.search.search(board, limits).getBestMove();
+        }
+
+        @Override
+        public void close() {
+            this.search.shutdown();
+        }
+    }
+
+    private static final int DEFAULT_MAX_PLIES = 400;
+
+    private final Supplier<? extends Player> first;
+    private final Supplier<? extends Player> second;
+    private final List<String> openings;
+    private int threads;
+    private int maxGames;
+    private int maxPlies;
+    private long time;
+    private long increment;
+    private Sprt sprt;
+    private volatile boolean finished;
+    private long wins;
+    private long draws;
+    private long losses;
+
+    /**
+     * Creates a new Tournament using every core, which plays each opening once with each color and has no clock.
+     * @param first     makes the player whose results are reported, once for each worker thread
+     * @param second    makes its opponent, once for each worker thread
+     * @param openings  the positions, as FEN or EPD, to start games from
+     */
+    public Tournament(Supplier<? extends Player> first, Supplier<? extends Player> second, List<String> openings) {
+        if(openings.isEmpty()) {
+            throw new IllegalArgumentException("A tournament needs at least one opening.");
+        }
+        for(String opening : openings) {
+            Fen.parse(opening); //Fails now rather than in a worker
+        }
+        this.first = first;
+        this.second = second;
+        this.openings = new ArrayList<String>(openings);
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.maxGames = 2 * openings.size();
+        this.maxPlies = Tournament.DEFAULT_MAX_PLIES;
+        this.time = -1;
+    }
+
+    /**
+     * Reads openings from a file of one FEN or EPD record per line. Blank lines and lines starting with '#' are
+     * skipped.
+     * @param path  the file to read
+     * @return  the openings
+     * @throws IOException  if the file cannot be read
+     */
+    public static List<String> readOpenings(Path path) throws IOException {
+        ArrayList<String> openings = new ArrayList<String>();
+        for(String line : Files.readAllLines(path, StandardCharsets.US_ASCII)) {
+            String trimmed = line.trim();
+            if(!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                openings.add(trimmed);
+            }
+        }
+        return openings;
+    }
+
+    /**
+     * Plays a node-limited match between two SearchPlayers and prints its result.
+     * @param args  the openings file, the nodes per move of the first and second players, the maximum number of
+     *              games and optionally the Elo bounds of the SPRT, which default to 0 and 10
+     * @throws IOException  if the openings cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4 && args.length != 6) { //The Elo bounds only come as a pair
+            System.out.println("Usage: Tournament <openings> <first nodes> <second nodes> <games> [elo0 elo1]");
+            return;
+        }
+        final long firstNodes = Long.parseLong(args[1]);
+        final long secondNodes = Long.parseLong(args[2]);
+        Tournament tournament = new Tournament(() -> new SearchPlayer(16, firstNodes), () -> new SearchPlayer(16, secondNodes),
+                Tournament.readOpenings(Paths.get(args[0])));
+        tournament.setMaxGames(Integer.parseInt(args[3]));
+        tournament.setSprt(new Sprt(args.length == 6 ? Double.parseDouble(args[4]) : 0,
+                args.length == 6 ? Double.parseDouble(args[5]) : 10, 0.05, 0.05));
+        System.out.println(tournament.run());
+    }
+
+    /**
+     * Sets the number of games played at once.
+     * @param threads   the number of worker threads
+     */
+    public void setThreads(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid number of threads.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of games after which the match ends if the SPRT has not ended it earlier. The openings are
+     * used again, in order, when there are more games than openings.
+     * @param maxGames  the number of games
+     */
+    public void setMaxGames(int maxGames) {
+        if(maxGames < 1) {
+            throw new IllegalArgumentException(maxGames + " is not a valid number of games.");
+        }
+        this.maxGames = maxGames;
+    }
+
+    /**
+     * Sets the number of plies after which a game is drawn.
+     * @param maxPlies  the number of plies
+     */
+    public void setMaxPlies(int maxPlies) {
+        if(maxPlies < 1) {
+            throw new IllegalArgumentException(maxPlies + " is not a valid number of plies.");
+        }
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Sets the clock of both players.
+     * @param time      the time of each player for the whole game in milliseconds, or -1 for no clock
+     * @param increment the time added after each move in milliseconds
+     */
+    public void setTimeControl(long time, long increment) {
+        if(time < -1 || time == 0 || increment < 0) {
+            throw new IllegalArgumentException(time + "+" + increment + " is not a valid time control.");
+        }
+        this.time = time;
+        this.increment = increment;
+    }
+
+    /**
+     * Sets the test which ends the match early.
+     * @param sprt  the test, or null to play every game
+     */
+    public void setSprt(Sprt sprt) {
+        this.sprt = sprt;
+    }
+
+    /**
+     * Plays the match.
+     * @return  the results, from the point of view of the first player
+     */
+    public Result run() {
+        this.finished = false;
+        this.wins = 0;
+        this.draws = 0;
+        this.losses = 0;
+        long start = System.nanoTime();
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tournament-" + (++this.count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+            for(int i = 0; i < this.threads; i++) {
+                futures.add(workers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        Tournament.this.work(next);
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.finished = true;
+                } catch(ExecutionException e) {
+                    this.finished = true;
+                    throw new IllegalStateException("A tournament thread failed.", e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        synchronized(this) {
+            return new Result(this.wins, this.draws, this.losses, this.sprt, System.nanoTime() - start);
+        }
+    }
+
+    private void work(AtomicInteger next) {
+        Player first = this.first.get();
+        Player second = this.second.get();
+        try {
+            Board board = new Board();
+            Board scratch = new Board();
+            int game;
+            while(!this.finished && (game = next.getAndIncrement()) < this.maxGames) {
+                Fen.parse(this.openings.get((game / 2) % this.openings.size()), board);
+                boolean firstIsWhite = (game & 1) == 0;
+                Player white = firstIsWhite ? first : second;
+                Player black = firstIsWhite ? second : first;
+                int winner = this.play(white, black, board, scratch);
+                this.record(winner < 0 ? 0 : (winner == Piece.WHITE) == firstIsWhite ? 1 : -1);
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Plays one game from the position of a Board, which is changed.
+     * @return  the color of the winner, or -1 for a draw
+     */
+    private int play(Player white, Player black, Board board, Board scratch) {
+        white.newGame();
+        black.newGame();
+        Game game = new Game(board);
+        long[] clocks = {this.time, this.time};
+        for(int ply = 0; game.getStatus() == Game.ONGOING && ply < this.maxPlies; ply++) {
+            int side = board.getSideToMove();
+            Player player = side == Piece.WHITE ? white : black;
+            long before = System.nanoTime();
+            int move = player.move(board, clocks[side], this.increment);
+            if(this.time > 0) {
+                clocks[side] -= (System.nanoTime() - before) / 1000000;
+                if(clocks[side] < 0) {
+                    return 1 - side;
+                }
+                clocks[side] += this.increment;
+            }
+            if(move == Move.NONE || game.play(scratch, Move.toString(move)) == Game.ILLEGAL) {
+                throw new IllegalStateException(Move.toString(move) + " is not a legal move in " + Fen.toString(board) + ".");
+            }
+            board.makeMove(move);
+        }
+        return game.getStatus() == Game.CHECKMATE ? 1 - board.getSideToMove() : -1;
+    }
+
+    private synchronized void record(int outcome) {
+        if(outcome > 0) {
+            this.wins++;
+        } else if(outcome < 0) {
+            this.losses++;
+        } else {
+            this.draws++;
+        }
+        if(this.sprt != null && this.sprt.decide(this.wins, this.draws, this.losses) != Sprt.CONTINUE) {
+            this.finished = true;
+        }
+    }
+
+    /**
+     * The outcome of a match, from the point of view of the first player.
+     */
+    public static final class Result {
+
+        private final long wins;
+        private final long draws;
+        private final long losses;
+        private final Sprt sprt;
+        private final long nanos;
+
+        Result(long wins, long draws, long losses, Sprt sprt, long nanos) {
+            this.wins = wins;
+            this.draws = draws;
+            this.losses = losses;
+            this.sprt = sprt;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the number of games won.
+         * @return  the win count
+         */
+        public long getWins() {
+            return this.wins;
+        }
+
+        /**
+         * Gets the number of games drawn.
+         * @return  the draw count
+         */
+        public long getDraws() {
+            return this.draws;
+        }
+
+        /**
+         * Gets the number of games lost.
+         * @return  the loss count
+         */
+        public long getLosses() {
+            return this.losses;
+        }
+
+        /**
+         * Gets the number of games played.
+         * @return  the game count
+         */
+        public long getGames() {
+            return this.wins + this.draws + this.losses;
+        }
+
+        /**
+         * Gets the share of the points won.
+         * @return  the score, from 0 to 1
+         */
+        public double getScore() {
+            return this.getGames() == 0 ? 0.5 : (this.wins + this.draws / 2.0) / this.getGames();
+        }
+
+        /**
+         * Estimates the Elo difference between the players from the score.
+         * @return  the Elo difference, infinite if every game was won or lost
+         */
+        public double getElo() {
+            return Sprt.getElo(this.getScore());
+        }
+
+        /**
+         * Estimates the margin of error of the Elo difference, as half the width of its 95% confidence interval.
+         * @return  the margin in Elo, infinite if it cannot be estimated
+         */
+        public double getEloError() {
+            long games = this.getGames();
+            double score = this.getScore();
+            if(games < 2 || score == 0 || score == 1) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double variance = (this.wins * Math.pow(1 - score, 2) + this.draws * Math.pow(0.5 - score, 2)
+                    + this.losses * Math.pow(score, 2)) / games;
+            double error = 1.96 * Math.sqrt(variance / games);
+            return (Sprt.getElo(Math.min(1, score + error)) - Sprt.getElo(Math.max(0, score - error))) / 2;
+        }
+
+        /**
+         * Gets the log likelihood ratio of the SPRT.
+         * @return  the ratio, or 0 if there was no test
+         */
+        public double getLlr() {
+            return this.sprt == null ? 0 : this.sprt.getLlr(this.wins, this.draws, this.losses);
+        }
+
+        /**
+         * Gets the decision of the SPRT.
+         * @return  Sprt.ACCEPT_H0, Sprt.ACCEPT_H1, or Sprt.CONTINUE if there was no test or no decision
+         */
+        public int getDecision() {
+            return this.sprt == null ? Sprt.CONTINUE : this.sprt.decide(this.wins, this.draws, this.losses);
+        }
+
+        /**
+         * Gets the speed of the match.
+         * @return  the number of games finished per second
+         */
+        public double getGamesPerSecond() {
+            return this.nanos == 0 ? 0 : this.getGames() * 1e9 / this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format("games %d +%d =%d -%d elo %.1f +/- %.1f games/s %.2f", this.getGames(), this.wins,
+                    this.draws, this.losses, this.getElo(), this.getEloError(), this.getGamesPerSecond());
+            if(this.sprt != null) {
+                int decision = this.getDecision();
+                text += String.format(" llr %.2f (%s) ", this.getLlr(), this.sprt)
+                        + (decision == Sprt.ACCEPT_H1 ? "H1 accepted" : decision == Sprt.ACCEPT_H0 ? "H0 accepted" : "undecided");
+            }
+            return text;
+        }
+    }
+}
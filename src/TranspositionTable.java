@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author woodjamesdee
+ *
+ * A fixed-size hash table of search results keyed by Zobrist hash, stored in a flat long[] so that it can be shared
+ * by every search thread without locks. Each entry is two longs: the packed data, and the key XORed with the data.
+ * An entry torn by two threads writing at once no longer verifies against its key and simply reads as a miss.
+ *
+ * Entries are grouped four to a bucket, 64 bytes, which is normally one cache line, although Java does not promise
+ * to align the array to one. A new result replaces the entry for the same position, or otherwise the shallowest
+ * entry of the bucket, treating entries from earlier searches as shallower.
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int ENTRY_LONGS = 2;
+    private static final int FILL_SAMPLE = 4000;
+
+    private static final long VALID = 1L << 63;
+    private static final int SCORE_SHIFT = 22;
+    private static final int DEPTH_SHIFT = 38;
+    private static final int BOUND_SHIFT = 46;
+    private static final int GENERATION_SHIFT = 48;
+
+    private final long[] table;
+    private final long bucketMask;
+    private int generation;
+    private final LongAdder probes;
+    private final LongAdder hits;
+    private final LongAdder stores;
+    private final LongAdder collisions;
+
+    /**
+     * Creates a table using at most the given amount of memory. The number of buckets is rounded down to a power
+     * of two.
+     * @param megabytes the size of the table in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        if(megabytes < 1) {
+            throw new IllegalArgumentException(megabytes + " is not a valid table size.");
+        }
+        long buckets = Long.highestOneBit(((long) megabytes << 20) / (8 * TranspositionTable.BUCKET_ENTRIES * TranspositionTable.ENTRY_LONGS));
+        long longs = buckets * TranspositionTable.BUCKET_ENTRIES * TranspositionTable.ENTRY_LONGS;
+        if(longs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(megabytes + " megabytes is larger than a single table can hold.");
+        }
+        this.table = new long[(int) longs];
+        this.bucketMask = buckets - 1;
+        this.probes = new LongAdder();
+        this.hits = new LongAdder();
+        this.stores = new LongAdder();
+        this.collisions = new LongAdder();
+    }
+
+    /**
+     * Looks up the stored result for a position.
+     * @param key   the Zobrist hash of the position
+     * @return  the packed entry data, to be read with the static getters, or 0 if the position is not stored
+     */
+    public long probe(long key) {
+        this.probes.increment();
+        int base = this.bucket(key);
+        for(int i = 0; i < TranspositionTable.BUCKET_ENTRIES; i++) {
+            int index = base + i * TranspositionTable.ENTRY_LONGS;
+            long data = this.table[index];
+            if(data != 0 && (this.table[index + 1] ^ data) == key) {
+                this.hits.increment();
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the result of searching a position.
+     * @param key   the Zobrist hash of the position
+     * @param move  the best move found, or Move.NONE
+     * @param score the score, which must fit in 16 bits
+     * @param depth the depth searched, from 0 to 255
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        this.stores.increment();
+        int base = this.bucket(key);
+        int replace = base;
+        int replaceWorth = Integer.MAX_VALUE;
+        boolean evicts = true;
+        for(int i = 0; i < TranspositionTable.BUCKET_ENTRIES; i++) {
+            int index = base + i * TranspositionTable.ENTRY_LONGS;
+            long data = this.table[index];
+            if(data == 0 || (this.table[index + 1] ^ data) == key) {
+                if(data != 0 && move == Move.NONE) {
+                    move = TranspositionTable.getMove(data); //Keep the best move already known for this position
+                }
+                replace = index;
+                evicts = false;
+                break;
+            }
+            int age = (this.generation - TranspositionTable.getGeneration(data)) & 0xFF;
+            int worth = TranspositionTable.getDepth(data) - 8 * age;
+            if(worth < replaceWorth) {
+                replaceWorth = worth;
+                replace = index;
+            }
+        }
+        if(evicts) {
+            this.collisions.increment();
+        }
+        long data = TranspositionTable.VALID | (move & 0x3FFFFFL) | ((long) (score & 0xFFFF) << TranspositionTable.SCORE_SHIFT)
+                | ((long) (depth & 0xFF) << TranspositionTable.DEPTH_SHIFT) | ((long) bound << TranspositionTable.BOUND_SHIFT)
+                | ((long) this.generation << TranspositionTable.GENERATION_SHIFT);
+        this.table[replace] = data;
+        this.table[replace + 1] = key ^ data;
+    }
+
+    /**
+     * Marks the start of a new search, so that entries left over from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        this.generation = (this.generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table and resets its statistics.
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.generation = 0;
+        this.probes.reset();
+        this.hits.reset();
+        this.stores.reset();
+        this.collisions.reset();
+    }
+
+    /**
+     * Gets the number of entries the table can hold.
+     * @return  the capacity
+     */
+    public long getCapacity() {
+        return this.table.length / TranspositionTable.ENTRY_LONGS;
+    }
+
+    /**
+     * Gets the number of lookups made since the table was created or cleared.
+     * @return  the number of probes
+     */
+    public long getProbes() {
+        return this.probes.sum();
+    }
+
+    /**
+     * Gets the number of lookups which found their position.
+     * @return  the number of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of results stored.
+     * @return  the number of stores
+     */
+    public long getStores() {
+        return this.stores.sum();
+    }
+
+    /**
+     * Gets the number of results stored by evicting the entry of another position, because its bucket was full.
+     * @return  the number of collisions
+     */
+    public long getCollisions() {
+        return this.collisions.sum();
+    }
+
+    /**
+     * Gets the fraction of lookups which found their position.
+     * @return  the hit rate, from 0 to 1
+     */
+    public double getHitRate() {
+        long probes = this.probes.sum();
+        return probes == 0 ? 0 : (double) this.hits.sum() / probes;
+    }
+
+    /**
+     * Estimates the fraction of entries in use from a sample at the start of the table.
+     * @return  the fill rate, from 0 to 1
+     */
+    public double getFillRate() {
+        int sample = (int) Math.min(TranspositionTable.FILL_SAMPLE, this.getCapacity());
+        int used = 0;
+        for(int i = 0; i < sample; i++) {
+            if(this.table[i * TranspositionTable.ENTRY_LONGS] != 0) {
+                used++;
+            }
+        }
+        return (double) used / sample;
+    }
+
+    /**
+     * Gets the best move of an entry.
+     * @param data  the packed entry data returned by probe()
+     * @return  the packed move, or Move.NONE
+     */
+    public static int getMove(long data) {
+        return (int) (data & 0x3FFFFF);
+    }
+
+    /**
+     * Gets the score of an entry.
+     * @param data  the packed entry data returned by probe()
+     * @return  the score
+     */
+    public static int getScore(long data) {
+        return (short) (data >>> TranspositionTable.SCORE_SHIFT);
+    }
+
+    /**
+     * Gets the depth of an entry.
+     * @param data  the packed entry data returned by probe()
+     * @return  the depth searched
+     */
+    public static int getDepth(long data) {
+        return (int) ((data >>> TranspositionTable.DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Gets the kind of bound of an entry's score.
+     * @param data  the packed entry data returned by probe()
+     * @return  EXACT, LOWER or UPPER
+     */
+    public static int getBound(long data) {
+        return (int) ((data >>> TranspositionTable.BOUND_SHIFT) & 0x3);
+    }
+
+    private static int getGeneration(long data) {
+        return (int) ((data >>> TranspositionTable.GENERATION_SHIFT) & 0xFF);
+    }
+
+    private int bucket(long key) {
+        return (int) ((key & this.bucketMask) * TranspositionTable.BUCKET_ENTRIES * TranspositionTable.ENTRY_LONGS);
+    }
+}
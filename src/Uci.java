@@ -0,0 +1,485 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author woodjamesdee
+ *
+ * Speaks the Universal Chess Interface, so the engine can run behind any chess GUI or batch tool. A session keeps
+ * one Board, set up by each "position" command, and one Search. Searches run on a thread of their own, so commands
+ * keep being read while the engine thinks: "stop", "ponderhit" and "isready" are answered at once, and a command
+ * which changes the position or the options first stops any search still running. Time controls are turned into
+ * search limits by a TimeManager.
+ *
+ * Besides the standard commands, the options are Hash, Threads, Ponder, Move Overhead and TablebasePath, a directory
+ * of endgame tables made by TablebaseGenerator.
+ */
+public final class Uci {
+
+    public static final String NAME = "Chess";
+    public static final String AUTHOR = "woodjamesdee";
+
+    private static final int DEFAULT_HASH = 16;
+    private static final int MAX_HASH = 8192;
+    private static final int MAX_THREADS = 256;
+    private static final long MAX_OVERHEAD = 5000;
+
+    private final BufferedReader input;
+    private final PrintWriter output;
+    private final Board board;
+    private final ExecutorService searcher;
+    private int hash;
+    private int threads;
+    private boolean ponder;
+    private TimeManager timeManager;
+    private Tablebases tablebases;
+    private Search search;
+    private Future<?> running;
+    private boolean pondering;
+    private boolean infinite;
+
+    /**
+     * Creates a new session in the starting position.
+     * @param input     where commands are read from
+     * @param output    where responses are written to
+     */
+    public Uci(Reader input, Writer output) {
+        this.input = new BufferedReader(input);
+        this.output = new PrintWriter(output);
+        this.board = Fen.parse(Fen.START);
+        this.searcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "uci-search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.hash = Uci.DEFAULT_HASH;
+        this.threads = 1;
+        this.timeManager = new TimeManager();
+    }
+
+    /**
+     * Runs a session over standard input and output.
+     * @param args  ignored
+     * @throws IOException  if standard input cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        new Uci(new InputStreamReader(System.in, StandardCharsets.US_ASCII),
+                new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)).run();
+    }
+
+    /**
+     * Reads and carries out commands until "quit" or the end of the input, then stops the search threads.
+     * @throws IOException  if the input cannot be read
+     */
+    public void run() throws IOException {
+        try {
+            String line;
+            while((line = this.input.readLine()) != null && this.execute(line)) {
+                continue;
+            }
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Carries out one command. Commands which cannot be understood or which fail are reported with an "info string"
+     * line.
+     * @param line  the command
+     * @return  false if the command was "quit"
+     */
+    public boolean execute(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        try {
+            switch(tokens[0]) {
+                case "":
+                    break;
+                case "uci":
+                    this.identify();
+                    break;
+                case "isready":
+                    this.send("readyok");
+                    break;
+                case "ucinewgame":
+                    this.waitForSearch();
+                    this.getSearch().getTable().clear();
+                    Fen.parse(Fen.START, this.board);
+                    break;
+                case "setoption":
+                    this.waitForSearch();
+                    this.setOption(tokens);
+                    break;
+                case "position":
+                    this.waitForSearch();
+                    this.setPosition(tokens);
+                    break;
+                case "go":
+                    this.waitForSearch();
+                    this.go(tokens);
+                    break;
+                case "stop":
+                    this.stop();
+                    break;
+                case "ponderhit":
+                    this.ponderhit();
+                    break;
+                case "quit":
+                    return false;
+                default:
+                    this.send("info string Unknown command: " + line.trim());
+            }
+        } catch(IllegalArgumentException e) {
+            this.send("info string " + e.getMessage());
+        } catch(RuntimeException e) {
+            //Whatever went wrong, only the command fails and the engine keeps running
+            this.send("info string " + line.trim() + " failed: " + e);
+        }
+        return true;
+    }
+
+    /**
+     * Stops any running search, waits for it to report its move and stops the search threads for good.
+     */
+    public void close() {
+        this.waitForSearch();
+        if(this.search != null) {
+            this.search.shutdown();
+        }
+        this.searcher.shutdownNow();
+    }
+
+    /**
+     * Gets the position of this session.
+     * @return  the Board, which must not be changed while a search runs
+     */
+    Board getBoard() {
+        return this.board;
+    }
+
+    private void identify() {
+        this.send("id name " + Uci.NAME);
+        this.send("id author " + Uci.AUTHOR);
+        this.send("option name Hash type spin default " + Uci.DEFAULT_HASH + " min 1 max " + Uci.MAX_HASH);
+        this.send("option name Threads type spin default 1 min 1 max " + Uci.MAX_THREADS);
+        this.send("option name Ponder type check default false");
+        this.send("option name Move Overhead type spin default " + TimeManager.DEFAULT_OVERHEAD + " min 0 max " + Uci.MAX_OVERHEAD);
+        this.send("option name TablebasePath type string default <empty>");
+        this.send("uciok");
+    }
+
+    private void setOption(String[] tokens) {
+        StringBuilder name = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        StringBuilder current = null;
+        for(int i = 1; i < tokens.length; i++) {
+            if(tokens[i].equals("name") && current == null) {
+                current = name;
+            } else if(tokens[i].equals("value") && current == name) {
+                current = value;
+            } else if(current != null) {
+                current.append(current.length() == 0 ? "" : " ").append(tokens[i]);
+            }
+        }
+        String text = value.toString();
+        switch(name.toString().toLowerCase()) {
+            case "hash":
+                this.hash = Uci.parseSpin(text, 1, Uci.MAX_HASH);
+                this.replaceSearch();
+                break;
+            case "threads":
+                this.threads = Uci.parseSpin(text, 1, Uci.MAX_THREADS);
+                this.replaceSearch();
+                break;
+            case "ponder":
+                this.ponder = Boolean.parseBoolean(text);
+                break;
+            case "move overhead":
+                this.timeManager = new TimeManager(Uci.parseSpin(text, 0, (int) Uci.MAX_OVERHEAD));
+                break;
+            case "tablebasepath":
+                try {
+                    this.tablebases = text.isEmpty() || text.equals("<empty>") ? null : Tablebases.open(Paths.get(text));
+                } catch(IOException e) {
+                    throw new IllegalArgumentException("The tables in " + text + " cannot be read.", e);
+                }
+                if(this.search != null) {
+                    this.search.setTablebases(this.tablebases);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(name + " is not a valid option.");
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int moves = tokens.length;
+        for(int i = 1; i < tokens.length; i++) {
+            if(tokens[i].equals("moves")) {
+                moves = i;
+                break;
+            }
+        }
+        if(tokens.length > 1 && tokens[1].equals("startpos")) {
+            Fen.parse(Fen.START, this.board);
+        } else if(tokens.length > 2 && tokens[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for(int i = 2; i < moves; i++) {
+                fen.append(i == 2 ? "" : " ").append(tokens[i]);
+            }
+            try {
+                Fen.parse(fen.toString(), this.board);
+            } catch(IllegalArgumentException e) {
+                Fen.parse(Fen.START, this.board);
+                throw e;
+            }
+        } else {
+            throw new IllegalArgumentException("A position must be startpos or fen.");
+        }
+        for(int i = moves + 1; i < tokens.length; i++) {
+            int move = this.board.findMove(tokens[i]);
+            if(move == Move.NONE) {
+                throw new IllegalArgumentException(tokens[i] + " is not a legal move in " + Fen.toString(this.board) + ".");
+            }
+            try {
+                this.board.makeMove(move);
+            } catch(RuntimeException e) {
+                Fen.parse(Fen.START, this.board); //The Board may be left part way through the move
+                throw e;
+            }
+        }
+    }
+
+    private void go(String[] tokens) {
+        SearchLimits limits = new SearchLimits();
+        long[] time = new long[Piece.COLORS.size()];
+        long[] increment = new long[Piece.COLORS.size()];
+        boolean timed = false;
+        boolean ponder = false;
+        boolean infinite = false;
+        int movesToGo = 0;
+        long moveTime = 0;
+        for(int i = 1; i < tokens.length; i++) {
+            switch(tokens[i]) {
+                case "wtime":
+                    time[Piece.WHITE] = Uci.parseLong(tokens, ++i);
+                    timed = true;
+                    break;
+                case "btime":
+                    time[Piece.BLACK] = Uci.parseLong(tokens, ++i);
+                    timed = true;
+                    break;
+                case "winc":
+                    increment[Piece.WHITE] = Uci.parseLong(tokens, ++i);
+                    break;
+                case "binc":
+                    increment[Piece.BLACK] = Uci.parseLong(tokens, ++i);
+                    break;
+                case "movestogo":
+                    movesToGo = (int) Uci.parseLong(tokens, ++i);
+                    break;
+                case "depth":
+                    limits.setDepth((int) Math.max(1, Math.min(Uci.parseLong(tokens, ++i), Search.MAX_PLY - 1)));
+                    break;
+                case "mate":
+                    limits.setDepth((int) Math.max(1, Math.min(2 * Uci.parseLong(tokens, ++i) - 1, Search.MAX_PLY - 1)));
+                    break;
+                case "nodes":
+                    limits.setNodes(Math.max(1, Uci.parseLong(tokens, ++i)));
+                    break;
+                case "movetime":
+                    moveTime = Uci.parseLong(tokens, ++i);
+                    break;
+                case "ponder":
+                    ponder = true;
+                    break;
+                case "infinite":
+                    infinite = true;
+                    break;
+                default: //"searchmoves" and its moves are not supported, and ignored
+                    break;
+            }
+        }
+        if(moveTime > 0) {
+            limits.setMoveTime(Math.max(1, moveTime - this.timeManager.getOverhead()));
+            limits.setOptimumTime(limits.getMoveTime());
+        } else if(timed && !infinite) {
+            int side = this.board.getSideToMove();
+            this.timeManager.allocate(limits, this.board, time[side], increment[side], movesToGo, this.ponder);
+        }
+        limits.setPonder(ponder);
+        int[] legal = new int[Board.MAX_MOVES];
+        final int fallback = this.board.generateLegalMoves(legal, 0) > 0 ? legal[0] : Move.NONE;
+        final Search search = this.getSearch();
+        synchronized(this) {
+            this.pondering = ponder;
+            this.infinite = infinite;
+        }
+        search.prepare(this.board, limits);
+        this.running = this.searcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                Uci.this.think(search, fallback);
+            }
+        });
+    }
+
+    /**
+     * Runs a prepared search on the search thread and reports its move, holding it back while the search ponders
+     * or is infinite until "ponderhit" or "stop" arrives, as the protocol asks. A search which fails still answers,
+     * with the first legal move.
+     */
+    private void think(Search search, int fallback) {
+        SearchResult result = null;
+        try {
+            result = search.run();
+        } catch(RuntimeException e) {
+            this.send("info string The search failed: " + e);
+        }
+        synchronized(this) {
+            while(this.pondering || this.infinite) {
+                try {
+                    this.wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        int best = result != null && result.getBestMove() != Move.NONE ? result.getBestMove() : fallback;
+        String text = "bestmove " + Uci.toString(best);
+        if(result != null && best == result.getBestMove() && result.getPrincipalVariation().length > 1) {
+            text += " ponder " + Uci.toString(result.getPrincipalVariation()[1]);
+        }
+        this.send(text);
+    }
+
+    private void stop() {
+        synchronized(this) {
+            this.pondering = false;
+            this.infinite = false;
+            this.notifyAll();
+        }
+        if(this.search != null) {
+            this.search.stop();
+        }
+    }
+
+    private void ponderhit() {
+        synchronized(this) {
+            this.pondering = false;
+            this.notifyAll();
+        }
+        if(this.search != null) {
+            this.search.ponderhit();
+        }
+    }
+
+    /**
+     * Stops the running search, if any, and waits until it has reported its move.
+     */
+    private void waitForSearch() {
+        if(this.running == null) {
+            return;
+        }
+        this.stop();
+        try {
+            this.running.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            this.send("info string The search failed: " + e.getCause());
+        }
+        this.running = null;
+    }
+
+    private Search getSearch() {
+        if(this.search == null) {
+            this.search = new Search(new TranspositionTable(this.hash), this.threads);
+            this.search.setTablebases(this.tablebases);
+            this.search.setListener(new Search.Listener() {
+                @Override
+                public void iteration(SearchResult result) {
+                    Uci.this.sendInfo(result);
+                }
+            });
+        }
+        return this.search;
+    }
+
+    private void replaceSearch() {
+        if(this.search != null) {
+            this.search.shutdown();
+            this.search = null;
+        }
+    }
+
+    private void sendInfo(SearchResult result) {
+        StringBuilder text = new StringBuilder("info depth ").append(result.getDepth()).append(" score ");
+        int score = result.getScore();
+        if(result.isMate()) {
+            text.append("mate ").append(score > 0 ? (Search.MATE - score + 1) / 2 : -(Search.MATE + score) / 2);
+        } else {
+            text.append("cp ").append(score);
+        }
+        text.append(" nodes ").append(result.getNodes());
+        text.append(" nps ").append((long) result.getNodesPerSecond());
+        text.append(" time ").append(result.getNanos() / 1000000);
+        text.append(" hashfull ").append((int) (this.search.getTable().getFillRate() * 1000));
+        text.append(" pv");
+        for(int move : result.getPrincipalVariation()) {
+            text.append(' ').append(Uci.toString(move));
+        }
+        this.send(text.toString());
+    }
+
+    private void send(String line) {
+        synchronized(this.output) {
+            this.output.println(line);
+            this.output.flush();
+        }
+    }
+
+    /**
+     * Writes a move as the protocol expects, such as "e2e4" or "e7e8q", or "0000" for no move.
+     */
+    static String toString(int move) {
+        return move == Move.NONE ? "0000" : Move.toString(move).toLowerCase();
+    }
+
+    private static long parseLong(String[] tokens, int index) {
+        if(index >= tokens.length) {
+            throw new IllegalArgumentException(tokens[index - 1] + " needs a value.");
+        }
+        try {
+            return Math.max(0, Long.parseLong(tokens[index])); //Some GUIs send a negative time once the clock runs out
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException(tokens[index] + " is not a valid " + tokens[index - 1] + ".");
+        }
+    }
+
+    private static int parseSpin(String text, int min, int max) {
+        try {
+            int value = Integer.parseInt(text);
+            if(value >= min && value <= max) {
+                return value;
+            }
+        } catch(NumberFormatException e) {
+            //Reported below
+        }
+        throw new IllegalArgumentException(text + " is not a valid value.");
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * @author woodjamesdee
+ *
+ * Random keys for Zobrist hashing. The hash of a position is the XOR of the key of every piece on its square, the
+ * side to move, the castling rights and the en passant file, which lets Board update it with a few XORs per move
+ * instead of recomputing it. The keys come from a fixed seed so that hashes are the same on every run.
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECES = new long[Piece.COLORS.size() * Piece.TYPES.size()][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long SIDE;
+
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        for(long[] keys : Zobrist.PIECES) {
+            for(int square = 0; square < 64; square++) {
+                keys[square] = Zobrist.nextRandom();
+            }
+        }
+        long[] rights = new long[4];
+        for(int i = 0; i < rights.length; i++) {
+            rights[i] = Zobrist.nextRandom();
+        }
+        for(int i = 0; i < Zobrist.CASTLING.length; i++) {
+            for(int right = 0; right < rights.length; right++) {
+                if((i & (1 << right)) != 0) {
+                    Zobrist.CASTLING[i] ^= rights[right];
+                }
+            }
+        }
+        for(int file = 0; file < Zobrist.EN_PASSANT.length; file++) {
+            Zobrist.EN_PASSANT[file] = Zobrist.nextRandom();
+        }
+        SIDE = Zobrist.nextRandom();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key of a piece standing on a square.
+     * @param type      the index of the type within Piece.TYPES
+     * @param color     the index of the color within Piece.COLORS
+     * @param square    the index of the square within Board.POSITIONS
+     * @return  the key
+     */
+    public static long piece(int type, int color, int square) {
+        return Zobrist.PIECES[color * Piece.TYPES.size() + type][square];
+    }
+
+    /**
+     * Gets the key of a piece code as used by Board, which is color * 6 + type.
+     * @param code      the piece code
+     * @param square    the index of the square within Board.POSITIONS
+     * @return  the key
+     */
+    static long code(int code, int square) {
+        return Zobrist.PIECES[code][square];
+    }
+
+    /**
+     * Gets the key which is present when black is to move.
+     * @return  the key
+     */
+    public static long side() {
+        return Zobrist.SIDE;
+    }
+
+    /**
+     * Gets the key of a combination of castling rights.
+     * @param rights    a combination of the Board.CASTLE constants
+     * @return  the key
+     */
+    public static long castling(int rights) {
+        return Zobrist.CASTLING[rights];
+    }
+
+    /**
+     * Gets the key of an en passant square.
+     * @param square    the index of the en passant square within Board.POSITIONS, or -1 if there is none
+     * @return  the key of the file of the square, or 0 if there is none
+     */
+    public static long enPassant(int square) {
+        return square < 0 ? 0L : Zobrist.EN_PASSANT[square / 8];
+    }
+
+    /**
+     * Computes the hash of a Board from scratch.
+     * @param board the position to hash
+     * @return  the Zobrist hash
+     */
+    public static long compute(Board board) {
+        long hash = 0L;
+        for(int square = 0; square < 64; square++) {
+            if(board.isOccupied(square)) {
+                hash ^= Zobrist.piece(board.getPieceType(square), board.getPieceColor(square), square);
+            }
+        }
+        if(board.getSideToMove() == Piece.BLACK) {
+            hash ^= Zobrist.SIDE;
+        }
+        return hash ^ Zobrist.castling(board.getCastlingRights()) ^ Zobrist.enPassant(board.getEnPassantSquare());
+    }
+
+    private static long nextRandom() {
+        Zobrist.seed ^= Zobrist.seed << 13;
+        Zobrist.seed ^= Zobrist.seed >>> 7;
+        Zobrist.seed ^= Zobrist.seed << 17;
+        return Zobrist.seed;
+    }
+}
@@ -0,0 +1,77 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestBinaryPosition {
+
+    private static final String[] FENS = new String[] {
+            Fen.START,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "8/8/8/4k3/8/8/8/R3K3 b Q - 99 300"};
+
+    @Test
+    public void testRoundTrip() {
+        for(String fen : FENS) {
+            Board board = Fen.parse(fen);
+            byte[] bytes = BinaryPosition.encode(board);
+            assertEquals(BinaryPosition.SIZE, bytes.length);
+            Board decoded = BinaryPosition.decode(bytes);
+            assertEquals(fen, Fen.toString(decoded));
+            assertEquals(board.getHash(), decoded.getHash());
+        }
+    }
+
+    @Test
+    public void testPackedIntoSharedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(FENS.length * BinaryPosition.SIZE + 5);
+        for(int i = 0; i < FENS.length; i++) {
+            BinaryPosition.write(Fen.parse(FENS[i]), buffer, 5 + i * BinaryPosition.SIZE);
+        }
+        Board board = new Board();
+        for(int i = FENS.length - 1; i >= 0; i--) {
+            BinaryPosition.read(buffer, 5 + i * BinaryPosition.SIZE, board);
+            assertEquals(FENS[i], Fen.toString(board));
+        }
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPieceCode() {
+        byte[] bytes = BinaryPosition.encode(Fen.parse(Fen.START));
+        bytes[8] = (byte) 0xF0;
+        BinaryPosition.decode(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEnPassantSquare() {
+        byte[] bytes = BinaryPosition.encode(Fen.parse(Fen.START));
+        bytes[BinaryPosition.STATE_OFFSET + 1] = (byte) 255;
+        BinaryPosition.decode(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPhantomEnPassantSquare() {
+        byte[] bytes = BinaryPosition.encode(Fen.parse("4k3/8/8/3P4/8/8/8/4K3 w - - 0 1"));
+        bytes[BinaryPosition.STATE_OFFSET + 1] = (byte) (Board.squareIndex("e6") + 1);
+        BinaryPosition.decode(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSideNotToMoveInCheck() {
+        byte[] bytes = BinaryPosition.encode(Fen.parse("4k2R/8/8/8/8/8/8/4K3 b - - 0 1"));
+        bytes[BinaryPosition.STATE_OFFSET] ^= 1;
+        BinaryPosition.decode(bytes);
+    }
+
+    @Test
+    public void testUnbackedCastlingRightsAreDropped() {
+        byte[] bytes = BinaryPosition.encode(Fen.parse("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1"));
+        bytes[BinaryPosition.STATE_OFFSET] |= 0xF << 1;
+        assertEquals(Board.CASTLE_WHITE_A, BinaryPosition.decode(bytes).getCastlingRights());
+    }
+}
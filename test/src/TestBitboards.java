@@ -0,0 +1,55 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestBitboards {
+
+    @Test
+    public void testLeaperAttacks() {
+        assertEquals(bits("g3", "f2"), Bitboards.knightAttacks(Board.squareIndex("h1")));
+        assertEquals(bits("d3", "e3", "f3", "f4", "f5", "e5", "d5", "d4"), Bitboards.kingAttacks(Board.squareIndex("e4")));
+        assertEquals(bits("d3", "f3"), Bitboards.pawnAttacks(Piece.WHITE, Board.squareIndex("e2")));
+        assertEquals(bits("b6"), Bitboards.pawnAttacks(Piece.BLACK, Board.squareIndex("a7")));
+    }
+
+    @Test
+    public void testSlidingAttacks() {
+        long occupied = bits("e6", "c4", "g2", "f5");
+        assertEquals(bits("e5", "e6", "e3", "e2", "e1", "d4", "c4", "f4", "g4", "h4"), Bitboards.rookAttacks(Board.squareIndex("e4"), occupied));
+        assertEquals(bits("f5", "d5", "c6", "b7", "a8", "f3", "g2", "d3", "c2", "b1"), Bitboards.bishopAttacks(Board.squareIndex("e4"), occupied));
+    }
+
+    @Test
+    public void testSlidingAttacksMatchRays() {
+        Random random = new Random(42);
+        for(int i = 0; i < 2000; i++) {
+            long occupied = random.nextLong() & random.nextLong();
+            int square = random.nextInt(64);
+            assertEquals(walk(Piece.ROOK, square, occupied), Bitboards.rookAttacks(square, occupied));
+            assertEquals(walk(Piece.BISHOP, square, occupied), Bitboards.bishopAttacks(square, occupied));
+        }
+    }
+
+    private static long walk(int type, int square, long occupied) {
+        long attacks = 0L;
+        for(int[] ray : MoveTables.getSquares(type, Piece.WHITE, true, square)) {
+            for(int target : ray) {
+                attacks |= 1L << target;
+                if((occupied & (1L << target)) != 0) {
+                    break;
+                }
+            }
+        }
+        return attacks;
+    }
+
+    private static long bits(String... positions) {
+        long bitboard = 0L;
+        for(String position : positions) {
+            bitboard |= 1L << Board.squareIndex(position);
+        }
+        return bitboard;
+    }
+}
@@ -0,0 +1,364 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestBoard {
+
+    private Board board;
+
+    @Before
+    public void setUp() {
+        board = new Board();
+        board.generateDefaultStart();
+    }
+
+    @Test
+    public void testSquareIndex() {
+        assertEquals(0, Board.squareIndex("h1"));
+        assertEquals(63, Board.squareIndex("a8"));
+        assertEquals(Board.POSITIONS.indexOf("e4"), Board.squareIndex("e4"));
+        assertEquals(-1, Board.squareIndex("i1"));
+        assertEquals(-1, Board.squareIndex("a9"));
+        assertEquals(-1, Board.squareIndex(" "));
+        assertEquals("e4", Board.squareName(Board.squareIndex("e4")));
+    }
+
+    @Test
+    public void testDefaultStartBitboards() {
+        assertEquals(0x0303030303030303L, board.getOccupancy(Piece.WHITE));
+        assertEquals(0xC0C0C0C0C0C0C0C0L, board.getOccupancy(Piece.BLACK));
+        assertEquals(0x0202020202020202L, board.getBitboard(Piece.PAWN, Piece.WHITE));
+        assertEquals(1L << Board.squareIndex("d8"), board.getBitboard(Piece.KING, Piece.BLACK));
+        assertTrue(board.isOccupied(Board.squareIndex("e2")));
+        assertFalse(board.isOccupied(Board.squareIndex("e4")));
+        assertEquals(Piece.QUEEN, board.getPieceType(Board.squareIndex("e1")));
+        assertEquals(Piece.BLACK, board.getPieceColor(Board.squareIndex("g8")));
+        assertEquals(-1, board.getPieceType(Board.squareIndex("e4")));
+        assertEquals("N", board.getPiece("b1").getType());
+        assertNull(board.getPiece("e4"));
+    }
+
+    @Test
+    public void testSynchronize() {
+        Piece pawn = board.getPiece("e2");
+        pawn.setPosition("e4");
+        pawn.setMoved();
+        board.synchronize();
+        assertNull(board.getPiece("e2"));
+        assertSame(pawn, board.getPiece("e4"));
+        assertTrue(board.isOccupied(Board.squareIndex("e4")));
+        assertFalse(board.isOccupied(Board.squareIndex("e2")));
+    }
+
+    @Test
+    public void testAddPiece() {
+        Board empty = new Board();
+        Piece king = new Piece("K", "white", "e1");
+        empty.addPiece(king);
+        assertSame(king, empty.getPiece("e1"));
+        assertEquals(1L << Board.squareIndex("e1"), empty.getOccupancy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddPieceOccupied() {
+        board.addPiece(new Piece("N", "black", "e2"));
+    }
+
+    @Test
+    public void testDefaultStartCastlingRights() {
+        assertEquals(Board.CASTLE_WHITE_H | Board.CASTLE_WHITE_A | Board.CASTLE_BLACK_H | Board.CASTLE_BLACK_A, board.getCastlingRights());
+        assertEquals(Piece.WHITE, board.getSideToMove());
+        assertEquals(-1, board.getEnPassantSquare());
+    }
+
+    @Test
+    public void testPlayUpdatesPieces() {
+        Piece pawn = board.getPiece("e2");
+        board.makeMove(find(board, "e2e4"));
+        assertEquals("e4", pawn.getPosition());
+        assertTrue(pawn.getMoved());
+        assertEquals(-1, board.getEnPassantSquare());
+        assertEquals(Piece.BLACK, board.getSideToMove());
+        board.makeMove(find(board, "d7d5"));
+        Piece captured = board.getPiece("d5");
+        board.makeMove(find(board, "e4d5"));
+        assertTrue(captured.getCaptured());
+        assertSame(pawn, board.getPiece("d5"));
+        assertEquals(0L, board.getBitboard(Piece.PAWN, Piece.BLACK) & (1L << Board.squareIndex("d5")));
+        assertEquals(2, board.getFullmoveNumber());
+    }
+
+    @Test
+    public void testGenerateIntoBuffer() {
+        int[] buffer = new int[Board.MAX_MOVES + 3];
+        assertEquals(23, board.generateLegalMoves(buffer, 3));
+        MoveBuffers buffers = new MoveBuffers(2);
+        assertEquals(20, buffers.generate(board, 1));
+        assertEquals(20, buffers.count(1));
+    }
+
+    @Test
+    public void testFindMove() {
+        assertEquals(Move.NONE, board.findMove("e2", "e5", null));
+        int move = board.findMove("g1", "f3", null);
+        assertEquals("g1", Move.getFromPosition(move));
+        assertEquals("f3", Move.getToPosition(move));
+        assertFalse(Move.isCapture(move));
+    }
+
+    @Test
+    public void testMakeUnmakeRestoresPosition() {
+        Board kiwipete = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R", Piece.WHITE, 15);
+        kiwipete.makeMove(find(kiwipete, "a1b1"));
+        kiwipete.makeMove(find(kiwipete, "c7c5"));
+        for(int move : kiwipete.getLegalMoves()) {
+            String before = snapshot(kiwipete);
+            kiwipete.makeMove(move);
+            for(int reply : kiwipete.getLegalMoves()) {
+                String middle = snapshot(kiwipete);
+                kiwipete.makeMove(reply);
+                kiwipete.unmakeMove();
+                assertEquals(Move.toString(reply), middle, snapshot(kiwipete));
+            }
+            kiwipete.unmakeMove();
+            assertEquals(Move.toString(move), before, snapshot(kiwipete));
+        }
+        assertEquals(2, kiwipete.getPly());
+    }
+
+    @Test
+    public void testUnmakeCapture() {
+        board.makeMove(find(board, "e2e4"));
+        board.makeMove(find(board, "d7d5"));
+        Piece captured = board.getPiece("d5");
+        board.makeMove(find(board, "e4d5"));
+        board.unmakeMove();
+        assertFalse(captured.getCaptured());
+        assertEquals("d5", captured.getPosition());
+        assertSame(captured, board.getPiece("d5"));
+        assertEquals(2, board.getPly());
+    }
+
+    @Test
+    public void testHashIsIncremental() {
+        Board kiwipete = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R", Piece.WHITE, 15);
+        assertEquals(Zobrist.compute(kiwipete), kiwipete.getHash());
+        long root = kiwipete.getHash();
+        for(int move : kiwipete.getLegalMoves()) {
+            kiwipete.makeMove(move);
+            assertEquals(Move.toString(move), Zobrist.compute(kiwipete), kiwipete.getHash());
+            for(int reply : kiwipete.getLegalMoves()) {
+                kiwipete.makeMove(reply);
+                assertEquals(Move.toString(reply), Zobrist.compute(kiwipete), kiwipete.getHash());
+                kiwipete.unmakeMove();
+            }
+            kiwipete.unmakeMove();
+        }
+        assertEquals(root, kiwipete.getHash());
+    }
+
+    @Test
+    public void testHashTranspositions() {
+        Board other = new Board();
+        other.generateDefaultStart();
+        for(String move : new String[] {"g1f3", "g8f6", "b1c3", "b8c6"}) {
+            board.makeMove(find(board, move));
+        }
+        for(String move : new String[] {"b1c3", "b8c6", "g1f3", "g8f6"}) {
+            other.makeMove(find(other, move));
+        }
+        assertEquals(board.getHash(), other.getHash());
+        board.makeMove(find(board, "e2e4"));
+        long afterPush = board.getHash();
+        for(String move : new String[] {"f6g8", "f3g1", "g8f6", "g1f3"}) {
+            board.makeMove(find(board, move));
+        }
+        assertEquals(afterPush, board.getHash());
+    }
+
+    @Test
+    public void testEnPassantSquareOnlyWhenCapturable() {
+        for(String move : new String[] {"e2e4", "a7a6", "e4e5"}) {
+            board.makeMove(find(board, move));
+        }
+        board.makeMove(find(board, "f7f5"));
+        assertEquals(Board.squareIndex("f6"), board.getEnPassantSquare());
+        assertTrue(Move.isCapture(find(board, "e5f6")));
+        board.unmakeMove();
+        board.makeMove(find(board, "b7b5"));
+        assertEquals(-1, board.getEnPassantSquare());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnmakeWithoutMove() {
+        board.unmakeMove();
+    }
+
+    @Test
+    public void testPerftDefaultStart() {
+        assertEquals(20, board.perft(1));
+        assertEquals(400, board.perft(2));
+        assertEquals(8902, board.perft(3));
+        assertEquals(197281, board.perft(4));
+    }
+
+    @Test
+    public void testPerftParallel() {
+        Perft result = board.perft(4, new ForkJoinPool(2));
+        assertEquals(197281, result.getNodes());
+        assertTrue(result.getNodesPerSecond() > 0);
+    }
+
+    @Test
+    public void testPerftCastlingAndPromotions() {
+        Board kiwipete = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R", Piece.WHITE, 15);
+        assertEquals(48, kiwipete.perft(1));
+        assertEquals(2039, kiwipete.perft(2));
+        assertEquals(97862, kiwipete.perft(3));
+        Board mirrored = setUp("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1", Piece.WHITE, Board.CASTLE_BLACK_H | Board.CASTLE_BLACK_A);
+        assertEquals(6, mirrored.perft(1));
+        assertEquals(264, mirrored.perft(2));
+        assertEquals(9467, mirrored.perft(3));
+        Board promotions = setUp("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R", Piece.WHITE, Board.CASTLE_WHITE_H | Board.CASTLE_WHITE_A);
+        assertEquals(44, promotions.perft(1));
+        assertEquals(1486, promotions.perft(2));
+        assertEquals(62379, promotions.perft(3));
+    }
+
+    @Test
+    public void testPerftPinsAndEnPassant() {
+        Board endgame = setUp("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8", Piece.WHITE, 0);
+        assertEquals(14, endgame.perft(1));
+        assertEquals(191, endgame.perft(2));
+        assertEquals(2812, endgame.perft(3));
+        assertEquals(43238, endgame.perft(4));
+    }
+
+    @Test
+    public void testAttackQueries() {
+        //The black bishop on b4 pins the knight on d2 to the white king
+        Board board = TestBoard.setUp("4k3/8/8/8/1b6/8/3N4/4K2R", Piece.WHITE, 0);
+        assertFalse(board.isInCheck());
+        assertEquals(0L, board.getCheckers());
+        assertEquals(1L << Board.squareIndex("d2"), board.getPinned());
+        assertTrue(board.isSquareAttacked(Board.squareIndex("c3"), Piece.BLACK));
+        assertFalse(board.isSquareAttacked(Board.squareIndex("e1"), Piece.BLACK));
+        assertFalse(board.isSquareAttacked(Board.squareIndex("h8"), Piece.BLACK));
+        assertEquals(1L << Board.squareIndex("e1"), board.attackersOf(Board.squareIndex("e2")));
+        assertEquals((1L << Board.squareIndex("h1")) | (1L << Board.squareIndex("e1")) | (1L << Board.squareIndex("d2")),
+                board.attackersOf(Board.squareIndex("f1")));
+        board.makeMove(TestBoard.find(board, "h1h8"));
+        assertTrue(board.isInCheck());
+        assertEquals(1L << Board.squareIndex("h8"), board.getCheckers());
+        assertEquals(0L, board.getPinned());
+        assertTrue((board.getAttacks(Piece.WHITE) & (1L << Board.squareIndex("e8"))) != 0);
+        board.unmakeMove();
+        assertFalse(board.isInCheck());
+        assertEquals(1L << Board.squareIndex("d2"), board.getPinned());
+    }
+
+    @Test
+    public void testIllegality() {
+        assertEquals(null, TestBoard.setUp("4k3/8/8/8/8/8/8/4K3", Piece.WHITE, 0).getIllegality());
+        assertEquals("each side must have exactly one king", TestBoard.setUp("8/8/8/8/8/8/8/4K3", Piece.WHITE, 0).getIllegality());
+        assertEquals("each side must have exactly one king", TestBoard.setUp("4k3/8/8/8/8/8/8/3KK3", Piece.BLACK, 0).getIllegality());
+        assertEquals("pawns cannot stand on the first or last rank", TestBoard.setUp("k6P/8/8/8/8/8/8/K7", Piece.WHITE, 0).getIllegality());
+        assertEquals("the side not to move is in check", TestBoard.setUp("4k2R/8/8/8/8/8/8/4K3", Piece.WHITE, 0).getIllegality());
+        assertEquals(null, TestBoard.setUp("4k2R/8/8/8/8/8/8/4K3", Piece.BLACK, 0).getIllegality());
+    }
+
+    @Test
+    public void testDisplacedKingCannotCastle() {
+        Board board = TestBoard.setUp("4k3/8/8/8/8/8/8/R4K2", Piece.WHITE, Board.CASTLE_WHITE_A);
+        assertEquals(0, board.getBackedCastlingRights(Board.CASTLE_WHITE_A));
+        for(int move : board.getLegalMoves()) {
+            assertEquals(0, Move.getFlags(move) & Move.CASTLE);
+        }
+    }
+
+    @Test
+    public void testCachedAttacksFollowMoves() {
+        Random random = new Random(7);
+        int[] moves = new int[Board.MAX_MOVES];
+        for(String fen : new String[] {Fen.START, "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"}) {
+            Board board = Fen.parse(fen);
+            for(int ply = 0; ply < 200; ply++) {
+                TestBoard.checkAttacks(board);
+                int count = board.generateLegalMoves(moves, 0);
+                if(count == 0 || (ply % 7 == 6 && board.getPly() > 0)) {
+                    board.unmakeMove();
+                    continue;
+                }
+                board.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    private static void checkAttacks(Board board) {
+        Board fresh = Fen.parse(Fen.toString(board));
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            assertEquals(fresh.getAttacks(color), board.getAttacks(color));
+            for(int square = 0; square < 64; square++) {
+                assertEquals(fresh.isSquareAttacked(square, color), board.isSquareAttacked(square, color));
+            }
+        }
+        assertEquals(fresh.getCheckers(), board.getCheckers());
+        assertEquals(fresh.getPinned(), board.getPinned());
+    }
+
+    private static String snapshot(Board board) {
+        StringBuilder builder = new StringBuilder();
+        for(int type = 0; type < Piece.TYPES.size(); type++) {
+            for(int color = 0; color < Piece.COLORS.size(); color++) {
+                builder.append(board.getBitboard(type, color)).append(',');
+            }
+        }
+        builder.append(board.getOccupancy()).append(',').append(board.getSideToMove()).append(',').append(board.getCastlingRights())
+                .append(',').append(board.getEnPassantSquare()).append(',').append(board.getHalfmoveClock()).append(',').append(board.getFullmoveNumber());
+        for(String position : Board.POSITIONS) {
+            Piece piece = board.getPiece(position);
+            if(piece != null) {
+                builder.append(';').append(position).append(piece.getType()).append(piece.getColor()).append(piece.getMoved()).append(piece.getCaptured());
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int find(Board board, String text) {
+        int move = board.findMove(text);
+        if(move == Move.NONE) {
+            throw new AssertionError(text + " is not a legal move.");
+        }
+        return move;
+    }
+
+    private static Board setUp(String placement, int sideToMove, int castlingRights) {
+        Board board = new Board();
+        String[] ranks = placement.split("/");
+        for(int i = 0; i < 8; i++) {
+            int file = 0;
+            for(char c : ranks[i].toCharArray()) {
+                if(Character.isDigit(c)) {
+                    file += c - '0';
+                    continue;
+                }
+                String type = Character.toUpperCase(c) == 'P' ? " " : String.valueOf(Character.toUpperCase(c));
+                String color = Character.isUpperCase(c) ? "white" : "black";
+                board.addPiece(new Piece(type, color, "" + (char) ('a' + file) + (8 - i)));
+                file++;
+            }
+        }
+        board.synchronize();
+        board.setSideToMove(sideToMove);
+        board.setCastlingRights(castlingRights);
+        return board;
+    }
+}
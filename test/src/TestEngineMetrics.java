@@ -0,0 +1,106 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEngineMetrics {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Search search;
+
+    @After
+    public void tearDown() {
+        if(search != null) {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchIsCounted() {
+        EngineMetrics metrics = new EngineMetrics();
+        search = new Search(new TranspositionTable(4), 2);
+        search.setMetrics(metrics);
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(6);
+        SearchResult result = search.search(Fen.parse(Fen.START), limits);
+        assertEquals(1, metrics.getSearches());
+        assertEquals(result.getNodes(), metrics.getNodes());
+        assertEquals(result.getDepth(), metrics.getLastDepth());
+        assertTrue(metrics.getQuiescenceShare() > 0 && metrics.getQuiescenceShare() < 1);
+        assertTrue(metrics.getFirstMoveCutoffRate() > 0.5 && metrics.getFirstMoveCutoffRate() <= 1);
+        assertTrue(metrics.getGeneratedMoves() > 0);
+        assertTrue(metrics.getHashHits() > 0 && metrics.getHashHits() <= metrics.getHashProbes());
+        assertTrue(metrics.getLastIterationDepth() > 0);
+        assertTrue(metrics.getNodesPerSecond() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.getNodes());
+        assertEquals(0.0, metrics.getFirstMoveCutoffRate(), 1e-9);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        EngineMetrics metrics = new EngineMetrics();
+        ObjectName name = metrics.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            search = new Search(new TranspositionTable(1), 1);
+            search.setMetrics(metrics);
+            SearchLimits limits = new SearchLimits();
+            limits.setDepth(3);
+            search.search(Fen.parse(Fen.START), limits);
+            assertEquals(1L, server.getAttribute(name, "Searches"));
+            assertEquals(metrics.getNodes(), server.getAttribute(name, "Nodes"));
+            assertEquals(3, server.getAttribute(name, "LastDepth"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "Searches"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+        assertTrue(server.isRegistered(EngineMetrics.getObjectName("default")));
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("search.jfr");
+        search = new Search(new TranspositionTable(1), 1);
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(4);
+        try(Recording recording = new Recording()) {
+            recording.enable("chess.Search");
+            recording.enable("chess.SearchIteration");
+            recording.start();
+            search.search(Fen.parse(Fen.START), limits);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        int iterations = 0;
+        int searches = 0;
+        for(RecordedEvent event : events) {
+            if(event.getEventType().getName().equals("chess.SearchIteration")) {
+                iterations++;
+                assertEquals(iterations, event.getInt("depth"));
+            } else if(event.getEventType().getName().equals("chess.Search")) {
+                searches++;
+                assertEquals(4, event.getInt("depth"));
+                assertTrue(event.getLong("hashProbes") > 0);
+            }
+        }
+        assertEquals(4, iterations);
+        assertEquals(1, searches);
+    }
+}
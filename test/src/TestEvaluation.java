@@ -0,0 +1,108 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEvaluation {
+
+    @Test
+    public void testStartIsBalanced() {
+        Board board = new Board();
+        board.generateDefaultStart();
+        assertEquals(0, Evaluation.evaluate(board));
+        assertEquals(Evaluation.MAX_PHASE, board.getPhase());
+    }
+
+    @Test
+    public void testIncrementalScoresMatchRecomputed() {
+        Board board = setUp("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R", Piece.WHITE);
+        long pawnHash = board.getPawnHash();
+        int middlegame = board.getMiddlegameScore();
+        int endgame = board.getEndgameScore();
+        int phase = board.getPhase();
+        Random random = new Random(7);
+        int played = 0;
+        for(; played < 200; played++) {
+            int[] moves = board.getLegalMoves();
+            if(moves.length == 0) {
+                break;
+            }
+            board.makeMove(moves[random.nextInt(moves.length)]);
+            Board fresh = new Board(board);
+            fresh.synchronize();
+            assertEquals(fresh.getPawnHash(), board.getPawnHash());
+            assertEquals(fresh.getMiddlegameScore(), board.getMiddlegameScore());
+            assertEquals(fresh.getEndgameScore(), board.getEndgameScore());
+            assertEquals(fresh.getPhase(), board.getPhase());
+        }
+        for(int i = 0; i < played; i++) {
+            board.unmakeMove();
+        }
+        assertEquals(pawnHash, board.getPawnHash());
+        assertEquals(middlegame, board.getMiddlegameScore());
+        assertEquals(endgame, board.getEndgameScore());
+        assertEquals(phase, board.getPhase());
+    }
+
+    @Test
+    public void testPawnHashIgnoresOtherPieces() {
+        Board board = new Board();
+        board.generateDefaultStart();
+        long pawnHash = board.getPawnHash();
+        board.makeMove(board.findMove("g1f3"));
+        assertEquals(pawnHash, board.getPawnHash());
+        board.makeMove(board.findMove("g7g6"));
+        assertTrue(pawnHash != board.getPawnHash());
+    }
+
+    @Test
+    public void testPawnStructure() {
+        Board board = setUp("4k3/8/8/8/8/P7/P7/4K3", Piece.WHITE);
+        int score = Evaluation.pawnStructure(board);
+        assertEquals(-10 - 10 + 5 + 10 - 10, Evaluation.unpackMiddlegame(score));
+        assertEquals(-15 - 15 + 10 + 20 - 20, Evaluation.unpackEndgame(score));
+        board = setUp("4k3/8/8/3p4/8/8/2P1P3/4K3", Piece.WHITE);
+        score = Evaluation.pawnStructure(board);
+        assertEquals(-10 - 10 + 10, Evaluation.unpackMiddlegame(score));
+        assertEquals(-15 - 15 + 15, Evaluation.unpackEndgame(score));
+    }
+
+    @Test
+    public void testPawnTableMatchesUncached() {
+        PawnTable pawns = new PawnTable(1024);
+        Board board = setUp("4k3/pp3p2/8/3P4/8/8/PP4P1/4K3", Piece.BLACK);
+        assertEquals(Evaluation.evaluate(board), Evaluation.evaluate(board, pawns));
+        assertEquals(Evaluation.evaluate(board), Evaluation.evaluate(board, pawns));
+        assertEquals(0.5, pawns.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testEndgameFavorsCentralKing() {
+        Board central = setUp("8/8/8/4k3/8/8/8/K7", Piece.BLACK);
+        assertEquals(0, central.getPhase());
+        assertTrue(Evaluation.evaluate(central) > 0);
+    }
+
+    private static Board setUp(String placement, int sideToMove) {
+        Board board = new Board();
+        String[] ranks = placement.split("/");
+        for(int i = 0; i < 8; i++) {
+            int file = 0;
+            for(char c : ranks[i].toCharArray()) {
+                if(Character.isDigit(c)) {
+                    file += c - '0';
+                    continue;
+                }
+                String type = Character.toUpperCase(c) == 'P' ? " " : String.valueOf(Character.toUpperCase(c));
+                String color = Character.isUpperCase(c) ? "white" : "black";
+                board.addPiece(new Piece(type, color, "" + (char) ('a' + file) + (8 - i)));
+                file++;
+            }
+        }
+        board.synchronize();
+        board.setSideToMove(sideToMove);
+        return board;
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestFen {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    public void testStartPosition() {
+        Board board = Fen.parse(Fen.START);
+        assertEquals(Piece.WHITE, board.getSideToMove());
+        assertEquals(15, board.getCastlingRights());
+        assertEquals(-1, board.getEnPassantSquare());
+        assertEquals("K", board.getPiece("e1").getType());
+        assertEquals("black", board.getPiece("d8").getColor());
+        assertEquals(20, board.getLegalMoves().length);
+        assertEquals(Zobrist.compute(board), board.getHash());
+        assertEquals(Fen.START, Fen.toString(board));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        String[] fens = new String[] {
+                TestFen.KIWIPETE,
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"};
+        for(String fen : fens) {
+            assertEquals(fen, Fen.toString(Fen.parse(fen)));
+        }
+    }
+
+    @Test
+    public void testPerftAfterParse() {
+        assertEquals(97862L, Fen.parse(TestFen.KIWIPETE).perft(3));
+    }
+
+    @Test
+    public void testUncapturableEnPassantIsDropped() {
+        Board board = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        assertEquals(-1, board.getEnPassantSquare());
+        Board played = Fen.parse(Fen.START);
+        played.makeMove(played.findMove("e2e4"));
+        assertEquals(played.getHash(), board.getHash());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnPassantOnWrongRank() {
+        Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnPassantWithoutPawn() {
+        Fen.parse("4k3/8/8/3P4/8/8/8/4K3 w - e6 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnPassantOnOccupiedSquare() {
+        Fen.parse("4k3/4n3/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+    }
+
+    @Test
+    public void testReusedBoard() {
+        Board board = Fen.parse(TestFen.KIWIPETE);
+        Set<Piece> before = Collections.newSetFromMap(new IdentityHashMap<Piece, Boolean>());
+        for(int square = 0; square < 64; square++) {
+            before.add(board.getPiece(square));
+        }
+        Fen.parse("8/8/8/4k3/8/8/8/R3K3 b - - 12 40", board);
+        assertTrue(before.contains(board.getPiece("a1")));
+        assertTrue(before.contains(board.getPiece("e5")));
+        assertEquals("black", board.getPiece("e5").getColor());
+        assertEquals(3, Long.bitCount(board.getOccupancy()));
+        assertEquals(12, board.getHalfmoveClock());
+        assertEquals(40, board.getFullmoveNumber());
+        assertEquals(Zobrist.compute(board), board.getHash());
+        assertEquals("8/8/8/4k3/8/8/8/R3K3 b - - 12 40", Fen.toString(board));
+    }
+
+    @Test
+    public void testEpdOperations() {
+        String epd = "1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - bm Qd1+; id \"BK.01\";";
+        Board board = new Board();
+        int operations = Fen.parse(ByteBuffer.wrap(epd.getBytes()), 0, epd.length(), board);
+        assertEquals(" bm Qd1+; id \"BK.01\";", epd.substring(operations));
+        assertEquals(Piece.BLACK, board.getSideToMove());
+        assertEquals(0, board.getHalfmoveClock());
+        assertEquals(1, board.getFullmoveNumber());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortRank() {
+        Fen.parse("rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPiece() {
+        Fen.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSide() {
+        Fen.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingKing() {
+        Fen.parse("8/8/8/8/8/8/8/4K3 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExtraKing() {
+        Fen.parse("4k3/8/8/8/8/8/8/3KK3 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPawnOnLastRank() {
+        Fen.parse("k6P/8/8/8/8/8/8/K7 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPawnOnFirstRank() {
+        Fen.parse("4k3/8/8/8/8/8/8/p3K3 b - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSideNotToMoveInCheck() {
+        Fen.parse("4k2R/8/8/8/8/8/8/4K3 w - - 0 1");
+    }
+
+    @Test
+    public void testUnbackedCastlingRightsAreDropped() {
+        assertEquals(Board.CASTLE_BLACK_H | Board.CASTLE_BLACK_A, Fen.parse("r3k2r/8/8/8/8/8/8/4K3 w KQkq - 0 1").getCastlingRights());
+        assertEquals(Board.CASTLE_WHITE_A, Fen.parse("4k3/8/8/8/8/8/8/R3K3 w KQkq - 0 1").getCastlingRights());
+        assertEquals("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1", Fen.toString(Fen.parse("4k3/8/8/8/8/8/8/R3K3 w KQkq - 0 1")));
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestFenReader {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] FENS = new String[] {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"};
+
+    @Test
+    public void testReadsEveryLine() throws IOException {
+        File file = this.write("# test positions\n" + FENS[0] + "\n\n" + FENS[1] + "\r\n" + FENS[2] + "\n" + FENS[3]);
+        for(int window : new int[] {100, 80, 1 << 20}) {
+            final ArrayList<String> read = new ArrayList<String>();
+            final ArrayList<Long> lines = new ArrayList<Long>();
+            long count = new FenReader(window).read(file.toPath(), new Board(), new FenReader.Handler() {
+                @Override
+                public void position(Board board, long line) {
+                    read.add(Fen.toString(board));
+                    lines.add(line);
+                }
+            });
+            assertEquals(4, count);
+            for(int i = 0; i < FENS.length; i++) {
+                assertEquals(FENS[i], read.get(i));
+            }
+            assertEquals(Long.valueOf(2), lines.get(0));
+            assertEquals(Long.valueOf(6), lines.get(3));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLineLongerThanWindow() throws IOException {
+        File file = this.write(FENS[0] + "\n" + FENS[1] + "\n");
+        new FenReader(40).read(file.toPath(), new Board(), new FenReader.Handler() {
+            @Override
+            public void position(Board board, long line) {
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLine() throws IOException {
+        File file = this.write(FENS[0] + "\nnot a position\n");
+        new FenReader().read(file.toPath(), new Board(), new FenReader.Handler() {
+            @Override
+            public void position(Board board, long line) {
+            }
+        });
+    }
+
+    private File write(String contents) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestGame {
+
+    @Test
+    public void testMateAndStalemate() {
+        Board board = new Board();
+        Game game = new Game(Fen.parse(Fen.START));
+        assertEquals(Game.ONGOING, game.play(board, "f2f3"));
+        assertEquals(Game.ONGOING, game.play(board, "e7e5"));
+        assertEquals(Game.ILLEGAL, game.play(board, "e1e2"));
+        assertEquals(Game.ILLEGAL, game.play(board, "e2"));
+        assertEquals(Game.ONGOING, game.play(board, "g2g4"));
+        assertEquals(Game.CHECKMATE, game.play(board, "d8h4"));
+        assertEquals(Game.ILLEGAL, game.play(board, "a2a3"));
+        assertEquals(0, game.getLegalMoves(board, new int[Board.MAX_MOVES]));
+        Game stalemate = new Game(Fen.parse("k7/8/1Q6/8/8/8/8/7K w - - 0 1"));
+        assertEquals(Game.STALEMATE, stalemate.play(board, "h1g1"));
+        Game promotion = new Game(Fen.parse("7k/P7/8/8/8/8/8/K7 w - - 0 1"));
+        assertEquals(Game.ONGOING, promotion.play(board, "a7a8n"));
+        promotion.load(board);
+        assertEquals(Piece.KNIGHT, board.getPieceType(Board.squareIndex("a8")));
+    }
+
+    @Test
+    public void testRepetitionAndFiftyMoves() {
+        Board board = new Board();
+        Game game = new Game(Fen.parse(Fen.START));
+        String[] moves = {"g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1"};
+        for(String move : moves) {
+            assertEquals(Game.ONGOING, game.play(board, move));
+        }
+        assertEquals(Game.REPETITION, game.play(board, "f6g8"));
+        Game fifty = new Game(Fen.parse("4k3/8/8/8/8/8/8/R3K3 w - - 98 80"));
+        assertEquals(Game.ONGOING, fifty.play(board, "a1a2"));
+        assertEquals(Game.FIFTY_MOVES, fifty.play(board, "e8d8"));
+        assertEquals("fifty", Game.getStatusName(fifty.getStatus()));
+        Game capture = new Game(Fen.parse("4k3/8/8/8/8/8/r7/R3K3 b - - 99 80"));
+        assertEquals(Game.ONGOING, capture.play(board, "a2a1"));
+    }
+}
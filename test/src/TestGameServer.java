@@ -0,0 +1,95 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGameServer {
+
+    private GameServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new GameServer(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testProtocol() throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out.println("move e2e4");
+            assertEquals("error no game", in.readLine());
+            out.println("new");
+            assertEquals("ok ongoing", in.readLine());
+            out.println("move e2e5");
+            assertEquals("illegal e2e5", in.readLine());
+            out.println("move e2e4");
+            assertEquals("ok ongoing", in.readLine());
+            out.println("fen");
+            assertEquals("fen rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", in.readLine());
+            out.println("moves");
+            assertEquals(21, in.readLine().split(" ").length);
+            out.println("new fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+            assertEquals("ok ongoing", in.readLine());
+            out.println("move a1a8");
+            assertEquals("ok checkmate", in.readLine());
+            out.println("move g8h8");
+            assertEquals("error the game is over", in.readLine());
+            out.println("new fen k6P/8/8/8/8/8/8/K7 w - - 0 1");
+            assertTrue(in.readLine().endsWith("pawns cannot stand on the first or last rank."));
+            out.println("new fen 8/8/8/8/8/8/8/8 w - - 0 1");
+            assertTrue(in.readLine().endsWith("each side must have exactly one king."));
+            out.println("move g8h8");
+            assertEquals("error the game is over", in.readLine());
+            out.println("resign");
+            assertEquals("error unknown command", in.readLine());
+            out.println("quit");
+            assertEquals(null, in.readLine());
+        }
+        assertEquals(2, server.getGames());
+        assertEquals(2, server.getMoves());
+    }
+
+    @Test(timeout = 10000)
+    public void testSessionSurvivesBadCommands() throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out.println("new fen 4k3/8/8/3P4/8/8/8/4K3 w - e6 0 1");
+            assertTrue(in.readLine().startsWith("error "));
+            out.println("move d5e6");
+            assertEquals("error no game", in.readLine());
+            out.println("new fen 4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+            assertEquals("ok ongoing", in.readLine());
+            out.println("move d5e6");
+            assertEquals("ok ongoing", in.readLine());
+            out.println("move e8e7extra");
+            assertEquals("illegal e8e7extra", in.readLine());
+            out.println("fen");
+            assertEquals("fen 4k3/8/4P3/8/8/8/8/4K3 b - - 0 1", in.readLine());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLoadClient() throws IOException {
+        GameLoadClient.Report report = new GameLoadClient(server.getPort(), 50, 100, 1).run();
+        assertEquals(5000, report.getCommands());
+        assertTrue(report.getPercentile(0.99) >= report.getPercentile(0.5));
+        assertTrue(server.getMoves() > 1000);
+    }
+}
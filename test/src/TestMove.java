@@ -0,0 +1,38 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMove {
+
+    @Test
+    public void testEncodeQuietMove() {
+        int move = Move.encode(Board.squareIndex("e2"), Board.squareIndex("e4"), Piece.PAWN, Move.DOUBLE_PUSH);
+        assertEquals(Board.squareIndex("e2"), Move.getFrom(move));
+        assertEquals(Board.squareIndex("e4"), Move.getTo(move));
+        assertEquals(Piece.PAWN, Move.getPromotion(move));
+        assertEquals(Move.DOUBLE_PUSH, Move.getFlags(move));
+        assertFalse(Move.isCapture(move));
+        assertEquals(-1, Move.getCaptured(move));
+        assertEquals("e2e4", Move.toString(move));
+    }
+
+    @Test
+    public void testEncodeCapturePromotion() {
+        int move = Move.encode(Board.squareIndex("b7"), Board.squareIndex("a8"), Piece.KNIGHT, Piece.ROOK, 0);
+        assertTrue(Move.isCapture(move));
+        assertEquals(Piece.ROOK, Move.getCaptured(move));
+        assertEquals(Piece.KNIGHT, Move.getPromotion(move));
+        assertEquals(Move.CAPTURE, Move.getFlags(move));
+        assertEquals("b7a8N", Move.toString(move));
+    }
+
+    @Test
+    public void testEncodeEnPassant() {
+        int move = Move.encode(Board.squareIndex("e5"), Board.squareIndex("d6"), Piece.PAWN, Piece.PAWN, Move.EN_PASSANT);
+        assertEquals(Move.EN_PASSANT | Move.CAPTURE, Move.getFlags(move));
+        assertEquals(Piece.PAWN, Move.getCaptured(move));
+        assertEquals("d6", Move.getToPosition(move));
+    }
+}
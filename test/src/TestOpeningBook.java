@@ -0,0 +1,70 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestOpeningBook {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProbe() throws IOException {
+        Board board = Fen.parse(Fen.START);
+        OpeningBook.Builder builder = new OpeningBook.Builder();
+        builder.add(board, board.findMove("e2e4"), 5);
+        builder.add(board, board.findMove("d2d4"), 3);
+        builder.add(board, board.findMove("e2e4"), 2);
+        board.makeMove(board.findMove("e2e4"));
+        builder.add(board, board.findMove("c7c5"), 1);
+        Random random = new Random(1);
+        for(int i = 0; i < 200; i++) {
+            builder.add(random.nextLong(), i, 1);
+        }
+        File file = this.folder.newFile();
+        assertEquals(203, builder.write(file.toPath()));
+        assertEquals(16 + 203 * 16, Files.size(file.toPath()));
+        for(int segment : new int[] {1, 7, 1 << 20}) {
+            OpeningBook book = OpeningBook.open(file.toPath(), segment);
+            assertEquals(203, book.size());
+            int[] moves = new int[8];
+            int[] weights = new int[8];
+            Board start = Fen.parse(Fen.START);
+            assertEquals(2, book.probe(start.getHash(), moves, weights));
+            assertEquals(start.findMove("e2e4") + start.findMove("d2d4"), moves[0] + moves[1]);
+            assertEquals(10, weights[0] + weights[1]);
+            assertEquals(1, book.probe(board.getHash(), moves, weights));
+            assertEquals(board.findMove("c7c5"), moves[0]);
+            assertEquals(0, book.probe(board.getHash() + 1, moves, weights));
+        }
+    }
+
+    @Test
+    public void testChooseOnlyLegalMoves() throws IOException {
+        Board board = Fen.parse(Fen.START);
+        File file = this.folder.newFile();
+        new OpeningBook.Builder().add(board, board.findMove("g1f3"), 1)
+                .add(board, Move.encode(Board.squareIndex("e2"), Board.squareIndex("e5"), Piece.PAWN, 0), 1000)
+                .write(file.toPath());
+        OpeningBook book = OpeningBook.open(file.toPath());
+        Random random = new Random(3);
+        for(int i = 0; i < 20; i++) {
+            assertEquals(board.findMove("g1f3"), book.choose(board, random));
+        }
+        board.makeMove(board.findMove("g1f3"));
+        assertEquals(Move.NONE, book.choose(board, random));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotABook() throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        OpeningBook.open(file.toPath());
+    }
+}
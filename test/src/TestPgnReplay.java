@@ -0,0 +1,80 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPgnReplay {
+
+    private static final String GAMES = "[Event \"Paris\"]\n"
+            + "[White \"Morphy\"]\n"
+            + "[Black \"Duke Karl / Count Isouard\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7\n"
+            + "8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7\n"
+            + "14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n"
+            + "\n"
+            + "[Event \"Endgame\"]\n"
+            + "[SetUp \"1\"]\n"
+            + "[FEN \"8/8/8/4k3/8/8/8/R3K3 w Q - 0 1\"]\n"
+            + "\n"
+            + "1. O-O-O Ke4 2. Rd4+ *\n"
+            + "\n"
+            + "[Event \"Annotated\"]\n"
+            + "\n"
+            + "1. d4 {a comment (with a parenthesis} d5 (1... Nf6 2. c4 (2. Nf3)) 2. c4 $1 e6?! 3. Nc3 ; the rest\n"
+            + "Nf6 1/2-1/2\n"
+            + "\n"
+            + "[Event \"Illegal\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Ke3 Nc6 0-1\n";
+
+    @Test
+    public void testReplaysEveryGame() throws IOException {
+        for(int threads = 1; threads <= 3; threads++) {
+            for(int chunkSize : new int[] {48, 200, 1 << 16}) {
+                final AtomicLong positions = new AtomicLong();
+                final ConcurrentHashMap<String, Boolean> finals = new ConcurrentHashMap<String, Boolean>();
+                Supplier<PgnReplay.Handler> handlers = new Supplier<PgnReplay.Handler>() {
+                    @Override
+                    public PgnReplay.Handler get() {
+                        return new PgnReplay.Handler() {
+                            @Override
+                            public void position(Board board, int move) {
+                                positions.incrementAndGet();
+                                if(board.getLegalMoves().length == 0 || board.isInCheck()) {
+                                    finals.put(Fen.toString(board), Boolean.TRUE);
+                                }
+                            }
+                        };
+                    }
+                };
+                PgnReplay.Result result = new PgnReplay(threads, chunkSize, 2).replay(
+                        new ByteArrayInputStream(GAMES.getBytes(StandardCharsets.US_ASCII)), handlers);
+                assertEquals(4, result.getGames());
+                assertEquals(1, result.getInvalidGames());
+                assertEquals(34 + 4 + 7 + 3, result.getPositions());
+                assertEquals(result.getPositions(), positions.get());
+                assertEquals(GAMES.length(), result.getBytes());
+                assertTrue(finals.containsKey("1n1Rkb1r/p4ppp/4q3/4p1B1/4P3/8/PPP2PPP/2K5 b k - 1 17"));
+                assertTrue(finals.containsKey("8/8/8/8/3Rk3/8/8/2K5 b - - 3 2"));
+            }
+        }
+    }
+
+    @Test
+    public void testLastGameStart() {
+        byte[] bytes = GAMES.getBytes(StandardCharsets.US_ASCII);
+        int start = PgnReplay.lastGameStart(bytes, bytes.length);
+        assertEquals(GAMES.indexOf("[Event \"Illegal\"]"), start);
+        assertEquals(-1, PgnReplay.lastGameStart(bytes, GAMES.indexOf("[Event \"Endgame\"]") + 1));
+        assertEquals(GAMES.indexOf("[Event \"Endgame\"]"), PgnReplay.lastGameStart(bytes, GAMES.indexOf("[SetUp")));
+    }
+}
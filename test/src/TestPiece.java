@@ -36,6 +36,13 @@ public class TestPiece {
         assertArrayEquals(new String[] {"h6", "g6"}, pawn.getPotentialMoves().get(0));
     }
 
+    @Test
+    public void testPotentialMovesAreCopies() {
+        rook = new Piece("R", "white", "a1");
+        rook.getPotentialMoves().get(0)[0] = "h8";
+        assertTrue(!rook.getPotentialMoves().get(0)[0].equals("h8"));
+    }
+
     @Test
     public void testKnightPossibleMoves() {
         knight = new Piece("N", "white", "h1");
@@ -0,0 +1,185 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestPositionBatch {
+
+    private static final String[] FENS = new String[] {
+            Fen.START,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"};
+
+    @Test
+    public void testKernelsMatchBoard() {
+        ArrayList<Board> boards = playouts(2000);
+        PositionBatch batch = new PositionBatch(16);
+        for(Board board : boards) {
+            batch.add(board);
+        }
+        assertEquals(boards.size(), batch.size());
+        int[] scores = new int[batch.size()];
+        int[] counts = new int[batch.size()];
+        boolean[] legal = new boolean[batch.size()];
+        batch.evaluate(scores);
+        batch.countMoves(counts);
+        batch.checkLegal(legal);
+        for(int i = 0; i < boards.size(); i++) {
+            Board board = boards.get(i);
+            assertEquals(Evaluation.evaluate(board), scores[i]);
+            assertEquals(board.getLegalMoves().length, counts[i]);
+            assertTrue(legal[i]);
+        }
+    }
+
+    @Test
+    public void testPoolMatchesSequential() {
+        ArrayList<Board> boards = playouts(5000);
+        PositionBatch batch = new PositionBatch(boards.size());
+        for(Board board : boards) {
+            batch.add(board);
+        }
+        int[] scores = new int[batch.size()];
+        int[] counts = new int[batch.size()];
+        boolean[] legal = new boolean[batch.size()];
+        batch.evaluate(scores);
+        batch.countMoves(counts);
+        batch.checkLegal(legal);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] pooledScores = new int[batch.size()];
+            int[] pooledCounts = new int[batch.size()];
+            boolean[] pooledLegal = new boolean[batch.size()];
+            batch.evaluate(pooledScores, pool);
+            batch.countMoves(pooledCounts, pool);
+            batch.checkLegal(pooledLegal, pool);
+            assertArrayEquals(scores, pooledScores);
+            assertArrayEquals(counts, pooledCounts);
+            assertArrayEquals(legal, pooledLegal);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPackedPositionsMatchBoards() {
+        ArrayList<Board> boards = playouts(300);
+        ByteBuffer buffer = ByteBuffer.allocate(boards.size() * BinaryPosition.SIZE);
+        PositionBatch fromBoards = new PositionBatch(boards.size());
+        PositionBatch fromBytes = new PositionBatch(1);
+        for(int i = 0; i < boards.size(); i++) {
+            BinaryPosition.write(boards.get(i), buffer, i * BinaryPosition.SIZE);
+            fromBoards.add(boards.get(i));
+            fromBytes.add(buffer, i * BinaryPosition.SIZE);
+        }
+        Board board = new Board();
+        for(int i = 0; i < boards.size(); i++) {
+            fromBytes.get(i, board);
+            Board expected = boards.get(i);
+            for(int code = 0; code < 12; code++) {
+                assertEquals(expected.getBitboard(code % 6, code / 6), board.getBitboard(code % 6, code / 6));
+            }
+            assertEquals(expected.getSideToMove(), board.getSideToMove());
+            assertEquals(expected.getCastlingRights(), board.getCastlingRights());
+            assertEquals(expected.getEnPassantSquare(), board.getEnPassantSquare());
+        }
+        int[] expected = new int[boards.size()];
+        int[] actual = new int[boards.size()];
+        fromBoards.countMoves(expected);
+        fromBytes.countMoves(actual);
+        assertArrayEquals(expected, actual);
+        fromBoards.evaluate(expected);
+        fromBytes.evaluate(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testIllegalPositions() {
+        PositionBatch batch = new PositionBatch(4);
+        //Fen.parse() rejects illegal positions, so they are set up square by square
+        for(String placement : new String[] {
+                "4k3/8/8/8/8/8/8/4K3",
+                "4k2R/8/8/8/8/8/8/4K3", //The side which has just moved is in check
+                "4k3/8/8/8/8/8/8/P3K3", //A pawn on the first rank
+                "8/8/8/8/8/8/8/4K3", //No black king
+                "4k3/8/8/8/8/8/8/3KK3"}) { //Two white kings
+            Board board = new Board();
+            board.reset();
+            String[] ranks = placement.split("/");
+            for(int rank = 0; rank < 8; rank++) {
+                int file = 0;
+                for(char c : ranks[7 - rank].toCharArray()) {
+                    if(Character.isDigit(c)) {
+                        file += c - '0';
+                    } else {
+                        int code = "PNBRQKpnbrqk".indexOf(c);
+                        board.put(code % 6, code / 6, (7 - file) * 8 + rank);
+                        file++;
+                    }
+                }
+            }
+            batch.add(board);
+        }
+        boolean[] legal = new boolean[batch.size()];
+        batch.checkLegal(legal);
+        assertTrue(legal[0]);
+        for(int i = 1; i < legal.length; i++) {
+            assertFalse(legal[i]);
+        }
+        int[] counts = new int[batch.size()];
+        batch.countMoves(counts);
+        Board board = new Board();
+        for(int i = 0; i < batch.size(); i++) {
+            batch.get(i, board);
+            assertEquals(board.getLegalMoves().length, counts[i]);
+        }
+    }
+
+    @Test
+    public void testPackedStateIsChecked() {
+        PositionBatch batch = new PositionBatch(1);
+        ByteBuffer buffer = ByteBuffer.wrap(BinaryPosition.encode(Fen.parse("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1")));
+        buffer.put(BinaryPosition.STATE_OFFSET, (byte) (buffer.get(BinaryPosition.STATE_OFFSET) | 0xF << 1));
+        Board board = new Board();
+        batch.get(batch.add(buffer, 0), board);
+        assertEquals(Board.CASTLE_WHITE_A, board.getCastlingRights());
+        for(int enPassant : new int[] {254, Board.squareIndex("e6") + 1}) {
+            buffer = ByteBuffer.wrap(BinaryPosition.encode(Fen.parse("4k3/8/8/3P4/8/8/8/4K3 w - - 0 1")));
+            buffer.put(BinaryPosition.STATE_OFFSET + 1, (byte) enPassant);
+            try {
+                batch.add(buffer, 0);
+                fail();
+            } catch(IllegalArgumentException e) {
+                assertEquals(1, batch.size());
+            }
+        }
+    }
+
+    private static ArrayList<Board> playouts(int count) {
+        ArrayList<Board> boards = new ArrayList<Board>();
+        Random random = new Random(11);
+        Board board = new Board();
+        for(int game = 0; boards.size() < count; game++) {
+            Fen.parse(TestPositionBatch.FENS[game % TestPositionBatch.FENS.length], board);
+            for(int ply = 0; ply < 120 && boards.size() < count; ply++) {
+                boards.add(new Board(board));
+                int[] moves = board.getLegalMoves();
+                if(moves.length == 0) {
+                    break;
+                }
+                board.makeMove(moves[random.nextInt(moves.length)]);
+            }
+        }
+        return boards;
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSan {
+
+    @Test
+    public void testPawnAndPieceMoves() {
+        Board board = Fen.parse(Fen.START);
+        assertEquals("e2e4", Move.toString(San.parse(board, "e4")));
+        assertEquals("g1f3", Move.toString(San.parse(board, "Nf3")));
+        assertEquals(Move.NONE, San.parse(board, "e5"));
+        assertEquals(Move.NONE, San.parse(board, "Nd2"));
+        assertEquals(Move.NONE, San.parse(board, "Zz9"));
+    }
+
+    @Test
+    public void testCapturesAndDisambiguation() {
+        Board board = Fen.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals("d5e6", Move.toString(San.parse(board, "dxe6")));
+        assertEquals("e2a6", Move.toString(San.parse(board, "Bxa6!?")));
+        assertEquals("c3b1", Move.toString(San.parse(board, "Ncb1")));
+        assertEquals("e5g6", Move.toString(San.parse(board, "Nxg6")));
+        assertEquals("e5d3", Move.toString(San.parse(board, "Nd3")));
+        assertEquals("e1g1", Move.toString(San.parse(board, "O-O")));
+        assertEquals("e1c1", Move.toString(San.parse(board, "0-0-0")));
+    }
+
+    @Test
+    public void testAmbiguousMove() {
+        Board board = Fen.parse("4k3/8/8/8/8/8/4K3/R6R w - - 0 1");
+        assertEquals(Move.NONE, San.parse(board, "Rd1"));
+        assertEquals("a1d1", Move.toString(San.parse(board, "Rad1")));
+        assertEquals("h1d1", Move.toString(San.parse(board, "Rhd1")));
+        assertEquals(Move.NONE, San.parse(board, "R1d1"));
+    }
+
+    @Test
+    public void testPromotions() {
+        Board board = Fen.parse("r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        assertEquals("b7b8Q", Move.toString(San.parse(board, "b8=Q+")));
+        assertEquals("b7b8N", Move.toString(San.parse(board, "b8N")));
+        assertEquals("b7a8R", Move.toString(San.parse(board, "bxa8=R")));
+        assertEquals(Move.NONE, San.parse(board, "b8"));
+    }
+}
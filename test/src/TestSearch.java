@@ -0,0 +1,119 @@
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestSearch {
+
+    private Search search;
+
+    @After
+    public void tearDown() {
+        if(search != null) {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void testFindsMateInOne() {
+        search = new Search(new TranspositionTable(4), 1);
+        Board board = setUp("6k1/5ppp/8/8/8/8/8/R5K1", Piece.WHITE);
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(4);
+        SearchResult result = search.search(board, limits);
+        assertEquals("a1a8", Move.toString(result.getBestMove()));
+        assertEquals(Search.MATE - 1, result.getScore());
+        assertTrue(result.isMate());
+    }
+
+    @Test
+    public void testStalemateHasNoMove() {
+        search = new Search(new TranspositionTable(1), 1);
+        Board board = setUp("7k/5Q2/6K1/8/8/8/8/8", Piece.BLACK);
+        SearchResult result = search.search(board, new SearchLimits());
+        assertEquals(Move.NONE, result.getBestMove());
+        assertEquals(0, result.getScore());
+    }
+
+    @Test
+    public void testWinsHangingQueen() {
+        search = new Search(new TranspositionTable(4), 1);
+        Board board = setUp("4k3/8/8/3q4/8/8/3R4/4K3", Piece.WHITE);
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(5);
+        SearchResult result = search.search(board, limits);
+        assertEquals("d2d5", Move.toString(result.getBestMove()));
+        assertEquals(result.getBestMove(), result.getPrincipalVariation()[0]);
+        assertTrue(result.getScore() > 300);
+    }
+
+    @Test
+    public void testThreadsStopAtNodeLimit() {
+        search = new Search(new TranspositionTable(4), 2);
+        Board board = new Board();
+        board.generateDefaultStart();
+        long hash = board.getHash();
+        SearchLimits limits = new SearchLimits();
+        limits.setNodes(200000);
+        SearchResult result = search.search(board, limits);
+        assertTrue(result.getDepth() > 0);
+        assertTrue(contains(board.getLegalMoves(), result.getBestMove()));
+        assertEquals(hash, board.getHash());
+        assertTrue(result.getNodes() >= 200000);
+    }
+
+    @Test
+    public void testStopsAtMoveTime() {
+        search = new Search(new TranspositionTable(4), 1);
+        Board board = new Board();
+        board.generateDefaultStart();
+        SearchLimits limits = new SearchLimits();
+        limits.setMoveTime(200);
+        SearchResult result = search.search(board, limits);
+        assertTrue(result.getBestMove() != Move.NONE);
+        assertTrue(result.getNanos() < 2000000000L);
+    }
+
+    @Test(timeout = 10000)
+    public void testStopBeforeRunIsKept() {
+        search = new Search(new TranspositionTable(4), 2);
+        Board board = new Board();
+        board.generateDefaultStart();
+        search.prepare(board, new SearchLimits());
+        search.stop();
+        search.run();
+        assertTrue(search.isStopped());
+    }
+
+    private static boolean contains(int[] moves, int move) {
+        for(int candidate : moves) {
+            if(candidate == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Board setUp(String placement, int sideToMove) {
+        Board board = new Board();
+        String[] ranks = placement.split("/");
+        for(int i = 0; i < 8; i++) {
+            int file = 0;
+            for(char c : ranks[i].toCharArray()) {
+                if(Character.isDigit(c)) {
+                    file += c - '0';
+                    continue;
+                }
+                String type = Character.toUpperCase(c) == 'P' ? " " : String.valueOf(Character.toUpperCase(c));
+                String color = Character.isUpperCase(c) ? "white" : "black";
+                board.addPiece(new Piece(type, color, "" + (char) ('a' + file) + (8 - i)));
+                file++;
+            }
+        }
+        board.synchronize();
+        board.setSideToMove(sideToMove);
+        board.setCastlingRights(0);
+        return board;
+    }
+}
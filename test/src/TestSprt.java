@@ -0,0 +1,32 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestSprt {
+
+    @Test
+    public void testElo() {
+        assertEquals(0.5, Sprt.getScore(0), 1e-12);
+        assertEquals(0.75, Sprt.getScore(Sprt.getElo(0.75)), 1e-12);
+        assertEquals(190.85, Sprt.getElo(0.75), 0.01);
+        assertEquals(-Sprt.getElo(0.6), Sprt.getElo(0.4), 1e-9);
+    }
+
+    @Test
+    public void testDecisions() {
+        Sprt sprt = new Sprt(0, 10, 0.05, 0.05);
+        assertEquals(Math.log(0.05 / 0.95), sprt.getLowerBound(), 1e-12);
+        assertEquals(-sprt.getLowerBound(), sprt.getUpperBound(), 1e-12);
+        assertEquals(Sprt.CONTINUE, sprt.decide(0, 0, 0));
+        assertEquals(Sprt.CONTINUE, sprt.decide(30, 40, 30));
+        assertEquals(Sprt.ACCEPT_H1, sprt.decide(700, 1000, 500));
+        assertEquals(Sprt.ACCEPT_H0, sprt.decide(500, 1000, 700));
+        assertTrue(sprt.getLlr(510, 1000, 490) > sprt.getLlr(490, 1000, 510));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new Sprt(5, 0, 0.05, 0.05);
+    }
+}
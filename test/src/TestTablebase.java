@@ -0,0 +1,120 @@
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTablebase {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static TablebaseGenerator generator;
+    private static Tablebase queen;
+    private static Tablebase rook;
+    private static Tablebase pawn;
+
+    @BeforeClass
+    public static void generate() throws IOException {
+        TestTablebase.generator = new TablebaseGenerator(2);
+        TestTablebase.queen = TestTablebase.generator.generate("KQvK", TestTablebase.folder.getRoot().toPath());
+        TestTablebase.rook = TestTablebase.generator.generate("KvKR", TestTablebase.folder.getRoot().toPath());
+        TestTablebase.pawn = TestTablebase.generator.generate("KPvK", TestTablebase.folder.getRoot().toPath());
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        TestTablebase.generator.shutdown();
+    }
+
+    @Test
+    public void testLongestMates() {
+        assertEquals("KRvK", TestTablebase.rook.getMaterial());
+        assertEquals(10 * 64 * 64, TestTablebase.queen.size());
+        assertEquals(32 * 64 * 64, TestTablebase.pawn.size());
+        //The longest wins are known to be mates in 10, 16 and 28 moves
+        assertEquals(19, Tablebase.getPlies(TestTablebase.longest(TestTablebase.queen)));
+        assertEquals(31, Tablebase.getPlies(TestTablebase.longest(TestTablebase.rook)));
+        assertEquals(55, Tablebase.getPlies(TestTablebase.longest(TestTablebase.pawn)));
+    }
+
+    @Test
+    public void testProbe() {
+        assertEquals(2, TestTablebase.queen.probe(Fen.parse("k7/8/1K6/8/8/8/8/6Q1 w - - 0 1")));
+        assertEquals(2, TestTablebase.queen.probe(Fen.parse("K7/8/1k6/8/8/8/8/6q1 b - - 0 1")));
+        assertEquals(2, TestTablebase.queen.probe(Fen.parse("6q1/8/8/8/8/1k6/8/K7 b - - 0 1")));
+        assertEquals(1, TestTablebase.queen.probe(Fen.parse("k5Q1/8/1K6/8/8/8/8/8 b - - 0 1")));
+        assertEquals(Tablebase.DRAW, TestTablebase.queen.probe(Fen.parse("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1")));
+        assertEquals(Tablebase.DRAW, TestTablebase.queen.probe(Fen.parse("k7/1Q6/8/2K5/8/8/8/8 b - - 0 1")));
+        assertEquals(Tablebase.DRAW, TestTablebase.pawn.probe(Fen.parse("4k3/4P3/4K3/8/8/8/8/8 b - - 0 1")));
+        assertEquals(Tablebase.DRAW, TestTablebase.pawn.probe(Fen.parse("k7/8/8/8/8/8/P7/K7 w - - 0 1")));
+        assertTrue(Tablebase.isWin(TestTablebase.pawn.probe(Fen.parse("8/8/8/8/8/8/k3P3/4K3 w - - 0 1"))));
+        assertTrue(Tablebase.isLoss(TestTablebase.pawn.probe(Fen.parse("8/8/8/8/8/8/k3p3/7K w - - 0 1"))));
+    }
+
+    @Test
+    public void testSearchUsesTables() throws IOException {
+        Tablebases tablebases = Tablebases.open(TestTablebase.folder.getRoot().toPath());
+        assertEquals(3, tablebases.getMaxPieces());
+        Board board = Fen.parse("1K6/8/1k6/8/8/8/8/6q1 w - - 0 1");
+        assertEquals(5, tablebases.probe(board));
+        assertEquals(-(Search.MATE - 4), tablebases.score(board, 0));
+        assertEquals(Tablebases.UNKNOWN, tablebases.probe(Fen.parse(Fen.START)));
+        Search search = new Search(new TranspositionTable(1), 1);
+        search.setTablebases(tablebases);
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(2);
+        assertEquals(-(Search.MATE - 4), search.search(board, limits).getScore());
+        board = Fen.parse("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        SearchResult result = search.search(board, limits);
+        board.makeMove(result.getBestMove());
+        assertEquals(Search.MATE - 1 - Tablebase.getPlies(tablebases.probe(board)), result.getScore());
+        search.shutdown();
+    }
+
+    @Test
+    public void testFourPieces() throws IOException {
+        //Its own directory, so that testSearchUsesTables() only sees the three piece tables
+        Tablebase table = TestTablebase.generator.generate("KRvKQ", TestTablebase.folder.newFolder("four").toPath());
+        assertEquals("KQvKR", table.getMaterial());
+        assertEquals(10 * 64 * 64 * 64, table.size());
+        //The longest win is known to be a mate in 35 moves
+        assertEquals(69, Tablebase.getPlies(TestTablebase.longest(table)));
+        assertEquals(2, table.probe(Fen.parse("k7/8/1K6/8/8/8/7r/6Q1 w - - 0 1")));
+        assertEquals(2, table.probe(Fen.parse("K7/8/1k6/8/8/8/7R/6q1 b - - 0 1")));
+        assertEquals(2, table.probe(Fen.parse("6Q1/7r/8/8/8/1K6/8/k7 w - - 0 1")));
+        assertEquals(2, table.probe(Fen.parse("1Q6/r7/8/8/8/6K1/8/7k w - - 0 1")));
+        //Qxg2 and Qg8, since the rook blocks the mate at once
+        assertEquals(4, table.probe(Fen.parse("k7/8/1K6/8/8/8/6r1/6Q1 w - - 0 1")));
+        //Rxg1 leaves black a won KRvK
+        assertTrue(Tablebase.isWin(table.probe(Fen.parse("k7/8/1K6/8/8/8/8/6Qr b - - 0 1"))));
+    }
+
+    @Test
+    public void testFileLayout() throws IOException {
+        File file = new File(TestTablebase.folder.getRoot(), "KQvK.tb");
+        assertEquals(Tablebase.HEADER_SIZE + 2L * TestTablebase.queen.size(), Files.size(file.toPath()));
+        assertEquals(Arrays.toString(TestTablebase.queen.getCodes()), Arrays.toString(Tablebase.open(file.toPath()).getCodes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPieces() throws IOException {
+        TestTablebase.generator.generate("KQRBvKR", TestTablebase.folder.getRoot().toPath());
+    }
+
+    private static int longest(Tablebase table) {
+        int longest = 0;
+        for(int i = 0; i < table.size(); i++) {
+            longest = Math.max(longest, table.get(Piece.WHITE, i));
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,44 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimeManager {
+
+    @Test
+    public void testBudgetStaysOnTheClock() {
+        TimeManager manager = new TimeManager(50);
+        Board board = Fen.parse(Fen.START);
+        long[][] clocks = {{60000, 0}, {60000, 1000}, {1000, 0}, {100, 0}, {10, 1000}, {300000, 5000}};
+        for(long[] clock : clocks) {
+            SearchLimits limits = new SearchLimits();
+            manager.allocate(limits, board, clock[0], clock[1], 0, false);
+            assertTrue(limits.getOptimumTime() >= 1);
+            assertTrue(limits.getOptimumTime() <= limits.getMoveTime());
+            assertTrue(limits.getMoveTime() <= Math.max(1, clock[0] - 50));
+        }
+        SearchLimits limits = new SearchLimits();
+        manager.allocate(limits, board, 60000, 0, 0, false);
+        assertEquals(59950 / 50, limits.getOptimumTime());
+        assertEquals(59950 / 50 * 5, limits.getMoveTime());
+    }
+
+    @Test
+    public void testMovesToGoAndPonder() {
+        TimeManager manager = new TimeManager(0);
+        Board board = Fen.parse(Fen.START);
+        SearchLimits limits = new SearchLimits();
+        manager.allocate(limits, board, 10000, 0, 1, false);
+        assertEquals(10000, limits.getMoveTime());
+        SearchLimits fewer = new SearchLimits();
+        manager.allocate(fewer, board, 10000, 0, 10, false);
+        SearchLimits pondering = new SearchLimits();
+        manager.allocate(pondering, board, 10000, 0, 10, true);
+        assertEquals(1000, fewer.getOptimumTime());
+        assertEquals(1250, pondering.getOptimumTime());
+        Board late = Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 80");
+        SearchLimits endgame = new SearchLimits();
+        manager.allocate(endgame, late, 10000, 0, 0, false);
+        assertEquals(10000 / 20, endgame.getOptimumTime());
+    }
+}
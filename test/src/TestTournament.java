@@ -0,0 +1,69 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTournament {
+
+    private static final List<String> OPENINGS = Arrays.asList(Fen.START,
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+
+    @Test(timeout = 60000)
+    public void testPlaysEveryGame() {
+        Tournament tournament = new Tournament(() -> new Tournament.SearchPlayer(1, 300),
+                () -> new Tournament.SearchPlayer(1, 300), OPENINGS);
+        tournament.setThreads(2);
+        tournament.setMaxPlies(40);
+        Tournament.Result result = tournament.run();
+        assertEquals(4, result.getGames());
+        assertEquals(Sprt.CONTINUE, result.getDecision());
+        assertTrue(result.getGamesPerSecond() > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testTimedGames() {
+        Tournament tournament = new Tournament(() -> new Tournament.SearchPlayer(1, 0),
+                () -> new Tournament.SearchPlayer(1, 0), OPENINGS.subList(0, 1));
+        tournament.setThreads(1);
+        tournament.setMaxPlies(20);
+        tournament.setTimeControl(1000, 10);
+        assertEquals(2, tournament.run().getGames());
+    }
+
+    @Test(timeout = 60000)
+    public void testSprtStopsEarly() {
+        Tournament tournament = new Tournament(() -> new Tournament.SearchPlayer(1, 2000), FirstMovePlayer::new, OPENINGS);
+        tournament.setThreads(2);
+        tournament.setMaxGames(100);
+        tournament.setSprt(new Sprt(0, 50, 0.05, 0.05));
+        Tournament.Result result = tournament.run();
+        assertEquals(Sprt.ACCEPT_H1, result.getDecision());
+        assertTrue(result.getGames() < 100);
+        assertTrue(result.getElo() > 100);
+    }
+
+    /**
+     * A very weak player, which always plays the first legal move.
+     */
+    private static class FirstMovePlayer implements Tournament.Player {
+
+        private final int[] moves = new int[Board.MAX_MOVES];
+
+        @Override
+        public void newGame() {
+        }
+
+        @Override
+        public int move(Board board, long time, long increment) {
+            board.generateLegalMoves(moves, 0);
+            return moves[0];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
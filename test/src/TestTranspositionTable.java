@@ -0,0 +1,64 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTranspositionTable {
+
+    private TranspositionTable table;
+
+    @Before
+    public void setUp() {
+        table = new TranspositionTable(1);
+    }
+
+    @Test
+    public void testStoreAndProbe() {
+        int move = Move.encode(Board.squareIndex("g1"), Board.squareIndex("f3"), Piece.PAWN, 0);
+        table.store(0x123456789ABCDEFL, move, -345, 7, TranspositionTable.LOWER);
+        long data = table.probe(0x123456789ABCDEFL);
+        assertEquals(move, TranspositionTable.getMove(data));
+        assertEquals(-345, TranspositionTable.getScore(data));
+        assertEquals(7, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.getBound(data));
+        assertEquals(0L, table.probe(0x123456789ABCDEEL));
+        assertEquals(0.5, table.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testKeepsMoveWhenOverwritten() {
+        table.store(42L, 1234, 10, 3, TranspositionTable.EXACT);
+        table.store(42L, Move.NONE, 20, 4, TranspositionTable.UPPER);
+        long data = table.probe(42L);
+        assertEquals(1234, TranspositionTable.getMove(data));
+        assertEquals(20, TranspositionTable.getScore(data));
+    }
+
+    @Test
+    public void testDepthPreferredReplacement() {
+        long buckets = table.getCapacity() / 4;
+        for(int i = 0; i < 4; i++) {
+            table.store(7L + i * buckets, 0, 0, 10 + i, TranspositionTable.EXACT);
+        }
+        assertEquals(0, table.getCollisions());
+        table.store(7L + 4 * buckets, 0, 0, 1, TranspositionTable.EXACT);
+        assertEquals(1, table.getCollisions());
+        assertEquals(0L, table.probe(7L));
+        for(int i = 1; i < 5; i++) {
+            assertTrue(table.probe(7L + i * buckets) != 0);
+        }
+    }
+
+    @Test
+    public void testFillRate() {
+        assertEquals(0.0, table.getFillRate(), 1e-9);
+        for(long key = 0; key < table.getCapacity(); key++) {
+            table.store(key * 0x9E3779B97F4A7C15L, 0, 0, 1, TranspositionTable.EXACT);
+        }
+        assertTrue(table.getFillRate() > 0.5);
+        table.clear();
+        assertEquals(0.0, table.getFillRate(), 1e-9);
+        assertEquals(0, table.getProbes());
+    }
+}
@@ -0,0 +1,131 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestUci {
+
+    private PrintWriter commands;
+    private BufferedReader responses;
+    private Thread session;
+    private Uci uci;
+
+    @Before
+    public void setUp() throws IOException {
+        PipedWriter input = new PipedWriter();
+        PipedReader output = new PipedReader(1 << 16);
+        uci = new Uci(new PipedReader(input), new PipedWriter(output));
+        commands = new PrintWriter(input, true);
+        responses = new BufferedReader(output);
+        session = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    uci.run();
+                } catch(IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        session.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        commands.println("quit");
+        session.join(10000);
+    }
+
+    @Test(timeout = 10000)
+    public void testHandshake() throws IOException {
+        commands.println("uci");
+        assertEquals("id name " + Uci.NAME, responses.readLine());
+        assertEquals("id author " + Uci.AUTHOR, responses.readLine());
+        String line;
+        while((line = responses.readLine()).startsWith("option")) {
+            assertTrue(line.contains(" type "));
+        }
+        assertEquals("uciok", line);
+        commands.println("isready");
+        assertEquals("readyok", responses.readLine());
+        commands.println("setoption name Hash value 0");
+        assertTrue(responses.readLine().startsWith("info string"));
+    }
+
+    @Test(timeout = 10000)
+    public void testPositionAndGo() throws IOException {
+        commands.println("position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        commands.println("go depth 4");
+        String info = null;
+        String line;
+        while((line = responses.readLine()).startsWith("info")) {
+            info = line;
+        }
+        assertEquals("bestmove a1a8", line);
+        assertTrue(info.contains("score mate 1"));
+        commands.println("position startpos moves e2e4 e7e5 g1f3 b8c6 f1b5");
+        commands.println("go depth 3");
+        while((line = responses.readLine()).startsWith("info")) {
+            continue;
+        }
+        assertTrue(line.startsWith("bestmove "));
+        commands.println("position startpos moves e2e5");
+        assertTrue(responses.readLine().startsWith("info string e2e5"));
+    }
+
+    @Test(timeout = 10000)
+    public void testInfiniteWaitsForStop() throws IOException {
+        commands.println("position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        commands.println("go infinite");
+        commands.println("isready");
+        assertEquals("readyok", nextResponse());
+        commands.println("stop");
+        assertEquals("bestmove a1a8", nextResponse());
+    }
+
+    @Test(timeout = 10000)
+    public void testPonderWaitsForPonderhit() throws IOException {
+        commands.println("setoption name Ponder value true");
+        commands.println("position startpos moves e2e4");
+        commands.println("go ponder wtime 1000 btime 1000");
+        commands.println("isready");
+        assertEquals("readyok", nextResponse());
+        commands.println("ponderhit");
+        String line = nextResponse();
+        assertTrue(line.startsWith("bestmove "));
+        assertTrue(line.contains(" ponder "));
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedSearchStillAnswers() throws IOException {
+        commands.println("position fen 4k3/8/8/3P4/8/8/8/4K3 w - e6 0 1");
+        assertTrue(responses.readLine().startsWith("info string "));
+        commands.println("position fen 4k3/8/8/3P4/8/8/8/4K3 w - - 0 1");
+        commands.println("isready");
+        assertEquals("readyok", responses.readLine());
+        //A phantom en passant square, which Fen.parse() would refuse, makes the search throw
+        uci.getBoard().setEnPassantSquare(Board.squareIndex("e6"));
+        commands.println("go depth 3");
+        assertTrue(responses.readLine().startsWith("info string The search failed"));
+        assertTrue(responses.readLine().startsWith("bestmove "));
+        commands.println("position startpos moves e2e4");
+        commands.println("go depth 2");
+        assertTrue(nextResponse().startsWith("bestmove "));
+    }
+
+    private String nextResponse() throws IOException {
+        String line;
+        while((line = responses.readLine()).startsWith("info")) {
+            continue;
+        }
+        return line;
+    }
+}